@@ -1,4 +1,4 @@
-import React, { useState } from "react";
+import React, { useState, useEffect } from "react";
 import { useParams, useNavigate, useLocation } from "react-router-dom";
 import { useTheme } from "../contexts/ThemeContext";
 import PageLayout from "../components/PageLayout";
@@ -10,6 +10,7 @@ import cookingIcon from "../assets/logos/cooking.png";
 import servingIcon from "../assets/logos/serving.png";
 import copyingIcon from "../assets/logos/copying.png";
 import starIcon from "../assets/logos/star.png";
+import { recipeService } from "../services/api";
 
 const RecipeDetails = () => {
   const { id } = useParams();
@@ -20,7 +21,21 @@ const RecipeDetails = () => {
   const [showCopyAlert, setShowCopyAlert] = useState(false);
 
   // Get the recipe from navigation state
-  const recipe = location.state?.recipe;
+  const stateRecipe = location.state?.recipe;
+  const [details, setDetails] = useState(null);
+  const [detailsError, setDetailsError] = useState(null);
+
+  // Lists only carry recipe summaries, so fetch ingredients and instructions on demand
+  const needsDetails = Boolean(stateRecipe?.id && !stateRecipe.instructions);
+  useEffect(() => {
+    if (!needsDetails || !isAuthenticated) return;
+    recipeService
+      .getRecipeDetails(stateRecipe.id)
+      .then(setDetails)
+      .catch(() => setDetailsError("Failed to load recipe. Please try again."));
+  }, [needsDetails, isAuthenticated, stateRecipe?.id]);
+
+  const recipe = details ? { ...stateRecipe, ...details } : stateRecipe;
 
   if (!isAuthenticated) {
     navigate("/login", { replace: true });
@@ -40,6 +55,20 @@ const RecipeDetails = () => {
     );
   }
 
+  if (needsDetails && !details) {
+    return (
+      <PageLayout>
+        <div className="container mx-auto px-4 py-8">
+          {detailsError ? (
+            <Alert type="error" message={detailsError} />
+          ) : (
+            <p className="text-center">Loading recipe...</p>
+          )}
+        </div>
+      </PageLayout>
+    );
+  }
+
   const handleCopyRecipe = () => {
     const recipeText = `
 Recipe: ${recipe.title}
@@ -1,4 +1,4 @@
-import React, { useState, useEffect } from "react";
+import React, { useState, useEffect, useMemo } from "react";
 import { useParams, useNavigate, useLocation } from "react-router-dom";
 import { useTheme } from "../contexts/ThemeContext";
 import PageLayout from "../components/PageLayout";
@@ -17,7 +17,7 @@ import globalIcon from "../assets/logos/global.png";
 import lockIcon from "../assets/logos/lock.png";
 import starIcon from "../assets/logos/star.png";
 import aiAssistIcon from "../assets/logos/ai-assist.png";
-import { userService } from "../services/api";
+import { userService, recipeService } from "../services/api";
 import PublisherInfo from "../components/PublisherInfo";
 
 const SavedRecipeDetails = () => {
@@ -91,7 +91,24 @@ const SavedRecipeDetails = () => {
   }, []);
 
   // Get recipe from navigation state if available
-  const recipe = location.state?.recipe || null;
+  const stateRecipe = location.state?.recipe || null;
+  const [details, setDetails] = useState(null);
+  const [detailsError, setDetailsError] = useState(null);
+
+  // Lists only carry recipe summaries, so fetch ingredients and instructions on demand
+  const needsDetails = Boolean(stateRecipe?.id && !stateRecipe.instructions);
+  useEffect(() => {
+    if (!needsDetails || !isAuthenticated) return;
+    recipeService
+      .getRecipeDetails(stateRecipe.id)
+      .then(setDetails)
+      .catch(() => setDetailsError("Failed to load recipe. Please try again."));
+  }, [needsDetails, isAuthenticated, stateRecipe?.id]);
+
+  const recipe = useMemo(
+    () => (needsDetails ? details && { ...stateRecipe, ...details } : stateRecipe),
+    [needsDetails, details, stateRecipe]
+  );
 
   useEffect(() => {
     if (recipe && recipe.id) {
@@ -111,6 +128,20 @@ const SavedRecipeDetails = () => {
     return null;
   }
 
+  if (needsDetails && !details) {
+    return (
+      <PageLayout>
+        <div className="container mx-auto px-4 py-8">
+          {detailsError ? (
+            <Alert type="error" message={detailsError} />
+          ) : (
+            <p className="text-center">Loading recipe...</p>
+          )}
+        </div>
+      </PageLayout>
+    );
+  }
+
   if (!recipe || !recipe.id) {
     return (
       <PageLayout>
@@ -125,7 +156,7 @@ const SavedRecipeDetails = () => {
   const displayData = formData || recipe;
 
   // Check if user has a rating
-  const hasUserRating = displayData?.userRating !== undefined;
+  const hasUserRating = displayData?.userRating != null;
 
   const handleCopyRecipe = () => {
     const recipeText = `
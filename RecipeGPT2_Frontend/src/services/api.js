@@ -236,6 +236,16 @@ export const recipeService = {
     return response.data;
   },
 
+  /**
+   * Fetch the full details of a recipe; list endpoints only return summaries
+   * @param {string} id - The recipe ID
+   * @returns {Promise<Object>} The recipe with ingredients and instructions
+   */
+  getRecipeDetails: async (id) => {
+    const response = await api.get(`/api/recipes/${id}`);
+    return response.data;
+  },
+
   generateRecipe: async (prompt) => {
     const response = await api.post("/recipes/generate", { prompt });
     return response.data;
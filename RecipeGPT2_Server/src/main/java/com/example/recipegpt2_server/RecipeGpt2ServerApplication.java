@@ -3,12 +3,17 @@ package com.example.recipegpt2_server;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import java.util.Map;
+
 @SpringBootApplication
 public class RecipeGpt2ServerApplication {
 
 	public static void main(String[] args) {
 
-		SpringApplication.run(RecipeGpt2ServerApplication.class, args);
+		SpringApplication application = new SpringApplication(RecipeGpt2ServerApplication.class);
+		// Serve requests on virtual threads unless application.properties says otherwise
+		application.setDefaultProperties(Map.of("spring.threads.virtual.enabled", "true"));
+		application.run(args);
 	}
 
 }
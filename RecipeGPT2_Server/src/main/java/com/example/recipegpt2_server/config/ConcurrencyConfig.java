@@ -0,0 +1,31 @@
+package com.example.recipegpt2_server.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Thread configuration for blocking work.
+ *
+ * Request handling runs on virtual threads when spring.threads.virtual.enabled
+ * is true (the default set in RecipeGpt2ServerApplication), so requests blocked
+ * on Firestore futures or OpenAI calls no longer hold a platform thread each.
+ * The fan-out executor follows the same switch and is used to run independent
+ * blocking lookups of a single request concurrently.
+ */
+@Configuration
+public class ConcurrencyConfig {
+
+    @Bean(name = "fanOutExecutor", destroyMethod = "shutdown")
+    public ExecutorService fanOutExecutor(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${app.fan-out.platform-threads:32}") int platformThreads) {
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("fan-out-", 0).factory());
+        }
+        return Executors.newFixedThreadPool(platformThreads, Thread.ofPlatform().name("fan-out-", 0).daemon().factory());
+    }
+}
@@ -1,15 +1,24 @@
 package com.example.recipegpt2_server.config;
 
 import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.firestore.Firestore;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
+import com.google.firebase.cloud.FirestoreClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.io.IOException;
 import java.io.InputStream;
 
+/**
+ * Firebase is only needed with the Firestore storage backend; the embedded
+ * backend runs without a service account key. The Firestore stores get the
+ * {@link Firestore} client injected from here.
+ */
 @Configuration
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "firestore", matchIfMissing = true)
 public class FirebaseConfig {
 
     @Bean
@@ -31,4 +40,9 @@ public class FirebaseConfig {
             return FirebaseApp.getInstance();
         }
     }
+
+    @Bean
+    public Firestore firestore(FirebaseApp firebaseApp) {
+        return FirestoreClient.getFirestore(firebaseApp);
+    }
 }
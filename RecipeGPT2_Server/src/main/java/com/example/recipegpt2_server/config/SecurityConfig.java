@@ -3,6 +3,7 @@ package com.example.recipegpt2_server.config;
 import com.example.recipegpt2_server.filter.JwtAuthenticationFilter;
 import com.example.recipegpt2_server.service.JwtService;
 import com.example.recipegpt2_server.service.UserService;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
@@ -99,6 +100,8 @@ public class SecurityConfig {
                 .csrf(AbstractHttpConfigurer::disable)
                 .cors(Customizer.withDefaults())
                 .authorizeHttpRequests(auth -> auth
+                        // Completion dispatches of streamed (SSE) responses, authorized on the original request
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         // Static resources and test pages
                         .requestMatchers(
                                 "/", "/index.html", "/stomp-test.html", "/*.html",
@@ -128,7 +131,8 @@ public class SecurityConfig {
     @Bean
     public AuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
-        provider.setUserDetailsService(userService);
+        // Logins check the password against the stored user, not the principal cache
+        provider.setUserDetailsService(userService::loadUserForLogin);
         provider.setPasswordEncoder(passwordEncoder);
         return provider;
     }
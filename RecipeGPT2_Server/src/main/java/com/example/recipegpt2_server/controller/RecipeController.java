@@ -6,16 +6,27 @@ import com.example.recipegpt2_server.model.RecipeQueryRequest;
 import com.example.recipegpt2_server.model.RecipeQueryResponse;
 import com.example.recipegpt2_server.service.RecipeService;
 import com.example.recipegpt2_server.service.UserService;
+import com.example.recipegpt2_server.service.GenerationCache;
+import com.example.recipegpt2_server.service.OpenAiClient;
+import com.example.recipegpt2_server.service.QuotePool;
+import com.example.recipegpt2_server.service.RatingBuffer;
+import com.example.recipegpt2_server.service.RecipeStreamParser;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 @RestController
@@ -28,13 +39,27 @@ public class RecipeController {
         @Autowired
         private UserService userService;
 
-        private final RestTemplate restTemplate = new RestTemplate();
-        private final String openAiApiKey;
-        private final String openAiApiUrl = "https://api.openai.com/v1/chat/completions";
+        @Autowired
+        private QuotePool quotePool;
+
+        @Autowired
+        private GenerationCache generationCache;
+
+        @Autowired
+        private RatingBuffer ratingBuffer;
+
+        @Autowired
+        @Qualifier("fanOutExecutor")
+        private ExecutorService fanOutExecutor;
+
+        @Value("${openai.stream-timeout-ms:180000}")
+        private long streamTimeoutMillis = 180000;
+
+        private final OpenAiClient openAiClient;
         private final ObjectMapper objectMapper = new ObjectMapper(); // JSON Processor
 
-        public RecipeController(@Value("${spring.ai.openai.api-key}") String openAiApiKey) {
-                this.openAiApiKey = openAiApiKey;
+        public RecipeController(OpenAiClient openAiClient) {
+                this.openAiClient = openAiClient;
         }
 
         // ----------------------
@@ -48,43 +73,45 @@ public class RecipeController {
          * 3. Saves the recipes directly to Firestore.
          */
         @GetMapping("/getRecipes")
-        public ResponseEntity<?> getRecipes(
+        public CompletableFuture<ResponseEntity<?>> getRecipes(
                         @RequestParam String recipeQuery,
                         @RequestParam(defaultValue = "5") int numberOfRecipes) {
 
                 // 1. Get the authenticated user from Spring Security context
                 Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
                 if (authentication == null || !authentication.isAuthenticated()) {
-                        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                                        .body("User not authenticated");
+                        return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                                        .body("User not authenticated"));
                 }
 
                 User user = (User) authentication.getPrincipal();
 
                 // 2. Build the JSON schema and request body for recipes
-                Map<String, Object> recipeSchema = buildRecipeSchema();
-                Map<String, Object> requestBody = buildRequestBody(
-                                "gpt-4o",
-                                "You are a recipe generator. Respond with valid JSON format, without extra escaping or backslashes. Make sure appropriately categorize the recipes. "
-                                                +
-                                                "These are the categories, choose the ones that fit them best (individually), you can choose multiple ones from here BUT DONT CHOOSE ANYTHING BESIDES THESE!: Asian Cooking, Mediterranean Cooking, "
-                                                +
-                                                "Latin American Cooking, Middle Eastern & North African Cooking, Indian & South Asian Cooking, "
-                                                +
-                                                "European Continental Cooking, African Cooking, American Cooking, Vegetarian & Plant-Based, Vegan, Gluten-Free, "
-                                                +
-                                                "Low-Carb & Keto, Paleo & Whole30, Seafood & Pescatarian, Desserts & Baking, Breakfast & Brunch, Street Food & Snacks, Soups & Stews, Salads & Grain Bowls, Fusion & Modernist, Halal,"
-                                                +
-                                                "Beverages.",
-                                "Generate " + numberOfRecipes + " recipes for '" + recipeQuery
-                                                + "' strictly following the given schema.",
-                                "multiple_recipes_schema",
-                                recipeSchema);
+                Map<String, Object> requestBody = buildRecipeGenerationRequest(recipeQuery, numberOfRecipes);
+
+                // 3. Serve a previously generated set for the same query by saving copies for this user
+                String cacheKey = GenerationCache.key(recipeQuery, numberOfRecipes, (String) requestBody.get("model"));
+                List<Map<String, Object>> cachedRecipes = generationCache.get(cacheKey);
+                if (cachedRecipes != null) {
+                        return CompletableFuture.supplyAsync(() -> saveGeneratedRecipes(
+                                        ResponseEntity.ok(Map.of("recipes", cachedRecipes)), user, null), fanOutExecutor);
+                }
+
+                // 4. Otherwise call OpenAI API, then save the recipes without holding the request thread
+                return sendRequestToOpenAI(requestBody)
+                                .thenApplyAsync(openAiResponse -> saveGeneratedRecipes(openAiResponse, user, cacheKey), fanOutExecutor);
+        }
 
-                // 3. Call OpenAI API and parse the response
-                ResponseEntity<?> openAiResponse = sendRequestToOpenAI(requestBody);
+        /**
+         * Parses the generated recipes out of the OpenAI response and saves them for the user.
+         * The generated set is cached under cacheKey unless it is null.
+         */
+        private ResponseEntity<?> saveGeneratedRecipes(ResponseEntity<?> openAiResponse, User user, String cacheKey) {
+                if (!openAiResponse.getStatusCode().is2xxSuccessful()) {
+                        return openAiResponse;
+                }
 
-                // 4. Parse and save the recipes
+                // 5. Parse and save the recipes
                 List<Recipe> savedRecipes = new ArrayList<>();
                 if (openAiResponse.getBody() instanceof Map) {
                         Map<String, Object> responseMap = (Map<String, Object>) openAiResponse.getBody();
@@ -92,19 +119,30 @@ public class RecipeController {
                                 Object recipesObj = responseMap.get("recipes");
                                 if (recipesObj instanceof List) {
                                         List<Map<String, Object>> recipeMaps = (List<Map<String, Object>>) recipesObj;
+                                        if (cacheKey != null) {
+                                                generationCache.put(cacheKey, recipeMaps);
+                                        }
 
-                                        // Convert and save each recipe
+                                        // Convert each recipe
+                                        List<Recipe> recipes = new ArrayList<>();
                                         for (Map<String, Object> recipeMap : recipeMaps) {
                                                 try {
                                                         Recipe recipe = Recipe.fromMap(recipeMap, null);
                                                         recipe.setUserId(user.getId()); // Set the user ID
                                                         recipe.setPublic(false); // Default to private
-                                                        savedRecipes.add(recipeService.saveRecipe(recipe));
+                                                        recipes.add(recipe);
                                                 } catch (Exception e) {
                                                         // Log error but continue with other recipes
-                                                        System.err.println("Error saving recipe: " + e.getMessage());
+                                                        System.err.println("Error parsing recipe: " + e.getMessage());
                                                 }
                                         }
+
+                                        // Save them together in one batched write
+                                        try {
+                                                savedRecipes = recipeService.saveRecipes(recipes, user.getId());
+                                        } catch (Exception e) {
+                                                System.err.println("Error saving recipes: " + e.getMessage());
+                                        }
                                 } else {
                                         return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                                                         .body("Invalid recipe format received from OpenAI");
@@ -124,7 +162,7 @@ public class RecipeController {
                                         .body("Failed to save any recipes");
                 }
 
-                // 5. Return the saved recipes
+                // 6. Return the saved recipes
                 Map<String, Object> result = new HashMap<>();
                 result.put("message", "Recipes generated and saved successfully");
                 result.put("savedRecipeCount", savedRecipes.size());
@@ -132,8 +170,68 @@ public class RecipeController {
                 return ResponseEntity.ok(result);
         }
 
+        /**
+         * Streaming variant of getRecipes using Server-Sent Events.
+         * Each recipe is saved and sent as a "recipe" event as soon as its JSON
+         * object is complete in the OpenAI stream, followed by a "done" event
+         * with the saved count. Failures are reported as an "error" event.
+         */
+        @GetMapping(value = "/getRecipes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        public SseEmitter streamRecipes(
+                        @RequestParam String recipeQuery,
+                        @RequestParam(defaultValue = "5") int numberOfRecipes) {
+                SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+
+                Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+                if (authentication == null || !authentication.isAuthenticated()
+                                || !(authentication.getPrincipal() instanceof User user)) {
+                        sendError(emitter, "User not authenticated");
+                        return emitter;
+                }
+
+                Map<String, Object> requestBody = buildRecipeGenerationRequest(recipeQuery, numberOfRecipes);
+
+                // The request thread returns immediately; the stream is read on the OpenAI client's threads
+                RecipeStreamParser parser = new RecipeStreamParser();
+                int[] savedCount = {0};
+                openAiClient.stream(requestBody, content -> {
+                        for (String recipeJson : parser.feed(content)) {
+                                Recipe saved = saveGeneratedRecipe(recipeJson, user);
+                                if (saved != null) {
+                                        emitter.send(SseEmitter.event().name("recipe").data(saved));
+                                        savedCount[0]++;
+                                }
+                        }
+                }).whenComplete((ignored, error) -> {
+                        if (error != null) {
+                                Throwable cause = unwrap(error);
+                                System.err.println("❌ Recipe stream failed: " + cause.getMessage());
+                                sendError(emitter, "Error calling OpenAI: " + cause.getMessage());
+                                return;
+                        }
+                        if (savedCount[0] == 0) {
+                                sendError(emitter, "Failed to save any recipes");
+                                return;
+                        }
+                        try {
+                                emitter.send(SseEmitter.event().name("done")
+                                                .data(Map.of("savedRecipeCount", savedCount[0])));
+                                emitter.complete();
+                        } catch (Exception e) {
+                                emitter.completeWithError(e);
+                        }
+                });
+                return emitter;
+        }
+
         @GetMapping("/randomQuote")
-        public ResponseEntity<?> getRandomQuote() {
+        public CompletableFuture<ResponseEntity<?>> getRandomQuote() {
+                // Serve from the pre-generated pool; only call OpenAI while the pool is still empty
+                String pooledQuote = quotePool.randomQuote();
+                if (pooledQuote != null) {
+                        return CompletableFuture.completedFuture(ResponseEntity.ok(Map.of("quote", pooledQuote)));
+                }
+
                 // 1) Build the JSON schema for quotes
                 Map<String, Object> quoteSchema = buildQuoteSchema();
 
@@ -150,13 +248,13 @@ public class RecipeController {
         }
 
         @PostMapping("/queryRecipe")
-        public ResponseEntity<?> queryRecipe(@RequestBody RecipeQueryRequest queryRequest) {
+        public CompletableFuture<ResponseEntity<?>> queryRecipe(@RequestBody RecipeQueryRequest queryRequest) {
                 try {
                         // 1. Get the recipe based on the provided ID
                         Recipe recipe = recipeService.getRecipeById(queryRequest.getRecipeId());
                         if (recipe == null) {
-                                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                                        .body("Recipe not found with ID: " + queryRequest.getRecipeId());
+                                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                        .body("Recipe not found with ID: " + queryRequest.getRecipeId()));
                         }
 
                         // 2. Convert the recipe to a structured format for GPT
@@ -194,27 +292,27 @@ public class RecipeController {
                         );
 
                         // 7. Send the request to OpenAI and handle the response
-                        ResponseEntity<?> openAiResponse = sendRequestToOpenAI(requestBody);
-                        
-                        if (openAiResponse.getStatusCode() == HttpStatus.OK && openAiResponse.getBody() instanceof Map) {
-                                Map<String, Object> responseMap = (Map<String, Object>) openAiResponse.getBody();
-                                
-                                if (responseMap.containsKey("responseToUser") && responseMap.containsKey("summaryOfConvo")) {
-                                        RecipeQueryResponse response = new RecipeQueryResponse(
-                                            (String) responseMap.get("responseToUser"),
-                                            (String) responseMap.get("summaryOfConvo")
-                                        );
-                                        return ResponseEntity.ok(response);
-                                } else {
-                                        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                                                .body("Invalid response format from OpenAI. Missing required fields.");
+                        return sendRequestToOpenAI(requestBody).thenApply(openAiResponse -> {
+                                if (openAiResponse.getStatusCode() == HttpStatus.OK && openAiResponse.getBody() instanceof Map) {
+                                        Map<String, Object> responseMap = (Map<String, Object>) openAiResponse.getBody();
+
+                                        if (responseMap.containsKey("responseToUser") && responseMap.containsKey("summaryOfConvo")) {
+                                                RecipeQueryResponse response = new RecipeQueryResponse(
+                                                    (String) responseMap.get("responseToUser"),
+                                                    (String) responseMap.get("summaryOfConvo")
+                                                );
+                                                return ResponseEntity.ok(response);
+                                        } else {
+                                                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                                        .body("Invalid response format from OpenAI. Missing required fields.");
+                                        }
                                 }
-                        }
-                        
-                        return openAiResponse;
+
+                                return openAiResponse;
+                        });
                 } catch (Exception e) {
-                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                                .body("Error processing recipe query: " + e.getMessage());
+                        return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                .body("Error processing recipe query: " + e.getMessage()));
                 }
         }
 
@@ -239,8 +337,10 @@ public class RecipeController {
                 
                 User user = (User) authentication.getPrincipal();
                 
-                // 2. Add the rating to the recipe
-                Recipe updatedRecipe = recipeService.addRatingToRecipe(recipeId, rating, user.getId());
+                // 2. Add the rating to the recipe, or buffer it in write-behind mode
+                Recipe updatedRecipe = ratingBuffer.isEnabled()
+                        ? ratingBuffer.addRating(recipeId, rating, user.getId())
+                        : recipeService.addRatingToRecipe(recipeId, rating, user.getId());
                 
                 // 3. Return a success response
                 Map<String, Object> response = new HashMap<>();
@@ -278,8 +378,10 @@ public class RecipeController {
                 
                 User user = (User) authentication.getPrincipal();
                 
-                // 2. Delete the rating from the recipe
-                Recipe updatedRecipe = recipeService.deleteRatingFromRecipe(recipeId, user.getId());
+                // 2. Delete the rating from the recipe, or buffer the deletion in write-behind mode
+                Recipe updatedRecipe = ratingBuffer.isEnabled()
+                        ? ratingBuffer.deleteRating(recipeId, user.getId())
+                        : recipeService.deleteRatingFromRecipe(recipeId, user.getId());
                 
                 // 3. Return a success response
                 Map<String, Object> response = new HashMap<>();
@@ -373,6 +475,29 @@ public class RecipeController {
                 return requestBody;
         }
 
+        /**
+         * Builds the OpenAI request that generates recipes for a query.
+         */
+        private Map<String, Object> buildRecipeGenerationRequest(String recipeQuery, int numberOfRecipes) {
+                return buildRequestBody(
+                                "gpt-4o",
+                                "You are a recipe generator. Respond with valid JSON format, without extra escaping or backslashes. Make sure appropriately categorize the recipes. "
+                                                +
+                                                "These are the categories, choose the ones that fit them best (individually), you can choose multiple ones from here BUT DONT CHOOSE ANYTHING BESIDES THESE!: Asian Cooking, Mediterranean Cooking, "
+                                                +
+                                                "Latin American Cooking, Middle Eastern & North African Cooking, Indian & South Asian Cooking, "
+                                                +
+                                                "European Continental Cooking, African Cooking, American Cooking, Vegetarian & Plant-Based, Vegan, Gluten-Free, "
+                                                +
+                                                "Low-Carb & Keto, Paleo & Whole30, Seafood & Pescatarian, Desserts & Baking, Breakfast & Brunch, Street Food & Snacks, Soups & Stews, Salads & Grain Bowls, Fusion & Modernist, Halal,"
+                                                +
+                                                "Beverages.",
+                                "Generate " + numberOfRecipes + " recipes for '" + recipeQuery
+                                                + "' strictly following the given schema.",
+                                "multiple_recipes_schema",
+                                buildRecipeSchema());
+        }
+
         /**
          * JSON schema for multiple recipes.
          */
@@ -422,46 +547,52 @@ public class RecipeController {
          * Sends the request to OpenAI and returns only the parsed JSON from
          * message.content.
          */
-        private ResponseEntity<?> sendRequestToOpenAI(Map<String, Object> requestBody) {
-                try {
-                        // Set up headers
-                        HttpHeaders headers = new HttpHeaders();
-                        headers.setContentType(MediaType.APPLICATION_JSON);
-                        headers.setBearerAuth(openAiApiKey);
-
-                        // Send the request
-                        HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(requestBody, headers);
-                        ResponseEntity<Map> response = restTemplate.exchange(
-                                        openAiApiUrl,
-                                        HttpMethod.POST,
-                                        requestEntity,
-                                        Map.class);
-
-                        // Extract the content from the response
-                        if (response.getBody() != null && response.getBody().containsKey("choices")) {
-                                List<Map<String, Object>> choices = (List<Map<String, Object>>) response.getBody()
-                                                .get("choices");
-                                if (!choices.isEmpty()) {
-                                        Map<String, Object> choice = choices.get(0);
-                                        if (choice.containsKey("message")) {
-                                                Map<String, String> message = (Map<String, String>) choice
-                                                                .get("message");
-                                                if (message.containsKey("content")) {
-                                                        // Parse the content as JSON
-                                                        String content = message.get("content");
-                                                        Map<String, Object> parsedContent = objectMapper
-                                                                        .readValue(content, Map.class);
-                                                        return ResponseEntity.ok(parsedContent);
-                                                }
+        private CompletableFuture<ResponseEntity<?>> sendRequestToOpenAI(Map<String, Object> requestBody) {
+                return openAiClient.complete(requestBody)
+                                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                                .exceptionally(error -> {
+                                        Throwable cause = unwrap(error);
+                                        if (cause instanceof RejectedExecutionException) {
+                                                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                                                .body(cause.getMessage());
                                         }
-                                }
-                        }
+                                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                                        .body("Error calling OpenAI: " + cause.getMessage());
+                                });
+        }
 
-                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                                        .body("Failed to parse OpenAI response");
+        private static Throwable unwrap(Throwable error) {
+                while (error instanceof CompletionException && error.getCause() != null) {
+                        error = error.getCause();
+                }
+                return error;
+        }
+
+        /**
+         * Parses one streamed recipe object and saves it for the user.
+         * Returns null if the recipe could not be parsed or saved.
+         */
+        private Recipe saveGeneratedRecipe(String recipeJson, User user) {
+                try {
+                        Map<String, Object> recipeMap = objectMapper.readValue(recipeJson,
+                                        new TypeReference<Map<String, Object>>() {});
+                        Recipe recipe = Recipe.fromMap(recipeMap, null);
+                        recipe.setUserId(user.getId()); // Set the user ID
+                        recipe.setPublic(false); // Default to private
+                        return recipeService.saveRecipe(recipe);
                 } catch (Exception e) {
-                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                                        .body("Error calling OpenAI: " + e.getMessage());
+                        // Log error but continue with other recipes
+                        System.err.println("Error saving recipe: " + e.getMessage());
+                        return null;
+                }
+        }
+
+        private void sendError(SseEmitter emitter, String message) {
+                try {
+                        emitter.send(SseEmitter.event().name("error").data(message));
+                        emitter.complete();
+                } catch (Exception e) {
+                        emitter.completeWithError(e);
                 }
         }
 
@@ -1,9 +1,11 @@
 package com.example.recipegpt2_server.controller;
 
 import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.model.RecipeSummary;
 import com.example.recipegpt2_server.model.RecipeUpdateRequest;
 import com.example.recipegpt2_server.model.DeleteRecipesRequest;
 import com.example.recipegpt2_server.model.User;
+import com.example.recipegpt2_server.service.RatingBuffer;
 import com.example.recipegpt2_server.service.RecipeService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -17,6 +19,8 @@ import java.util.concurrent.ExecutionException;
 import java.util.Map;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/recipes")
@@ -25,6 +29,9 @@ public class RecipeEditorController {
     @Autowired
     private RecipeService recipeService;
 
+    @Autowired
+    private RatingBuffer ratingBuffer;
+
     /**
      * Create a new recipe
      * - All authenticated users can create recipes
@@ -58,24 +65,65 @@ public class RecipeEditorController {
 
     /**
      * Get all recipes created by the current user
+     * - Summaries by default; view=full returns complete recipes
      */
     @GetMapping("/my-recipes")
-    public ResponseEntity<?> getMyRecipes() {
+    public ResponseEntity<?> getMyRecipes(@RequestParam(required = false) String view) {
         try {
             // Get the authenticated user
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             User currentUser = (User) authentication.getPrincipal();
 
             // Get recipes where userId matches current user's id
-            List<Recipe> recipes = recipeService.getRecipesByUserId(currentUser.getId());
+            if ("full".equals(view)) {
+                List<Recipe> recipes = recipeService.getRecipesByUserId(currentUser.getId());
+                return ResponseEntity.ok(recipes);
+            }
+            List<RecipeSummary> summaries = recipeService.getRecipeSummariesByUserId(currentUser.getId());
 
-            return ResponseEntity.ok(recipes);
+            return ResponseEntity.ok(summaries);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Error fetching user recipes: " + e.getMessage());
         }
     }
 
+    /**
+     * Get the full details of one recipe, for opening a recipe from a list
+     * 
+     * - Owners see all rating information
+     * - Other users can view public recipes and the recipes they saved, with the
+     *   average and their own rating only
+     */
+    @GetMapping("/{recipeId}")
+    public ResponseEntity<?> getRecipe(@PathVariable String recipeId) {
+        try {
+            // Get the authenticated user
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            User currentUser = (User) authentication.getPrincipal();
+
+            Recipe recipe = recipeService.getRecipeForUser(recipeId, currentUser);
+            if (recipe == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body("Recipe not found");
+            }
+
+            // A buffered, not yet flushed rating takes precedence so the user reads their own write
+            RatingBuffer.PendingRating pending = ratingBuffer.pendingRating(recipeId, currentUser.getId());
+            if (pending != null && !currentUser.getId().equals(recipe.getUserId())) {
+                recipe.setUserRating(pending.rating());
+            }
+
+            return ResponseEntity.ok(recipe);
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error fetching recipe: " + e.getMessage());
+        }
+    }
+
     /**
      * Update a recipe owned by the current user
      * 
@@ -184,38 +232,41 @@ public class RecipeEditorController {
             List<String> failedToDelete = new ArrayList<>();
             Map<String, String> failureReasons = new HashMap<>();
 
-            // Process each recipe
-            for (String recipeId : deleteRequest.getRecipeIds()) {
-                try {
-                    // Get the recipe to check ownership
-                    Recipe recipe = recipeService.getRecipeById(recipeId);
-
-                    // If recipe doesn't exist
-                    if (recipe == null) {
-                        failedToDelete.add(recipeId);
-                        failureReasons.put(recipeId, "Recipe not found");
-                        continue;
-                    }
-
-                    // Check if the user owns this recipe
-                    if (!recipe.getUserId().equals(currentUser.getId())) {
-                        failedToDelete.add(recipeId);
-                        failureReasons.put(recipeId, "You don't have permission to delete this recipe");
-                        continue;
-                    }
-
-                    // Delete the recipe including cleanup of all related user references
-                    boolean deleted = recipeService.deleteRecipe(recipeId);
-
-                    if (deleted) {
-                        successfullyDeleted.add(recipeId);
-                    } else {
-                        failedToDelete.add(recipeId);
-                        failureReasons.put(recipeId, "Failed to delete recipe");
-                    }
-                } catch (Exception e) {
+            // Fetch all targets with one batched read
+            Set<String> recipeIds = new LinkedHashSet<>(deleteRequest.getRecipeIds());
+            Map<String, Recipe> recipes = recipeService.getRecipesByIds(recipeIds);
+
+            // Check existence and ownership in memory
+            List<Recipe> ownedRecipes = new ArrayList<>();
+            for (String recipeId : recipeIds) {
+                Recipe recipe = recipes.get(recipeId);
+
+                // If recipe doesn't exist
+                if (recipe == null) {
+                    failedToDelete.add(recipeId);
+                    failureReasons.put(recipeId, "Recipe not found");
+                    continue;
+                }
+
+                // Check if the user owns this recipe
+                if (!currentUser.getId().equals(recipe.getUserId())) {
                     failedToDelete.add(recipeId);
-                    failureReasons.put(recipeId, "Error: " + e.getMessage());
+                    failureReasons.put(recipeId, "You don't have permission to delete this recipe");
+                    continue;
+                }
+
+                ownedRecipes.add(recipe);
+            }
+
+            // Delete in batched writes; user references are cleaned up in one combined background pass
+            Map<String, String> deleteErrors = recipeService.deleteRecipes(ownedRecipes);
+            for (Recipe recipe : ownedRecipes) {
+                String error = deleteErrors.get(recipe.getId());
+                if (error == null) {
+                    successfullyDeleted.add(recipe.getId());
+                } else {
+                    failedToDelete.add(recipe.getId());
+                    failureReasons.put(recipe.getId(), error);
                 }
             }
 
@@ -1,6 +1,8 @@
 package com.example.recipegpt2_server.controller;
 
 import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.model.RecipePage;
+import com.example.recipegpt2_server.model.RecipeSummary;
 import com.example.recipegpt2_server.repository.RecipeRepository;
 import com.example.recipegpt2_server.repository.UserRepository;
 import com.example.recipegpt2_server.service.JwtService;
@@ -9,13 +11,20 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 @RestController
 @RequestMapping("/api/recipes")
 public class RecipeSearchController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // Value of the view parameter that returns complete recipes instead of summaries
+    private static final String FULL_VIEW = "full";
+
     @Autowired
     private RecipeRepository recipeRepository;
 
@@ -33,13 +42,21 @@ public class RecipeSearchController {
      * @param category   Optional category filter
      * @param text       Optional text to search in title, ingredients, and
      *                   instructions
-     * @return List of matching public recipes
+     * @param pageSize   Optional page size; when set, a single page is returned
+     *                   together with the cursor of the next page
+     * @param cursor     Optional cursor returned with the previous page
+     * @param view       Optional "full" to return complete recipes instead of
+     *                   summaries
+     * @return List of matching public recipe summaries, or a page of them
      */
     @GetMapping("/public")
     public ResponseEntity<?> getPublicRecipes(
             @RequestHeader("Authorization") String authHeader,
             @RequestParam(required = false) String category,
-            @RequestParam(required = false) String text) {
+            @RequestParam(required = false) String text,
+            @RequestParam(required = false) Integer pageSize,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String view) {
         try {
             // Validate the token and get user ID
             if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -62,9 +79,26 @@ public class RecipeSearchController {
                 userId = userOpt.get().getId();
             }
 
+            if (pageSize != null && (pageSize < 1 || pageSize > MAX_PAGE_SIZE)) {
+                return ResponseEntity.badRequest()
+                        .body("pageSize must be between 1 and " + MAX_PAGE_SIZE);
+            }
+
             // Proceed with fetching public recipes, excluding user's own and saved recipes
-            List<Recipe> recipes = recipeRepository.fetchPublicRecipes(userId, category, text);
-            return ResponseEntity.ok(recipes);
+            int limit = pageSize != null ? pageSize : 0;
+            RecipePage<?> page = FULL_VIEW.equals(view)
+                    ? recipeRepository.fetchPublicRecipesPage(userId, category, text, limit, cursor)
+                    : recipeRepository.fetchPublicRecipeSummariesPage(userId, category, text, limit, cursor);
+            if (pageSize == null) {
+                return ResponseEntity.ok(page.getRecipes());
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("recipes", page.getRecipes());
+            response.put("nextCursor", page.getNextCursor());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(e.getMessage());
         } catch (ExecutionException | InterruptedException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Error fetching public recipes: " + e.getMessage());
@@ -80,13 +114,22 @@ public class RecipeSearchController {
      * @param category   Optional category filter
      * @param text       Optional text to search in title, ingredients, and
      *                   instructions
-     * @return List of matching saved recipes and user's own recipes
+     * @param pageSize   Optional page size; when set, a single page is returned
+     *                   together with the cursor of the next page
+     * @param cursor     Optional cursor returned with the previous page
+     * @param view       Optional "full" to return complete recipes instead of
+     *                   summaries
+     * @return List of summaries of matching saved recipes and user's own
+     *         recipes, or a page of them
      */
     @GetMapping("/saved")
     public ResponseEntity<?> getSavedRecipes(
             @RequestHeader("Authorization") String authHeader,
             @RequestParam(required = false) String category,
-            @RequestParam(required = false) String text) {
+            @RequestParam(required = false) String text,
+            @RequestParam(required = false) Integer pageSize,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String view) {
         try {
             // Extract token from Authorization header
             if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -104,17 +147,46 @@ public class RecipeSearchController {
                     userId = userOpt.get().getId();
                 }
             }
-            List<Recipe> recipes = recipeRepository.fetchCreatedAndSavedRecipes(token, category, text);
-            // Add isUserOwner attribute to each recipe
+            if (pageSize != null && (pageSize < 1 || pageSize > MAX_PAGE_SIZE)) {
+                return ResponseEntity.badRequest()
+                        .body("pageSize must be between 1 and " + MAX_PAGE_SIZE);
+            }
+            int limit = pageSize != null ? pageSize : 0;
             List<Object> recipesWithOwner = new java.util.ArrayList<>();
-            for (Recipe recipe : recipes) {
-                java.util.Map<String, Object> map = new java.util.HashMap<>();
-                map.putAll(recipe.toMap());
-                map.put("id", recipe.getId());
-                map.put("isUserOwner", userId != null && userId.equals(recipe.getUserId()));
-                recipesWithOwner.add(map);
+            String nextCursor;
+            // Add isUserOwner attribute to each recipe
+            if (FULL_VIEW.equals(view)) {
+                RecipePage<Recipe> page = recipeRepository.fetchCreatedAndSavedRecipesPage(token, category, text,
+                        limit, cursor);
+                for (Recipe recipe : page.getRecipes()) {
+                    java.util.Map<String, Object> map = new java.util.HashMap<>();
+                    map.putAll(recipe.toMap());
+                    map.put("id", recipe.getId());
+                    map.put("isUserOwner", userId != null && userId.equals(recipe.getUserId()));
+                    recipesWithOwner.add(map);
+                }
+                nextCursor = page.getNextCursor();
+            } else {
+                RecipePage<RecipeSummary> page = recipeRepository.fetchCreatedAndSavedRecipeSummariesPage(token,
+                        category, text, limit, cursor);
+                for (RecipeSummary summary : page.getRecipes()) {
+                    java.util.Map<String, Object> map = summary.toMap();
+                    map.put("isUserOwner", userId != null && userId.equals(summary.getUserId()));
+                    recipesWithOwner.add(map);
+                }
+                nextCursor = page.getNextCursor();
             }
-            return ResponseEntity.ok(recipesWithOwner);
+
+            if (pageSize == null) {
+                return ResponseEntity.ok(recipesWithOwner);
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("recipes", recipesWithOwner);
+            response.put("nextCursor", nextCursor);
+            return ResponseEntity.ok(response);
+        } catch (RecipeRepository.InvalidCursorException e) {
+            return ResponseEntity.badRequest()
+                    .body(e.getMessage());
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(e.getMessage());
@@ -30,6 +30,44 @@ public class UserController {
     @Autowired
     private JwtService jwtService;
 
+    /**
+     * Current user profile endpoint.
+     * Returns the profile fields that compact JWTs no longer carry
+     * (username, profile_pic, bio, preferences, savedRecipes, createdRecipes).
+     * Served from the authenticated principal, so it costs no Firestore read
+     * while the principal cache is warm. Clients can compare profileVersion
+     * with the token's "pv" claim to decide when to refetch.
+     * 
+     * GET /api/users/me
+     */
+    @GetMapping("/me")
+    public ResponseEntity<?> getCurrentUser() {
+        try {
+            // Get the authenticated user from the security context
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            User currentUser = (User) authentication.getPrincipal();
+
+            // Build the response
+            Map<String, Object> response = new HashMap<>();
+            response.put("id", currentUser.getId());
+            response.put("email", currentUser.getEmail());
+            response.put("username", currentUser.getUsernameField());
+            response.put("isPublisher", currentUser.isPublisher());
+            response.put("profile_pic", currentUser.getProfile_pic());
+            response.put("bio", currentUser.getBio());
+            response.put("preferences", currentUser.getPreferences());
+            response.put("savedRecipes", currentUser.getSavedRecipes());
+            response.put("createdRecipes", currentUser.getCreatedRecipes());
+            response.put("profileVersion", currentUser.getProfileVersion());
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error fetching user profile: " + e.getMessage());
+        }
+    }
+
     /**
      * Update user profile endpoint.
      * Allows a user to update their own profile attributes (username, password, profile_pic, bio, preferences).
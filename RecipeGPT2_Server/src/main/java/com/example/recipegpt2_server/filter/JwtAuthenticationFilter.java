@@ -2,6 +2,7 @@ package com.example.recipegpt2_server.filter;
 
 import com.example.recipegpt2_server.service.JwtService;
 import com.example.recipegpt2_server.service.UserService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -46,16 +47,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         jwt = authHeader.substring(7);
         
         try {
-            // Extract username (email) from token
-            userEmail = jwtService.extractUsername(jwt);
+            // Verify signature and expiry once, then extract username (email) from the claims
+            Claims claims = jwtService.verifyToken(jwt);
+            userEmail = claims.getSubject();
             
             // If username exists and user is not already authenticated
             if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                // Load user details
+                // Load user details (served from the principal cache when warm)
                 UserDetails userDetails = userService.loadUserByUsername(userEmail);
                 
-                // Validate token
-                if (jwtService.isTokenValid(jwt, userDetails)) {
+                // Validate token against the user without re-parsing it
+                if (jwtService.isTokenValid(claims, userDetails)) {
                     // Create authentication token
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails,
@@ -68,6 +70,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                             new WebAuthenticationDetailsSource().buildDetails(request)
                     );
                     SecurityContextHolder.getContext().setAuthentication(authToken);
+
+                    // Hand the verified claims to downstream code
+                    request.setAttribute(JwtService.CLAIMS_ATTRIBUTE, claims);
                 }
             }
         } catch (Exception ignored) {
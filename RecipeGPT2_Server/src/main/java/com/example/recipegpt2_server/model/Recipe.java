@@ -1,13 +1,14 @@
 package com.example.recipegpt2_server.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -15,7 +16,7 @@ import java.util.Map;
  * Model class representing a Recipe.
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Recipe {
@@ -41,50 +42,21 @@ public class Recipe {
     private double rating;
     private int numOfRatings;
     private double totalSumRatings;
-    private Map<String, Double> ratingList;
+
+    // The requesting user's own rating; individual ratings are stored in the
+    // recipes/{id}/ratings subcollection, not in the recipe document. Left out
+    // of responses when the user has not rated the recipe, like in toMap().
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private Double userRating;
 
     /**
      * Converts the Recipe object to a Map for Firestore storage
      * 
      * @return Map representation of the Recipe
+     * @see RecipeCodec#encode
      */
     public Map<String, Object> toMap() {
-        Map<String, Object> map = new HashMap<>();
-
-        // Basic recipe information
-        map.put("title", title);
-        map.put("description", description);
-        map.put("categories", categories != null ? categories : new ArrayList<>());
-        map.put("ingredients", ingredients != null ? ingredients : new ArrayList<>());
-        map.put("instructions", instructions != null ? instructions : new ArrayList<>());
-
-        // Only include timing fields if they are greater than 0
-        if (estimatedCookingTime > 0) {
-            map.put("estimatedCookingTime", estimatedCookingTime);
-        }
-        if (estimatedPrepTime > 0) {
-            map.put("estimatedPrepTime", estimatedPrepTime);
-        }
-        map.put("servings", servings);
-
-        // Recipe ownership and visibility
-        if (userId != null) {
-            map.put("userId", userId);
-        }
-        map.put("public", isPublic);
-
-        // Additional properties
-        map.put("image", image != null ? image : "");
-        map.put("rating", rating);
-        map.put("numOfRatings", numOfRatings);
-        map.put("totalSumRatings", totalSumRatings);
-        map.put("ratingList", ratingList != null ? ratingList : new HashMap<>());
-        if (userRating != null) {
-            map.put("userRating", userRating);
-        }
-
-        return map;
+        return RecipeCodec.encode(this);
     }
 
     /**
@@ -93,79 +65,39 @@ public class Recipe {
      * @param map Map containing recipe data from Firestore
      * @param id  The document ID
      * @return Recipe object
+     * @see RecipeCodec#decode(Map, String)
      */
     public static Recipe fromMap(Map<String, Object> map, String id) {
-        Recipe recipe = new Recipe();
-        recipe.setId(id);
-
-        // Basic recipe information
-        recipe.setTitle((String) map.getOrDefault("title", ""));
-        recipe.setDescription((String) map.getOrDefault("description", ""));
-        recipe.setCategories((List<String>) map.getOrDefault("categories", new ArrayList<>()));
-        recipe.setIngredients((List<String>) map.getOrDefault("ingredients", new ArrayList<>()));
-        recipe.setInstructions((List<String>) map.getOrDefault("instructions", new ArrayList<>()));
-
-        // Handle numeric fields with type safety
-        Object cookingTimeObj = map.get("estimatedCookingTime");
-        if (cookingTimeObj instanceof Integer) {
-            recipe.setEstimatedCookingTime((Integer) cookingTimeObj);
-        } else if (cookingTimeObj instanceof Long) {
-            recipe.setEstimatedCookingTime(((Long) cookingTimeObj).intValue());
-        }
-
-        Object prepTimeObj = map.get("estimatedPrepTime");
-        if (prepTimeObj instanceof Integer) {
-            recipe.setEstimatedPrepTime((Integer) prepTimeObj);
-        } else if (prepTimeObj instanceof Long) {
-            recipe.setEstimatedPrepTime(((Long) prepTimeObj).intValue());
-        }
-
-        Object servingsObj = map.get("servings");
-        if (servingsObj instanceof Integer) {
-            recipe.setServings((Integer) servingsObj);
-        } else if (servingsObj instanceof Long) {
-            recipe.setServings(((Long) servingsObj).intValue());
-        }
-
-        // Recipe ownership and visibility
-        recipe.setUserId((String) map.getOrDefault("userId", null));
-        recipe.setPublic((Boolean) map.getOrDefault("public", false));
-
-        // Additional properties
-        recipe.setImage((String) map.getOrDefault("image", ""));
-
-        // Handle rating fields
-        Object ratingObj = map.get("rating");
-        if (ratingObj instanceof Number) {
-            recipe.setRating(((Number) ratingObj).doubleValue());
-        }
-
-        Object numOfRatingsObj = map.get("numOfRatings");
-        if (numOfRatingsObj instanceof Number) {
-            recipe.setNumOfRatings(((Number) numOfRatingsObj).intValue());
-        }
-
-        Object totalSumRatingsObj = map.get("totalSumRatings");
-        if (totalSumRatingsObj instanceof Number) {
-            recipe.setTotalSumRatings(((Number) totalSumRatingsObj).doubleValue());
-        }
+        return RecipeCodec.decode(map, id);
+    }
 
-        // Handle ratingList
-        Object ratingListObj = map.get("ratingList");
-        if (ratingListObj instanceof Map) {
-            @SuppressWarnings("unchecked")
-            Map<String, Double> ratingList = (Map<String, Double>) ratingListObj;
-            recipe.setRatingList(ratingList);
-        } else {
-            recipe.setRatingList(new HashMap<>());
+    /**
+     * Average rating rounded to 1 decimal place, or 0 without ratings
+     *
+     * @param totalSumRatings The sum of all ratings
+     * @param numOfRatings    The number of ratings
+     * @return The average rating
+     */
+    public static double averageRating(double totalSumRatings, int numOfRatings) {
+        if (numOfRatings <= 0) {
+            return 0.0;
         }
+        return Math.round(totalSumRatings / numOfRatings * 10.0) / 10.0;
+    }
 
-        // Handle userRating
-        Object userRatingObj = map.get("userRating");
-        if (userRatingObj instanceof Number) {
-            recipe.setUserRating(((Number) userRatingObj).doubleValue());
+    /**
+     * Reads a user's rating from the inline ratingList map that recipe documents
+     * written before the ratings subcollection still carry. Only the user's
+     * entry is decoded, not the whole map.
+     * 
+     * @param document The recipe document
+     * @param userId   The rating user's ID
+     * @return The legacy rating, or null if there is none
+     */
+    public static Double legacyRating(DocumentSnapshot document, String userId) {
+        if (document.exists() && document.get(FieldPath.of("ratingList", userId)) instanceof Number rating) {
+            return rating.doubleValue();
         }
-
-        return recipe;
+        return null;
     }
-}
\ No newline at end of file
+}
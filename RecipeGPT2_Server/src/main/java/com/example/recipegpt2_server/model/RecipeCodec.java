@@ -0,0 +1,170 @@
+package com.example.recipegpt2_server.model;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Converts recipes to and from their Firestore representation.
+ *
+ * Fields are read and set directly without reflection. Missing lists share
+ * one immutable empty list instead of allocating a new ArrayList per field,
+ * so decoded lists are not guaranteed to be mutable; replace them with a
+ * setter. Encoded maps are sized for all fields up front. Document snapshots
+ * are decoded field by field, without building the map of all their fields.
+ *
+ * The Firestore store changes numOfRatings and totalSumRatings with atomic
+ * increments and cannot keep the stored rating in step, so a rated recipe's
+ * rating is the average of its aggregates. The stored rating only counts for
+ * recipes without ratings.
+ */
+public final class RecipeCodec {
+
+    // Number of fields Recipe.toMap writes at most
+    private static final int ENCODED_FIELDS = 16;
+
+    private static final String[] DECODED_FIELDS = {"title", "description", "categories", "ingredients",
+            "instructions", "estimatedCookingTime", "estimatedPrepTime", "servings", "userId", "public", "image",
+            "rating", "numOfRatings", "totalSumRatings", "userRating"};
+
+    // Built once, so reading a snapshot field does not parse the field name each time
+    private static final Map<String, FieldPath> FIELD_PATHS = HashMap.newHashMap(DECODED_FIELDS.length);
+
+    static {
+        for (String field : DECODED_FIELDS) {
+            FIELD_PATHS.put(field, FieldPath.of(field));
+        }
+    }
+
+    private RecipeCodec() {
+    }
+
+    /**
+     * Decodes a recipe document
+     *
+     * @param document An existing recipe document
+     * @return Recipe object
+     */
+    public static Recipe decode(DocumentSnapshot document) {
+        return decode(field -> document.get(FIELD_PATHS.get(field)), document.getId());
+    }
+
+    /**
+     * Decodes a recipe from a Firestore document map. Missing fields keep their
+     * defaults: empty strings and lists, zero numbers and a private recipe.
+     *
+     * @param data Map containing recipe data from Firestore
+     * @param id   The document ID
+     * @return Recipe object
+     */
+    public static Recipe decode(Map<String, Object> data, String id) {
+        return decode(data::get, id);
+    }
+
+    private static Recipe decode(Function<String, Object> data, String id) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+
+        // Basic recipe information
+        recipe.setTitle(string(data.apply("title")));
+        recipe.setDescription(string(data.apply("description")));
+        recipe.setCategories(list(data.apply("categories")));
+        recipe.setIngredients(list(data.apply("ingredients")));
+        recipe.setInstructions(list(data.apply("instructions")));
+
+        // Firestore returns integers as Long; maps built in memory may hold Integer
+        if (data.apply("estimatedCookingTime") instanceof Number cookingTime) {
+            recipe.setEstimatedCookingTime(cookingTime.intValue());
+        }
+        if (data.apply("estimatedPrepTime") instanceof Number prepTime) {
+            recipe.setEstimatedPrepTime(prepTime.intValue());
+        }
+        if (data.apply("servings") instanceof Number servings) {
+            recipe.setServings(servings.intValue());
+        }
+
+        // Recipe ownership and visibility
+        recipe.setUserId((String) data.apply("userId"));
+        recipe.setPublic(Boolean.TRUE.equals(data.apply("public")));
+
+        // Additional properties
+        recipe.setImage(string(data.apply("image")));
+        if (data.apply("rating") instanceof Number rating) {
+            recipe.setRating(rating.doubleValue());
+        }
+        if (data.apply("numOfRatings") instanceof Number numOfRatings) {
+            recipe.setNumOfRatings(numOfRatings.intValue());
+        }
+        if (data.apply("totalSumRatings") instanceof Number totalSumRatings) {
+            recipe.setTotalSumRatings(totalSumRatings.doubleValue());
+        }
+        if (recipe.getNumOfRatings() > 0) {
+            recipe.setRating(Recipe.averageRating(recipe.getTotalSumRatings(), recipe.getNumOfRatings()));
+        }
+        if (data.apply("userRating") instanceof Number userRating) {
+            recipe.setUserRating(userRating.doubleValue());
+        }
+
+        return recipe;
+    }
+
+    /**
+     * Encodes a recipe for Firestore storage
+     *
+     * @param recipe The recipe to encode
+     * @return Map representation of the Recipe
+     */
+    public static Map<String, Object> encode(Recipe recipe) {
+        Map<String, Object> map = HashMap.newHashMap(ENCODED_FIELDS);
+
+        // Basic recipe information
+        map.put("title", recipe.getTitle());
+        map.put("description", recipe.getDescription());
+        map.put("categories", orEmpty(recipe.getCategories()));
+        map.put("ingredients", orEmpty(recipe.getIngredients()));
+        map.put("instructions", orEmpty(recipe.getInstructions()));
+
+        // Only include timing fields if they are greater than 0
+        if (recipe.getEstimatedCookingTime() > 0) {
+            map.put("estimatedCookingTime", recipe.getEstimatedCookingTime());
+        }
+        if (recipe.getEstimatedPrepTime() > 0) {
+            map.put("estimatedPrepTime", recipe.getEstimatedPrepTime());
+        }
+        map.put("servings", recipe.getServings());
+
+        // Recipe ownership and visibility
+        if (recipe.getUserId() != null) {
+            map.put("userId", recipe.getUserId());
+        }
+        map.put("public", recipe.isPublic());
+
+        // Additional properties
+        map.put("image", recipe.getImage() != null ? recipe.getImage() : "");
+        map.put("rating", recipe.getRating());
+        map.put("numOfRatings", recipe.getNumOfRatings());
+        map.put("totalSumRatings", recipe.getTotalSumRatings());
+        if (recipe.getUserRating() != null) {
+            map.put("userRating", recipe.getUserRating());
+        }
+
+        return map;
+    }
+
+    private static String string(Object value) {
+        return value != null ? (String) value : "";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> list(Object value) {
+        return value != null ? (List<String>) value : List.of();
+    }
+
+    private static List<String> orEmpty(List<String> values) {
+        return values != null ? values : List.of();
+    }
+}
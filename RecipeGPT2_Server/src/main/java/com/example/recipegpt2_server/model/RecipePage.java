@@ -0,0 +1,19 @@
+package com.example.recipegpt2_server.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A single page of recipes, or of their summaries, together with the opaque
+ * cursor of the next page. nextCursor is null when there are no more results.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecipePage<T> {
+    private List<T> recipes;
+    private String nextCursor;
+}
@@ -0,0 +1,103 @@
+package com.example.recipegpt2_server.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The card view of a Recipe returned by list and search endpoints. Ingredients
+ * and instructions are left out; the full recipe is fetched by ID when a
+ * recipe is opened.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecipeSummary {
+    // Recipe document fields read for a summary, for Firestore field masks
+    public static final String[] FIELDS = {
+            "title", "description", "categories", "image", "estimatedCookingTime", "estimatedPrepTime",
+            "servings", "userId", "public", "rating", "numOfRatings", "totalSumRatings"
+    };
+
+    private String id;
+    private String title;
+    private String description;
+    private List<String> categories;
+    private String image;
+    private int estimatedCookingTime;
+    private int estimatedPrepTime;
+    private int servings;
+    private String userId;
+    private boolean isPublic;
+    private double rating;
+    private int numOfRatings;
+    private double totalSumRatings;
+    // Left out of responses when the user has not rated the recipe, like in toMap()
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double userRating;
+
+    /**
+     * Creates the summary of a recipe
+     *
+     * @param recipe The full or field-masked recipe
+     * @return RecipeSummary object
+     */
+    public static RecipeSummary of(Recipe recipe) {
+        RecipeSummary summary = new RecipeSummary();
+        summary.setId(recipe.getId());
+        summary.setTitle(recipe.getTitle());
+        summary.setDescription(recipe.getDescription());
+        summary.setCategories(recipe.getCategories());
+        summary.setImage(recipe.getImage());
+        summary.setEstimatedCookingTime(recipe.getEstimatedCookingTime());
+        summary.setEstimatedPrepTime(recipe.getEstimatedPrepTime());
+        summary.setServings(recipe.getServings());
+        summary.setUserId(recipe.getUserId());
+        summary.setPublic(recipe.isPublic());
+        summary.setRating(recipe.getRating());
+        summary.setNumOfRatings(recipe.getNumOfRatings());
+        summary.setTotalSumRatings(recipe.getTotalSumRatings());
+        summary.setUserRating(recipe.getUserRating());
+        return summary;
+    }
+
+    /**
+     * Converts the summary to a Map with the same keys as Recipe.toMap
+     *
+     * @return Map representation of the RecipeSummary
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", id);
+        map.put("title", title);
+        map.put("description", description);
+        map.put("categories", categories != null ? categories : new ArrayList<>());
+        map.put("image", image != null ? image : "");
+        if (estimatedCookingTime > 0) {
+            map.put("estimatedCookingTime", estimatedCookingTime);
+        }
+        if (estimatedPrepTime > 0) {
+            map.put("estimatedPrepTime", estimatedPrepTime);
+        }
+        map.put("servings", servings);
+        if (userId != null) {
+            map.put("userId", userId);
+        }
+        map.put("public", isPublic);
+        map.put("rating", rating);
+        map.put("numOfRatings", numOfRatings);
+        map.put("totalSumRatings", totalSumRatings);
+        if (userRating != null) {
+            map.put("userRating", userRating);
+        }
+        return map;
+    }
+}
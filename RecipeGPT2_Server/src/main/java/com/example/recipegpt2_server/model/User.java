@@ -25,6 +25,8 @@ public class User implements UserDetails {
     private List<String> preferences;
     private List<String> savedRecipes;
     private List<String> createdRecipes;
+    // Bumped whenever the profile payload changes, so clients holding a compact token can tell when to refetch it
+    private long profileVersion;
     
     // NoArgsConstructor with non-null defaults for lists
     public User() {
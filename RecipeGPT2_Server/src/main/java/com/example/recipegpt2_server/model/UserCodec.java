@@ -0,0 +1,80 @@
+package com.example.recipegpt2_server.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts users to and from their stored representation.
+ *
+ * Unlike {@link RecipeCodec}, missing lists are decoded as new ArrayLists:
+ * UserService edits a user's recipe lists in place.
+ */
+public final class UserCodec {
+
+    private UserCodec() {
+    }
+
+    /**
+     * Decodes a user document. Missing fields keep their defaults: empty
+     * strings and lists, no publisher role and profile version 0.
+     *
+     * @param data Map containing user data
+     * @param id   The document ID
+     * @return User object
+     */
+    public static User decode(Map<String, Object> data, String id) {
+        User user = new User();
+        user.setId(id);
+        user.setEmail((String) data.get("email"));
+        user.setUsername((String) data.get("username"));
+        user.setPassword((String) data.get("password"));
+        user.setPublisher(Boolean.TRUE.equals(data.get("publisher")));
+
+        // Get profile_pic and bio
+        user.setProfile_pic(string(data.get("profile_pic")));
+        user.setBio(string(data.get("bio")));
+
+        user.setPreferences(list(data.get("preferences")));
+        user.setSavedRecipes(list(data.get("savedRecipes")));
+        user.setCreatedRecipes(list(data.get("createdRecipes")));
+
+        if (data.get("profileVersion") instanceof Number profileVersion) {
+            user.setProfileVersion(profileVersion.longValue());
+        }
+        return user;
+    }
+
+    /**
+     * Encodes a user for storage. The ID is the document ID and is not stored.
+     *
+     * @param user The user to encode
+     * @return Map representation of the User
+     */
+    public static Map<String, Object> encode(User user) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("email", user.getEmail());
+        map.put("username", user.getUsernameField());
+        map.put("password", user.getPassword());
+        map.put("publisher", user.isPublisher());
+
+        // Always store these fields, even if empty
+        map.put("profile_pic", user.getProfile_pic());
+        map.put("bio", user.getBio());
+        map.put("preferences", user.getPreferences());
+        map.put("savedRecipes", user.getSavedRecipes());
+        map.put("createdRecipes", user.getCreatedRecipes());
+        map.put("profileVersion", user.getProfileVersion());
+        return map;
+    }
+
+    private static String string(Object value) {
+        return value != null ? (String) value : "";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> list(Object value) {
+        return value != null ? (List<String>) value : new ArrayList<>();
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.recipegpt2_server.repository;
+
+import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.store.RecipeStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+/**
+ * In-memory token index over public recipes.
+ *
+ * The index is kept warm by a {@link RecipeStore} listener on the public
+ * recipes, so search requests can be answered without reading the whole
+ * collection. Title, ingredients and instructions
+ * are tokenized into the text index; categories are indexed as whole
+ * lower-cased values.
+ */
+@Component
+public class PublicRecipeIndex {
+
+    @Value("${app.search.index.enabled:true}")
+    private boolean enabled;
+
+    @Autowired(required = false)
+    private RecipeStore recipeStore;
+
+    // Public view of each indexed recipe, ordered by document ID like store results
+    private final NavigableMap<String, Recipe> recipesById = new ConcurrentSkipListMap<>();
+
+    // token -> recipe IDs, sorted so prefix lookups are a range scan
+    private final NavigableMap<String, Set<String>> textIndex = new ConcurrentSkipListMap<>();
+
+    // lower-cased category -> recipe IDs
+    private final Map<String, Set<String>> categoryIndex = new ConcurrentHashMap<>();
+
+    // recipe ID -> indexed keys, so stale postings can be removed on update
+    private final Map<String, Set<String>> tokensById = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> categoriesById = new ConcurrentHashMap<>();
+
+    private volatile boolean ready = false;
+    private RecipeStore.Registration registration;
+
+    /**
+     * Starts the listener that keeps the index in sync with the store
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled || recipeStore == null) {
+            return;
+        }
+
+        registration = recipeStore.listen(true, new RecipeStore.Listener() {
+            @Override
+            public void onChanges(List<RecipeStore.Change> changes) {
+                for (RecipeStore.Change change : changes) {
+                    if (change.recipe() == null) {
+                        evict(change.recipeId());
+                    } else {
+                        index(change.recipe());
+                    }
+                }
+
+                if (!ready) {
+                    ready = true;
+                    System.out.println("✨ Public recipe index ready with " + recipesById.size() + " recipes");
+                }
+            }
+
+            @Override
+            public void onError(Exception error) {
+                // Fall back to direct store queries until the listener recovers
+                ready = false;
+                System.err.println("❌ Public recipe index listener failed: " + error.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Stops the listener
+     */
+    @PreDestroy
+    public void stop() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+        ready = false;
+    }
+
+    /**
+     * Whether the index has received its initial snapshot and can serve queries
+     *
+     * @return true if queries can be answered from memory
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Marks the index as ready without a snapshot listener, for callers that
+     * populate it directly
+     */
+    public void markReady() {
+        ready = true;
+    }
+
+    /**
+     * Number of recipes currently indexed
+     */
+    public int size() {
+        return recipesById.size();
+    }
+
+    /**
+     * Adds or replaces a recipe in the index. Private recipes are evicted.
+     *
+     * @param recipe The recipe to index
+     */
+    public void index(Recipe recipe) {
+        if (!recipe.isPublic()) {
+            evict(recipe.getId());
+            return;
+        }
+
+        evict(recipe.getId());
+
+        // Public search results only expose the average rating
+        recipe.setNumOfRatings(0);
+        recipe.setTotalSumRatings(0.0);
+
+        Set<String> tokens = new HashSet<>();
+        addTokens(tokens, recipe.getTitle());
+        if (recipe.getIngredients() != null) {
+            recipe.getIngredients().forEach(ingredient -> addTokens(tokens, ingredient));
+        }
+        if (recipe.getInstructions() != null) {
+            recipe.getInstructions().forEach(instruction -> addTokens(tokens, instruction));
+        }
+
+        Set<String> categories = new HashSet<>();
+        if (recipe.getCategories() != null) {
+            for (String category : recipe.getCategories()) {
+                if (category != null) {
+                    categories.add(category.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+
+        for (String token : tokens) {
+            textIndex.computeIfAbsent(token, key -> ConcurrentHashMap.newKeySet()).add(recipe.getId());
+        }
+        for (String category : categories) {
+            categoryIndex.computeIfAbsent(category, key -> ConcurrentHashMap.newKeySet()).add(recipe.getId());
+        }
+
+        tokensById.put(recipe.getId(), tokens);
+        categoriesById.put(recipe.getId(), categories);
+        recipesById.put(recipe.getId(), recipe);
+    }
+
+    /**
+     * Removes a recipe and all of its postings from the index
+     *
+     * @param recipeId The recipe ID to remove
+     */
+    public void evict(String recipeId) {
+        if (recipeId == null) {
+            return;
+        }
+
+        recipesById.remove(recipeId);
+
+        Set<String> tokens = tokensById.remove(recipeId);
+        if (tokens != null) {
+            for (String token : tokens) {
+                removePosting(textIndex, token, recipeId);
+            }
+        }
+
+        Set<String> categories = categoriesById.remove(recipeId);
+        if (categories != null) {
+            for (String category : categories) {
+                removePosting(categoryIndex, category, recipeId);
+            }
+        }
+    }
+
+    /**
+     * Finds candidate recipes for a category and text query, ordered by recipe ID.
+     *
+     * Categories match when the indexed category contains the filter string.
+     * The text filter follows the store's rule: it must be a case-insensitive
+     * substring of the title, an ingredient or an instruction. Candidates are
+     * every recipe whose words could contain it: a single query word may sit
+     * anywhere inside an indexed word, otherwise the first word must end one,
+     * inner words must equal one and the last word must start one. Callers
+     * are expected to apply the exact substring filter on the returned
+     * candidates, so results match the direct store query.
+     *
+     * @param category Category to filter recipes by
+     * @param text     Text to search for in title, ingredients, and instructions
+     * @return Candidate recipes in public (rating-stripped) form
+     */
+    public List<Recipe> findCandidates(String category, String text) {
+        Set<String> candidates = null; // null means "no restriction"
+
+        if (category != null && !category.isEmpty() && !"all".equalsIgnoreCase(category)) {
+            String lowerCaseCategory = category.toLowerCase(Locale.ROOT);
+            candidates = new HashSet<>();
+            for (Map.Entry<String, Set<String>> entry : categoryIndex.entrySet()) {
+                if (entry.getKey().contains(lowerCaseCategory)) {
+                    candidates.addAll(entry.getValue());
+                }
+            }
+        }
+
+        if (text != null && !text.isEmpty()) {
+            List<String> queryTokens = new ArrayList<>();
+            addTokens(queryTokens, text);
+            for (int i = 0; i < queryTokens.size(); i++) {
+                if (candidates != null && candidates.isEmpty()) {
+                    break;
+                }
+
+                String token = queryTokens.get(i);
+                Set<String> postings = new HashSet<>();
+                if (queryTokens.size() == 1) {
+                    // A lone word may start mid-word and end mid-word, e.g. "ken" in "chicken"
+                    addPostings(postings, indexed -> indexed.contains(token));
+                } else if (i == 0) {
+                    addPostings(postings, indexed -> indexed.endsWith(token));
+                } else if (i == queryTokens.size() - 1) {
+                    for (Set<String> ids : textIndex.subMap(token, true, token + Character.MAX_VALUE, true).values()) {
+                        postings.addAll(ids);
+                    }
+                } else {
+                    postings.addAll(textIndex.getOrDefault(token, Set.of()));
+                }
+
+                if (candidates == null) {
+                    candidates = postings;
+                } else {
+                    candidates.retainAll(postings);
+                }
+            }
+        }
+
+        if (candidates == null) {
+            return new ArrayList<>(recipesById.values());
+        }
+
+        List<Recipe> result = new ArrayList<>(candidates.size());
+        for (String recipeId : new TreeSet<>(candidates)) {
+            Recipe recipe = recipesById.get(recipeId);
+            if (recipe != null) {
+                result.add(recipe);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the postings of every indexed word accepted by the filter. Scans
+     * the word list, which is much smaller than the recipes' text.
+     */
+    private void addPostings(Set<String> postings, Predicate<String> filter) {
+        for (Map.Entry<String, Set<String>> entry : textIndex.entrySet()) {
+            if (filter.test(entry.getKey())) {
+                postings.addAll(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Splits text into lower-cased word tokens, in order
+     */
+    private static void addTokens(Collection<String> tokens, String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+    }
+
+    private static void removePosting(Map<String, Set<String>> index, String key, String recipeId) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(recipeId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+}
@@ -1,27 +1,43 @@
 package com.example.recipegpt2_server.repository;
 
 import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.model.RecipePage;
+import com.example.recipegpt2_server.model.RecipeSummary;
 import com.example.recipegpt2_server.model.User;
 import com.example.recipegpt2_server.service.JwtService;
-import com.google.cloud.firestore.DocumentSnapshot;
-import com.google.cloud.firestore.Firestore;
-import com.google.cloud.firestore.QueryDocumentSnapshot;
-import com.google.firebase.cloud.FirestoreClient;
+import com.example.recipegpt2_server.service.RatingBuffer;
+import com.example.recipegpt2_server.store.RecipeStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Base64;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
 
 @Repository
 public class RecipeRepository {
 
-    private static final String RECIPES_COLLECTION = "recipes";
-    private static final String USERS_COLLECTION = "users";
+    /**
+     * Thrown for a malformed page cursor, so callers can tell it apart from an
+     * invalid token or user
+     */
+    public static class InvalidCursorException extends IllegalArgumentException {
+        public InvalidCursorException() {
+            super("Invalid cursor");
+        }
+    }
+
+    // Position and ID of the last entry of the previous page of a user's recipe list
+    private record ListCursor(int position, String lastId) {
+    }
+
+    @Autowired
+    private RecipeStore recipeStore;
 
     @Autowired
     private JwtService jwtService;
@@ -29,6 +45,12 @@ public class RecipeRepository {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private PublicRecipeIndex publicRecipeIndex;
+
+    @Autowired
+    private RatingBuffer ratingBuffer;
+
     /**
      * Fetches public recipes that match the specified category and text filters,
      * excluding recipes created or saved by the specified user
@@ -40,11 +62,61 @@ public class RecipeRepository {
      */
     public List<Recipe> fetchPublicRecipes(String userId, String category, String text)
             throws ExecutionException, InterruptedException {
-        Firestore firestore = FirestoreClient.getFirestore();
+        return fetchPublicRecipesPage(userId, category, text, 0, null).getRecipes();
+    }
+
+    /**
+     * Fetches one page of public recipe summaries, with the same filters and
+     * ordering as fetchPublicRecipesPage. Without a text filter only the
+     * summary fields are read.
+     * 
+     * @param userId   User ID to exclude recipes from
+     * @param category Category to filter recipes by
+     * @param text     Text to search for in title, ingredients, and instructions
+     * @param pageSize Maximum number of recipes to return, or 0 for no limit
+     * @param cursor   Opaque cursor returned with the previous page, or null for
+     *                 the first page
+     * @return The page of matching recipe summaries and the cursor of the next
+     *         page
+     * @throws InvalidCursorException If the cursor is malformed
+     */
+    public RecipePage<RecipeSummary> fetchPublicRecipeSummariesPage(String userId, String category, String text,
+            int pageSize, String cursor) throws ExecutionException, InterruptedException {
+        return summarize(readPublicRecipesPage(userId, category, text, pageSize, cursor, true));
+    }
+
+    /**
+     * Fetches one page of public recipes that match the specified category and
+     * text filters, excluding recipes created or saved by the specified user.
+     * Results are ordered by document ID.
+     * 
+     * @param userId   User ID to exclude recipes from
+     * @param category Category to filter recipes by
+     * @param text     Text to search for in title, ingredients, and instructions
+     * @param pageSize Maximum number of recipes to return, or 0 for no limit
+     * @param cursor   Opaque cursor returned with the previous page, or null for
+     *                 the first page
+     * @return The page of matching recipes and the cursor of the next page
+     * @throws InvalidCursorException If the cursor is malformed
+     */
+    public RecipePage<Recipe> fetchPublicRecipesPage(String userId, String category, String text, int pageSize,
+            String cursor) throws ExecutionException, InterruptedException {
+        return readPublicRecipesPage(userId, category, text, pageSize, cursor, false);
+    }
+
+    /**
+     * Reads one page of public recipes. When projected and there is no text
+     * filter, the recipes only carry their summary fields.
+     */
+    private RecipePage<Recipe> readPublicRecipesPage(String userId, String category, String text, int pageSize,
+            String cursor, boolean projected) throws ExecutionException, InterruptedException {
+        String startAfterId = decodeCursor(cursor);
+        boolean paged = pageSize > 0;
         List<Recipe> matchingRecipes = new ArrayList<>();
+        boolean hasMore = false;
 
         // Get user's saved and created recipes to exclude
-        List<String> userRecipeIds = new ArrayList<>();
+        Set<String> userRecipeIds = new HashSet<>();
         if (userId != null) {
             User user = userRepository.findById(userId)
                     .orElse(null);
@@ -58,38 +130,51 @@ public class RecipeRepository {
             }
         }
 
-        // Query for public recipes only
-        var querySnapshot = firestore.collection(RECIPES_COLLECTION)
-                .whereEqualTo("public", true)
-                .get()
-                .get();
-
-        // Filter the results by category and text, and exclude user's recipes
-        for (QueryDocumentSnapshot document : querySnapshot.getDocuments()) {
-            Recipe recipe = Recipe.fromMap(document.getData(), document.getId());
-
-            // Skip if this is one of the user's recipes
-            if (userRecipeIds.contains(recipe.getId())) {
-                continue;
-            }
-
-            // Check if recipe has the matching category
-            if (!hasMatchingCategory(recipe, category)) {
-                continue; // Skip this recipe if no matching category
+        if (publicRecipeIndex.isReady()) {
+            // Answer from the in-memory index; candidates are already ordered by ID
+            for (Recipe recipe : publicRecipeIndex.findCandidates(category, text)) {
+                if (startAfterId != null && recipe.getId().compareTo(startAfterId) <= 0) {
+                    continue;
+                }
+                if (isPublicMatch(recipe, userRecipeIds, category, text)) {
+                    if (paged && matchingRecipes.size() == pageSize) {
+                        hasMore = true;
+                        break;
+                    }
+                    matchingRecipes.add(recipe);
+                }
             }
+        } else {
+            // Read public recipes only, roughly one page per round trip
+            // Only the text filter needs ingredients and instructions
+            boolean summaryOnly = projected && !hasText(text);
+            String lastReadId = startAfterId;
+
+            readLoop: while (true) {
+                List<Recipe> recipes = recipeStore.findPublic(lastReadId, paged ? pageSize + 1 : 0, summaryOnly);
+
+                for (Recipe recipe : recipes) {
+                    lastReadId = recipe.getId();
+                    if (isPublicMatch(recipe, userRecipeIds, category, text)) {
+                        if (paged && matchingRecipes.size() == pageSize) {
+                            hasMore = true;
+                            break readLoop;
+                        }
+                        matchingRecipes.add(recipe);
+                    }
+                }
 
-            // If category matches, check if text matches any of title, ingredients, or
-            // instructions
-            if (matchesText(recipe, text)) {
-                // For public recipes, only include the average rating
-                recipe.setRatingList(null);
-                recipe.setNumOfRatings(0);
-                recipe.setTotalSumRatings(0.0);
-                matchingRecipes.add(recipe);
+                // Stop once the collection is exhausted
+                if (!paged || recipes.size() < pageSize + 1) {
+                    break;
+                }
             }
         }
 
-        return matchingRecipes;
+        String nextCursor = hasMore
+                ? encodeCursor(matchingRecipes.get(matchingRecipes.size() - 1).getId())
+                : null;
+        return new RecipePage<>(matchingRecipes, nextCursor);
     }
 
     /**
@@ -103,6 +188,60 @@ public class RecipeRepository {
      */
     public List<Recipe> fetchCreatedAndSavedRecipes(String jwtToken, String category, String text)
             throws ExecutionException, InterruptedException {
+        return fetchCreatedAndSavedRecipesPage(jwtToken, category, text, 0, null).getRecipes();
+    }
+
+    /**
+     * Fetches one page of summaries of the user's own recipes followed by their
+     * saved recipes, with the same filters and ordering as
+     * fetchCreatedAndSavedRecipesPage. Without a text filter only the summary
+     * fields are read.
+     * 
+     * @param jwtToken JWT token to identify the user
+     * @param category Category to filter recipes by
+     * @param text     Text to search for in title, ingredients, and instructions
+     * @param pageSize Maximum number of recipes to return, or 0 for no limit
+     * @param cursor   Opaque cursor returned with the previous page, or null for
+     *                 the first page
+     * @return The page of matching recipe summaries and the cursor of the next
+     *         page
+     * @throws InvalidCursorException If the cursor is malformed
+     * @throws IllegalArgumentException If the token or user is invalid
+     */
+    public RecipePage<RecipeSummary> fetchCreatedAndSavedRecipeSummariesPage(String jwtToken, String category,
+            String text, int pageSize, String cursor) throws ExecutionException, InterruptedException {
+        return summarize(readCreatedAndSavedRecipesPage(jwtToken, category, text, pageSize, cursor, true));
+    }
+
+    /**
+     * Fetches one page of the user's own recipes followed by their saved
+     * recipes that match the specified category and text filters. Recipes are
+     * only read until the page is full.
+     * 
+     * @param jwtToken JWT token to identify the user
+     * @param category Category to filter recipes by
+     * @param text     Text to search for in title, ingredients, and instructions
+     * @param pageSize Maximum number of recipes to return, or 0 for no limit
+     * @param cursor   Opaque cursor returned with the previous page, or null for
+     *                 the first page
+     * @return The page of matching recipes and the cursor of the next page
+     * @throws InvalidCursorException If the cursor is malformed
+     * @throws IllegalArgumentException If the token or user is invalid
+     */
+    public RecipePage<Recipe> fetchCreatedAndSavedRecipesPage(String jwtToken, String category, String text,
+            int pageSize, String cursor) throws ExecutionException, InterruptedException {
+        return readCreatedAndSavedRecipesPage(jwtToken, category, text, pageSize, cursor, false);
+    }
+
+    /**
+     * Reads one page of the user's own and saved recipes. When projected and
+     * there is no text filter, the recipes only carry their summary fields.
+     */
+    private RecipePage<Recipe> readCreatedAndSavedRecipesPage(String jwtToken, String category, String text,
+            int pageSize, String cursor, boolean projected) throws ExecutionException, InterruptedException {
+        // A malformed cursor is rejected before the user is looked up
+        ListCursor listCursor = parseListCursor(cursor);
+
         // Extract user ID from JWT token
         String userEmail = jwtService.extractUsername(jwtToken);
         if (userEmail == null) {
@@ -113,60 +252,177 @@ public class RecipeRepository {
         User user = userRepository.findByEmail(userEmail)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
 
-        List<String> savedRecipeIds = user.getSavedRecipes();
-        List<String> createdRecipeIds = user.getCreatedRecipes();
+        // Created recipes come first, then saved recipes
+        List<String> recipeIds = new ArrayList<>();
+        if (user.getCreatedRecipes() != null) {
+            recipeIds.addAll(user.getCreatedRecipes());
+        }
+        int savedStart = recipeIds.size();
+        if (user.getSavedRecipes() != null) {
+            recipeIds.addAll(user.getSavedRecipes());
+        }
 
-        Firestore firestore = FirestoreClient.getFirestore();
+        int startIndex = resolveListCursor(recipeIds, listCursor);
+        boolean paged = pageSize > 0;
+
+        boolean summaryOnly = projected && !hasText(text);
         List<Recipe> matchingRecipes = new ArrayList<>();
+        int lastMatchIndex = -1;
+        boolean hasMore = false;
+
+        // Read the ID list in windows of batched gets, stopping once the page is full
+        int windowStart = startIndex;
+        readLoop: while (windowStart < recipeIds.size()) {
+            int windowSize = paged ? pageSize + 1 - matchingRecipes.size() : recipeIds.size() - windowStart;
+            int windowEnd = Math.min(recipeIds.size(), windowStart + windowSize);
+            List<String> windowIds = recipeIds.subList(windowStart, windowEnd);
+            List<String> savedWindowIds = recipeIds.subList(Math.max(windowStart, savedStart),
+                    Math.max(windowEnd, savedStart));
+
+            // Read the user's ratings of the saved recipes alongside the recipes themselves
+            Map<String, Recipe> recipes = recipeStore.findByIds(windowIds, summaryOnly, user.getId(),
+                    savedWindowIds);
+
+            Set<String> listedIds = new HashSet<>();
+
+            for (int i = windowStart; i < windowEnd; i++) {
+                Recipe recipe = recipes.get(recipeIds.get(i));
+                if (recipe == null) {
+                    continue;
+                }
+                if (!listedIds.add(recipe.getId())) {
+                    // A recipe listed both as created and as saved is returned as two copies
+                    recipe = recipe.toBuilder().build();
+                }
+                if (!hasMatchingCategory(recipe, category) || !matchesText(recipe, text)) {
+                    continue;
+                }
 
-        // Get recipes created by the user using createdRecipes attribute
-        if (createdRecipeIds != null && !createdRecipeIds.isEmpty()) {
-            for (String recipeId : createdRecipeIds) {
-                DocumentSnapshot document = firestore.collection(RECIPES_COLLECTION)
-                        .document(recipeId)
-                        .get()
-                        .get();
-
-                if (document.exists()) {
-                    Recipe recipe = Recipe.fromMap(document.getData(), document.getId());
-                    if (hasMatchingCategory(recipe, category) && matchesText(recipe, text)) {
-                        // For user's own recipes, include all rating info
-                        matchingRecipes.add(recipe);
-                    }
+                if (paged && matchingRecipes.size() == pageSize) {
+                    hasMore = true;
+                    break readLoop;
                 }
-            }
-        }
 
-        // Get saved recipes using savedRecipes attribute
-        if (savedRecipeIds != null && !savedRecipeIds.isEmpty()) {
-            for (String recipeId : savedRecipeIds) {
-                DocumentSnapshot document = firestore.collection(RECIPES_COLLECTION)
-                        .document(recipeId)
-                        .get()
-                        .get();
-
-                if (document.exists()) {
-                    Recipe recipe = Recipe.fromMap(document.getData(), document.getId());
-                    if (hasMatchingCategory(recipe, category) && matchesText(recipe, text)) {
-                        // For saved recipes, only include the user's rating
-                        Double userRating = null;
-                        if (recipe.getRatingList() != null && recipe.getRatingList().containsKey(user.getId())) {
-                            userRating = recipe.getRatingList().get(user.getId());
-                        }
-                        recipe.setRatingList(null); // Remove ratingList from response
-                        recipe.setNumOfRatings(0);
-                        recipe.setTotalSumRatings(0.0);
-                        // Add userRating as a separate field
-                        Map<String, Object> recipeMap = recipe.toMap();
-                        recipeMap.put("userRating", userRating);
-                        recipe = Recipe.fromMap(recipeMap, recipe.getId());
-                        matchingRecipes.add(recipe);
+                if (i >= savedStart) {
+                    // For saved recipes, only include the average and the user's own rating
+                    recipe.setNumOfRatings(0);
+                    recipe.setTotalSumRatings(0.0);
+                    // A buffered, not yet flushed rating takes precedence so the user reads their own write
+                    RatingBuffer.PendingRating pending = ratingBuffer.pendingRating(recipe.getId(), user.getId());
+                    if (pending != null) {
+                        recipe.setUserRating(pending.rating());
                     }
                 }
+                // For user's own recipes, include all rating info
+
+                matchingRecipes.add(recipe);
+                lastMatchIndex = i;
             }
+
+            windowStart = windowEnd;
+        }
+
+        String nextCursor = hasMore
+                ? encodeCursor(lastMatchIndex + ":" + recipeIds.get(lastMatchIndex))
+                : null;
+        return new RecipePage<>(matchingRecipes, nextCursor);
+    }
+
+    private static RecipePage<RecipeSummary> summarize(RecipePage<Recipe> page) {
+        List<RecipeSummary> summaries = new ArrayList<>(page.getRecipes().size());
+        for (Recipe recipe : page.getRecipes()) {
+            summaries.add(RecipeSummary.of(recipe));
+        }
+        return new RecipePage<>(summaries, page.getNextCursor());
+    }
+
+    private static boolean hasText(String text) {
+        return text != null && !text.isEmpty();
+    }
+
+    /**
+     * Checks whether a public recipe passes the search filters and is not one
+     * of the user's own or saved recipes. Matching recipes are stripped down to
+     * their average rating.
+     */
+    private boolean isPublicMatch(Recipe recipe, Set<String> userRecipeIds, String category, String text) {
+        // Skip if this is one of the user's recipes
+        if (userRecipeIds.contains(recipe.getId())) {
+            return false;
+        }
+
+        // Check if recipe has the matching category, then if text matches any of
+        // title, ingredients, or instructions
+        if (!hasMatchingCategory(recipe, category) || !matchesText(recipe, text)) {
+            return false;
         }
 
-        return matchingRecipes;
+        // For public recipes, only include the average rating
+        recipe.setNumOfRatings(0);
+        recipe.setTotalSumRatings(0.0);
+        return true;
+    }
+
+    /**
+     * Parses a cursor over a user's recipe ID list. The cursor records both the
+     * position and the ID of the last returned entry, so pages stay stable when
+     * the list shifts.
+     *
+     * @return The parsed cursor, or null for the first page
+     */
+    private static ListCursor parseListCursor(String cursor) {
+        String decoded = decodeCursor(cursor);
+        if (decoded == null) {
+            return null;
+        }
+
+        int separator = decoded.indexOf(':');
+        if (separator < 0) {
+            throw new InvalidCursorException();
+        }
+        try {
+            return new ListCursor(Integer.parseInt(decoded.substring(0, separator)),
+                    decoded.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new InvalidCursorException();
+        }
+    }
+
+    /**
+     * Resolves a cursor over the user's recipe ID list to the index of the first
+     * entry of the next page
+     */
+    private static int resolveListCursor(List<String> recipeIds, ListCursor cursor) {
+        if (cursor == null) {
+            return 0;
+        }
+        int position = cursor.position();
+        String lastId = cursor.lastId();
+
+        if (position >= 0 && position < recipeIds.size() && recipeIds.get(position).equals(lastId)) {
+            return position + 1;
+        }
+        int currentPosition = recipeIds.indexOf(lastId);
+        if (currentPosition >= 0) {
+            return currentPosition + 1;
+        }
+        // The last returned recipe is gone; continue from where it used to be
+        return Math.max(0, Math.min(position, recipeIds.size()));
+    }
+
+    private static String encodeCursor(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException();
+        }
     }
 
     /**
@@ -0,0 +1,138 @@
+package com.example.recipegpt2_server.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded LRU map with per-entry expiry, shared by the in-memory caches.
+ *
+ * The least recently used entries are evicted once there are more than
+ * maxSize of them or their total weight exceeds maxWeight; expired entries
+ * are dropped when they are next read. Both are reported to the eviction
+ * listener, explicit removals are not.
+ *
+ * Not thread-safe: owners call it while holding their own monitor, which also
+ * keeps any index they maintain next to it consistent.
+ */
+final class BoundedCache<K, V> {
+
+    private record Entry<V>(V value, long weight, long expiresAt) {
+    }
+
+    private final int maxSize;
+    private final long maxWeight;
+    private final long ttlMillis;
+    private final ToLongFunction<V> weigher;
+    private final BiConsumer<K, V> evictionListener;
+
+    // Access-ordered so the eldest entry is the least recently used
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    BoundedCache(int maxSize, long ttlMillis) {
+        this(maxSize, Long.MAX_VALUE, ttlMillis, value -> 1, (key, value) -> {
+        });
+    }
+
+    BoundedCache(int maxSize, long ttlMillis, BiConsumer<K, V> evictionListener) {
+        this(maxSize, Long.MAX_VALUE, ttlMillis, value -> 1, evictionListener);
+    }
+
+    BoundedCache(int maxSize, long maxWeight, long ttlMillis, ToLongFunction<V> weigher,
+                 BiConsumer<K, V> evictionListener) {
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+        this.ttlMillis = ttlMillis;
+        this.weigher = weigher;
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * Whether the limits allow caching anything at all
+     */
+    boolean isEnabled() {
+        return maxSize > 0 && maxWeight > 0 && ttlMillis > 0;
+    }
+
+    /**
+     * Returns the value and marks it as recently used, or null if absent or
+     * expired
+     */
+    V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() <= System.currentTimeMillis()) {
+            evict(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    /**
+     * Caches a value for the configured TTL
+     */
+    void put(K key, V value) {
+        put(key, value, System.currentTimeMillis() + ttlMillis);
+    }
+
+    /**
+     * Caches a value until expiresAt, or at most for the configured TTL.
+     * A value heavier than maxWeight on its own is not cached.
+     */
+    void put(K key, V value, long expiresAt) {
+        remove(key);
+        long entryWeight = weigher.applyAsLong(value);
+        if (!isEnabled() || entryWeight > maxWeight) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, entryWeight, Math.min(expiresAt, System.currentTimeMillis() + ttlMillis)));
+        weight += entryWeight;
+
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxSize || weight > maxWeight) && eldest.hasNext()) {
+            Map.Entry<K, Entry<V>> evicted = eldest.next();
+            eldest.remove();
+            weight -= evicted.getValue().weight();
+            evictionListener.accept(evicted.getKey(), evicted.getValue().value());
+        }
+    }
+
+    /**
+     * Removes an entry without reporting it as evicted
+     *
+     * @return The removed value, or null
+     */
+    V remove(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed == null) {
+            return null;
+        }
+        weight -= removed.weight();
+        return removed.value();
+    }
+
+    void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long weight() {
+        return weight;
+    }
+
+    private void evict(K key) {
+        V value = remove(key);
+        if (value != null) {
+            evictionListener.accept(key, value);
+        }
+    }
+}
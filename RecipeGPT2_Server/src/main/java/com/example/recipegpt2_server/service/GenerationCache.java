@@ -0,0 +1,128 @@
+package com.example.recipegpt2_server.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bounded, TTL-based LRU cache of generated recipe sets.
+ *
+ * Entries are keyed by the normalized recipe query, the number of recipes and
+ * the model, and hold the raw recipe maps returned by OpenAI. A hit lets
+ * /api/getRecipes skip the OpenAI call and save copies of the cached recipes
+ * into the requesting user's account instead. Callers always get their own
+ * copies, so recipes built from an entry never share lists with it.
+ *
+ * Hits and misses are published as the "generation.cache.requests" meter,
+ * with the ratio as "generation.cache.hit.ratio".
+ */
+@Component
+public class GenerationCache {
+
+    private final BoundedCache<String, List<Map<String, Object>>> entries;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public GenerationCache(MeterRegistry meterRegistry,
+                           @Value("${app.generation-cache.max-size:500}") int maxSize,
+                           @Value("${app.generation-cache.ttl-ms:86400000}") long ttlMillis) {
+        this.entries = new BoundedCache<>(maxSize, ttlMillis);
+
+        this.hits = Counter.builder("generation.cache.requests")
+                .tag("result", "hit")
+                .description("Recipe generations served from the cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("generation.cache.requests")
+                .tag("result", "miss")
+                .description("Recipe generations that went to OpenAI")
+                .register(meterRegistry);
+        Gauge.builder("generation.cache.size", this, GenerationCache::size)
+                .register(meterRegistry);
+        Gauge.builder("generation.cache.hit.ratio", this, GenerationCache::hitRatio)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Builds the cache key of a generation request
+     *
+     * @param recipeQuery     The user's query; case and whitespace are normalized
+     * @param numberOfRecipes The number of recipes requested
+     * @param model           The OpenAI model
+     * @return The cache key
+     */
+    public static String key(String recipeQuery, int numberOfRecipes, String model) {
+        String normalized = recipeQuery == null ? "" : recipeQuery.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return model + "|" + numberOfRecipes + "|" + normalized;
+    }
+
+    /**
+     * Returns copies of the cached recipe maps, or null if absent or expired
+     *
+     * @param key The key built by {@link #key(String, int, String)}
+     * @return The recipe maps, or null
+     */
+    public List<Map<String, Object>> get(String key) {
+        List<Map<String, Object>> recipes;
+        synchronized (this) {
+            recipes = entries.get(key);
+        }
+        if (recipes == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copy(recipes);
+    }
+
+    /**
+     * Caches a copy of a generated recipe set
+     *
+     * @param key     The key built by {@link #key(String, int, String)}
+     * @param recipes The recipe maps returned by OpenAI
+     */
+    public void put(String key, List<Map<String, Object>> recipes) {
+        if (!entries.isEnabled() || recipes == null || recipes.isEmpty()) {
+            return;
+        }
+        List<Map<String, Object>> copies = copy(recipes);
+        synchronized (this) {
+            entries.put(key, copies);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public double hitCount() {
+        return hits.count();
+    }
+
+    public double missCount() {
+        return misses.count();
+    }
+
+    public double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+
+    private static List<Map<String, Object>> copy(List<Map<String, Object>> recipes) {
+        List<Map<String, Object>> copies = new ArrayList<>(recipes.size());
+        for (Map<String, Object> recipe : recipes) {
+            Map<String, Object> copy = new HashMap<>();
+            recipe.forEach((field, value) -> copy.put(field, value instanceof List<?> list ? new ArrayList<>(list) : value));
+            copies.add(copy);
+        }
+        return copies;
+    }
+}
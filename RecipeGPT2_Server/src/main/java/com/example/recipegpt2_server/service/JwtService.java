@@ -2,15 +2,22 @@ package com.example.recipegpt2_server.service;
 
 import com.example.recipegpt2_server.model.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -19,12 +26,71 @@ import java.util.function.Function;
 @Service
 public class JwtService {
 
+    /**
+     * Request attribute under which the JWT filter publishes the verified claims
+     */
+    public static final String CLAIMS_ATTRIBUTE = JwtService.class.getName() + ".claims";
+
     @Value("${jwt.secret:fallbackSecretKey12345678901234567890123456789012}")
     private String jwtSecret;
 
     @Value("${jwt.expiration:86400000}") // Default: 24 hours in milliseconds
     private long jwtExpiration;
 
+    // Compact tokens carry only id, email, role and profile version; the rest is served by /api/users/me
+    @Value("${jwt.compact-claims:true}")
+    private boolean compactClaims = true;
+
+    @Value("${jwt.verified-cache.ttl-ms:30000}")
+    private long verifiedCacheTtl = 30000;
+
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private int verifiedCacheMaxSize = 10000;
+
+    // Built once from the secret; see init()
+    private volatile Key signingKey;
+    private volatile JwtParser jwtParser;
+
+    // SHA-256 of the token -> claims that already passed signature and expiry checks; see verifiedTokens()
+    private BoundedCache<String, Claims> verifiedTokens;
+
+    /**
+     * Build the signing key and parser once at startup
+     */
+    @PostConstruct
+    public void init() {
+        getJwtParser();
+    }
+
+    /**
+     * Verify a token's signature and expiry once and return its claims.
+     * Recently verified tokens are served from a short-lived LRU cache keyed
+     * by the token's hash, bounded by the token's own expiry.
+     *
+     * @param token The compact JWT
+     * @return The verified claims
+     * @throws JwtException If the token is malformed, forged or expired
+     */
+    public Claims verifyToken(String token) {
+        String tokenHash = hashToken(token);
+        Claims cached;
+        synchronized (this) {
+            cached = verifiedTokens().get(tokenHash);
+        }
+        if (cached != null) {
+            return cached;
+        }
+
+        Claims claims = getJwtParser().parseClaimsJws(token).getBody();
+
+        // A full cache drops its least recently used tokens, not everything at once
+        long cachedUntil = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+        synchronized (this) {
+            verifiedTokens().put(tokenHash, claims, cachedUntil);
+        }
+        return claims;
+    }
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -36,7 +102,13 @@ public class JwtService {
 
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
-        if (userDetails instanceof User) {
+        if (userDetails instanceof User && compactClaims) {
+            User user = (User) userDetails;
+            claims.put("id", user.getId());
+            claims.put("email", user.getEmail());
+            claims.put("role", user.isPublisher() ? "ROLE_PUBLISHER" : "ROLE_USER");
+            claims.put("pv", user.getProfileVersion());
+        } else if (userDetails instanceof User) {
             User user = (User) userDetails;
             claims.put("id", user.getId());
             claims.put("email", user.getEmail());
@@ -71,28 +143,61 @@ public class JwtService {
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return isTokenValid(verifyToken(token), userDetails);
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    /**
+     * Check already verified claims against the loaded user, without parsing
+     * the token again
+     */
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        final String username = claims.getSubject();
+        return username != null && username.equals(userDetails.getUsername())
+                && claims.getExpiration() != null && !claims.getExpiration().before(new Date());
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return verifyToken(token);
     }
 
     private Key getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(jwtSecret);
-        return Keys.hmacShaKeyFor(keyBytes);
+        Key key = signingKey;
+        if (key == null) {
+            byte[] keyBytes = Decoders.BASE64.decode(jwtSecret);
+            key = Keys.hmacShaKeyFor(keyBytes);
+            signingKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * The verified token cache, built on first use from the configured limits.
+     * Callers hold this service's monitor.
+     */
+    private BoundedCache<String, Claims> verifiedTokens() {
+        if (verifiedTokens == null) {
+            verifiedTokens = new BoundedCache<>(verifiedCacheMaxSize, verifiedCacheTtl);
+        }
+        return verifiedTokens;
+    }
+
+    private JwtParser getJwtParser() {
+        JwtParser parser = jwtParser;
+        if (parser == null) {
+            parser = Jwts.parserBuilder()
+                    .setSigningKey(getSigningKey())
+                    .build();
+            jwtParser = parser;
+        }
+        return parser;
+    }
+
+    private static String hashToken(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,270 @@
+package com.example.recipegpt2_server.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Asynchronous client for the OpenAI chat completions API.
+ *
+ * Uses a single shared java.net.http.HttpClient, which keeps pooled keep-alive
+ * connections and negotiates HTTP/2 where the server supports it, so calls do
+ * not pay connection and TLS setup each time. Connect and request timeouts are
+ * configurable. At most openai.max-in-flight calls run at once; calls beyond
+ * that fail immediately with a RejectedExecutionException instead of queueing.
+ *
+ * Identical concurrent completion requests are coalesced: while a call for a
+ * request body is in flight, further callers with the same body share its
+ * result instead of sending their own. Sent and collapsed calls are published
+ * as the "openai.requests" meter.
+ */
+@Component
+public class OpenAiClient {
+
+    /**
+     * Receives each message.content delta of a streamed completion
+     */
+    @FunctionalInterface
+    public interface ContentListener {
+        void onContent(String content) throws Exception;
+    }
+
+    private final String apiKey;
+    private final URI apiUri;
+    private final Duration requestTimeout;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // SHA-256 of the request body -> the call currently in flight for it
+    private final Map<String, CompletableFuture<Map<String, Object>>> pendingCalls = new ConcurrentHashMap<>();
+    private final Counter sentCalls;
+    private final Counter collapsedCalls;
+
+    public OpenAiClient(MeterRegistry meterRegistry,
+                        @Value("${spring.ai.openai.api-key}") String apiKey,
+                        @Value("${openai.api-url:https://api.openai.com/v1/chat/completions}") String apiUrl,
+                        @Value("${openai.connect-timeout-ms:5000}") long connectTimeoutMillis,
+                        @Value("${openai.request-timeout-ms:120000}") long requestTimeoutMillis,
+                        @Value("${openai.max-in-flight:256}") int maxInFlight) {
+        this.apiKey = apiKey;
+        this.apiUri = URI.create(apiUrl);
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("openai-", 0).factory());
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .executor(executor)
+                .build();
+
+        this.sentCalls = Counter.builder("openai.requests")
+                .tag("result", "sent")
+                .description("Completion requests sent to OpenAI")
+                .register(meterRegistry);
+        this.collapsedCalls = Counter.builder("openai.requests")
+                .tag("result", "collapsed")
+                .description("Completion requests that shared an identical in-flight call")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends a chat completion request and parses the JSON in choices[0].message.content.
+     * Concurrent callers with an identical request body share one call, so the
+     * parsed content may be shared and must be treated as read-only.
+     *
+     * @param requestBody The chat completion request
+     * @return A future of the parsed message content
+     */
+    public CompletableFuture<Map<String, Object>> complete(Map<String, Object> requestBody) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(requestBody);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new UncheckedIOException(e));
+        }
+
+        String key = digest(body);
+        CompletableFuture<Map<String, Object>> call = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> pending = pendingCalls.putIfAbsent(key, call);
+        if (pending != null) {
+            collapsedCalls.increment();
+            return pending.copy();
+        }
+
+        sentCalls.increment();
+        send(body).whenComplete((content, error) -> {
+            // Unregister before completing so later requests start a fresh call
+            pendingCalls.remove(key, call);
+            if (error != null) {
+                call.completeExceptionally(error);
+            } else {
+                call.complete(content);
+            }
+        });
+        // Each caller gets its own dependent future, so cancelling one does not affect the others
+        return call.copy();
+    }
+
+    /**
+     * Sends a streaming chat completion request and hands every content delta to the
+     * listener as it arrives. The listener runs on the client's own threads.
+     *
+     * @param requestBody The chat completion request; "stream" is set to true
+     * @param listener    Receives the content deltas in order
+     * @return A future completed once the stream has ended
+     */
+    public CompletableFuture<Void> stream(Map<String, Object> requestBody, ContentListener listener) {
+        if (!inFlight.tryAcquire()) {
+            return CompletableFuture.failedFuture(rejected());
+        }
+        try {
+            requestBody.put("stream", true);
+            return httpClient.sendAsync(buildRequest(requestBody), HttpResponse.BodyHandlers.ofLines())
+                    .thenAcceptAsync(response -> {
+                        try (Stream<String> lines = response.body()) {
+                            checkStatus(response.statusCode());
+                            readEvents(lines.iterator(), listener);
+                        }
+                    }, executor)
+                    .whenComplete((ignored, error) -> inFlight.release());
+        } catch (RuntimeException e) {
+            inFlight.release();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public int inFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public double sentCount() {
+        return sentCalls.count();
+    }
+
+    public double collapsedCount() {
+        return collapsedCalls.count();
+    }
+
+    @PreDestroy
+    public void close() {
+        httpClient.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private CompletableFuture<Map<String, Object>> send(byte[] body) {
+        if (!inFlight.tryAcquire()) {
+            return CompletableFuture.failedFuture(rejected());
+        }
+        try {
+            return httpClient.sendAsync(buildRequest(body), HttpResponse.BodyHandlers.ofString())
+                    .thenApply(response -> {
+                        checkStatus(response.statusCode());
+                        return parseContent(response.body());
+                    })
+                    .whenComplete((content, error) -> inFlight.release());
+        } catch (RuntimeException e) {
+            inFlight.release();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private HttpRequest buildRequest(Map<String, Object> requestBody) {
+        try {
+            return buildRequest(objectMapper.writeValueAsBytes(requestBody));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private HttpRequest buildRequest(byte[] body) {
+        return HttpRequest.newBuilder(apiUri)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + apiKey)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    private static String digest(byte[] body) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private void checkStatus(int statusCode) {
+        if (statusCode < 200 || statusCode >= 300) {
+            throw new IllegalStateException("OpenAI returned status " + statusCode);
+        }
+    }
+
+    private Map<String, Object> parseContent(String body) {
+        try {
+            JsonNode content = objectMapper.readTree(body).path("choices").path(0).path("message").path("content");
+            if (!content.isTextual()) {
+                throw new IllegalStateException("Failed to parse OpenAI response");
+            }
+            return objectMapper.readValue(content.asText(), new TypeReference<Map<String, Object>>() {});
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readEvents(Iterator<String> lines, ContentListener listener) {
+        try {
+            while (lines.hasNext()) {
+                String line = lines.next();
+                if (!line.startsWith("data:")) {
+                    continue;
+                }
+                String data = line.substring(5).trim();
+                if ("[DONE]".equals(data)) {
+                    return;
+                }
+                JsonNode content = objectMapper.readTree(data).path("choices").path(0).path("delta").path("content");
+                if (content.isTextual()) {
+                    listener.onContent(content.asText());
+                }
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private RejectedExecutionException rejected() {
+        return new RejectedExecutionException("Too many OpenAI requests in flight (limit " + maxInFlight + ")");
+    }
+}
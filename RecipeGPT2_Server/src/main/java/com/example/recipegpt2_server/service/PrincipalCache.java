@@ -0,0 +1,161 @@
+package com.example.recipegpt2_server.service;
+
+import com.example.recipegpt2_server.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded, TTL-based cache of authenticated principals keyed by email.
+ *
+ * Every authenticated request resolves its principal through
+ * {@link UserService#loadUserByUsername(String)}; this cache lets that lookup
+ * skip Firestore while the entry is fresh. Cached users are shared between
+ * requests and must be treated as read-only. Anything that changes a user
+ * document must invalidate the user's entry. A load that overlaps an
+ * invalidation of the same user is not cached, so a read racing a write
+ * cannot bring back the old principal.
+ *
+ * Hits and misses are published as the "principal.cache.requests" meter.
+ */
+@Component
+public class PrincipalCache {
+
+    private final BoundedCache<String, User> entries;
+    private final Map<String, String> emailsById = new HashMap<>();
+    private final int maxSize;
+
+    // Email -> token of the latest load in flight; an invalidation removes it, so that load is not cached
+    private final Map<String, Long> loadTokens = new HashMap<>();
+    private long nextLoadToken;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public PrincipalCache(MeterRegistry meterRegistry,
+                          @Value("${app.security.principal-cache.max-size:10000}") int maxSize,
+                          @Value("${app.security.principal-cache.ttl-ms:60000}") long ttlMillis) {
+        this.maxSize = maxSize;
+        this.entries = new BoundedCache<>(maxSize, ttlMillis, (email, user) -> emailsById.remove(user.getId()));
+
+        this.hits = Counter.builder("principal.cache.requests")
+                .tag("result", "hit")
+                .description("Principal lookups served from memory")
+                .register(meterRegistry);
+        this.misses = Counter.builder("principal.cache.requests")
+                .tag("result", "miss")
+                .description("Principal lookups that went to Firestore")
+                .register(meterRegistry);
+        Gauge.builder("principal.cache.size", this, PrincipalCache::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached user for an email, or null if absent or expired
+     *
+     * @param email The user's email
+     * @return The cached user, or null
+     */
+    public synchronized User get(String email) {
+        User user = entries.get(email);
+        if (user == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return user;
+    }
+
+    /**
+     * Marks the start of a user read whose result will be cached
+     *
+     * @param email The email being looked up
+     * @return The token to pass to {@link #put(User, long)}
+     */
+    public synchronized long beginLoad(String email) {
+        long token = ++nextLoadToken;
+        if (!entries.isEnabled() || email == null) {
+            return token;
+        }
+        // Loads that never put their result leave their token behind; dropping them all only skips caching
+        if (loadTokens.size() >= maxSize) {
+            loadTokens.clear();
+        }
+        loadTokens.put(email, token);
+        return token;
+    }
+
+    /**
+     * Caches a user under its email, unless the user was invalidated or a
+     * newer load of it started since the read started
+     *
+     * @param user  The user loaded from Firestore
+     * @param token The token returned by {@link #beginLoad(String)} before the read
+     */
+    public synchronized void put(User user, long token) {
+        if (!entries.isEnabled() || user.getEmail() == null
+                || !loadTokens.remove(user.getEmail(), token)) {
+            return;
+        }
+        remove(user.getEmail());
+        entries.put(user.getEmail(), user);
+        if (user.getId() != null) {
+            emailsById.put(user.getId(), user.getEmail());
+        }
+    }
+
+    /**
+     * Drops the cached entry for an email
+     *
+     * @param email The user's email
+     */
+    public synchronized void invalidate(String email) {
+        if (email != null) {
+            loadTokens.remove(email);
+            remove(email);
+        }
+    }
+
+    /**
+     * Drops the cached entry for a user ID, for callers that only know the ID
+     *
+     * @param userId The user's document ID
+     */
+    public synchronized void invalidateById(String userId) {
+        if (userId == null) {
+            return;
+        }
+        String email = emailsById.remove(userId);
+        if (email != null) {
+            loadTokens.remove(email);
+            entries.remove(email);
+        } else {
+            // The email of a user that is not cached is unknown, so no load in flight may be cached
+            loadTokens.clear();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public double hitCount() {
+        return hits.count();
+    }
+
+    public double missCount() {
+        return misses.count();
+    }
+
+    private void remove(String email) {
+        User removed = entries.remove(email);
+        if (removed != null) {
+            emailsById.remove(removed.getId());
+        }
+    }
+}
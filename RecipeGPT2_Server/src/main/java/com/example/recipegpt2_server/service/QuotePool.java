@@ -0,0 +1,187 @@
+package com.example.recipegpt2_server.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of pre-generated cooking quotes served by /api/randomQuote.
+ *
+ * A background task tops the pool up to app.quotes.pool-size and afterwards
+ * replaces the oldest app.quotes.batch-size quotes every refresh interval, with
+ * one OpenAI call per run. The pool is written to app.quotes.file after each
+ * refill and loaded from it on startup, so a restart serves quotes immediately.
+ */
+@Component
+public class QuotePool {
+
+    // Upper bound on quotes requested from a single OpenAI call
+    private static final int MAX_QUOTES_PER_CALL = 50;
+
+    @Autowired
+    private OpenAiClient openAiClient;
+
+    @Value("${app.quotes.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.quotes.pool-size:100}")
+    private int poolSize = 100;
+
+    @Value("${app.quotes.batch-size:10}")
+    private int batchSize = 10;
+
+    @Value("${app.quotes.refresh-interval-ms:600000}")
+    private long refreshIntervalMillis = 600000;
+
+    @Value("${app.quotes.file:data/quote-pool.json}")
+    private String poolFile = "data/quote-pool.json";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Immutable snapshot, oldest quote first; replaced wholesale on every refill
+    private volatile List<String> quotes = List.of();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Loads the persisted pool and starts the background refill
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        load();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("quote-pool").daemon().factory());
+        scheduler.scheduleWithFixedDelay(this::refillQuietly, 0, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns a random quote from the pool
+     *
+     * @return A quote, or null while the pool is still empty
+     */
+    public String randomQuote() {
+        List<String> snapshot = quotes;
+        if (snapshot.isEmpty()) {
+            return null;
+        }
+        return snapshot.get(ThreadLocalRandom.current().nextInt(snapshot.size()));
+    }
+
+    public int size() {
+        return quotes.size();
+    }
+
+    /**
+     * Generates one batch of quotes, adds it to the pool and persists the pool.
+     * Fills the pool up to its size first, then rotates out the oldest quotes.
+     */
+    public void refill() throws Exception {
+        int missing = poolSize - quotes.size();
+        int count = Math.min(MAX_QUOTES_PER_CALL, Math.max(missing, batchSize));
+        if (count <= 0) {
+            return;
+        }
+
+        Map<String, Object> content = openAiClient.complete(buildQuotesRequest(count))
+                .get(refreshIntervalMillis, TimeUnit.MILLISECONDS);
+        Object generated = content.get("quotes");
+        if (!(generated instanceof List<?> generatedList)) {
+            throw new IllegalStateException("No quotes found in OpenAI response");
+        }
+
+        List<String> next = new ArrayList<>(quotes);
+        for (Object quote : generatedList) {
+            if (quote instanceof String text && !text.isBlank()) {
+                next.add(text.trim());
+            }
+        }
+        if (next.size() > poolSize) {
+            next = next.subList(next.size() - poolSize, next.size());
+        }
+        quotes = List.copyOf(next);
+        save();
+    }
+
+    private void refillQuietly() {
+        try {
+            refill();
+        } catch (Exception e) {
+            // Keep serving the current pool; the next run retries
+            System.err.println("❌ Quote pool refill failed: " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        Path path = Path.of(poolFile);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            List<String> stored = objectMapper.readValue(path.toFile(), new TypeReference<List<String>>() {});
+            if (stored.size() > poolSize) {
+                stored = stored.subList(stored.size() - poolSize, stored.size());
+            }
+            quotes = List.copyOf(stored);
+            System.out.println("✨ Loaded " + quotes.size() + " quotes from " + path);
+        } catch (IOException e) {
+            System.err.println("❌ Could not read quote pool " + path + ": " + e.getMessage());
+        }
+    }
+
+    private void save() throws IOException {
+        Path path = Path.of(poolFile).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        // Write to a temporary file first so a crash never leaves a truncated pool behind
+        Path temp = Files.createTempFile(path.getParent(), "quote-pool", ".tmp");
+        objectMapper.writeValue(temp.toFile(), quotes);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Map<String, Object> buildQuotesRequest(int count) {
+        Map<String, Object> schema = new HashMap<>();
+        schema.put("type", "object");
+        schema.put("properties", Map.of(
+                "quotes", Map.of("type", "array", "items", Map.of("type", "string"))));
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", "gpt-4o");
+        requestBody.put("messages", List.of(
+                Map.of("role", "system", "content",
+                        "You are a renowned chef and philosopher. Respond with valid JSON format, without extra escaping or backslashes."),
+                Map.of("role", "user", "content",
+                        "Generate " + count + " different random quotes about cooking strictly following the given schema.")));
+        requestBody.put("response_format", Map.of(
+                "type", "json_schema",
+                "json_schema", Map.of(
+                        "name", "random_quotes_schema",
+                        "schema", schema)));
+        return requestBody;
+    }
+}
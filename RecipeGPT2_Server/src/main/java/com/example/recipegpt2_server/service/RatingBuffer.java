@@ -0,0 +1,500 @@
+package com.example.recipegpt2_server.service;
+
+import com.example.recipegpt2_server.model.Recipe;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Optional write-behind buffer for recipe ratings.
+ *
+ * With app.ratings.write-behind.enabled, /api/rateRecipe and /api/deleteRating
+ * only validate the request and record the change here instead of running a
+ * Firestore transaction per click. Pending changes are kept per recipe in
+ * striped maps, the last change of each user winning, and are flushed every
+ * app.ratings.write-behind.flush-interval-ms or once flush-threshold changes
+ * are pending, as one aggregated transaction per recipe.
+ *
+ * Every change is appended to a local journal and forced to disk before it is
+ * acknowledged. Appends go through a single writer thread that writes all
+ * waiting changes and forces them with one sync (group commit), so a burst of
+ * ratings waits for a few disk syncs rather than one each. A flush rotates the journal and deletes the rotated file once
+ * all of its changes are written, so a crash loses nothing: the journals left
+ * behind are replayed on startup. Pending changes are visible through
+ * {@link #pendingRating}, so a user reads back their own rating before it is
+ * flushed. Changes being flushed stay visible until their transaction commits.
+ */
+@Component
+public class RatingBuffer {
+
+    /**
+     * A buffered rating change; a null rating deletes the user's rating
+     */
+    public record PendingRating(Double rating) {
+    }
+
+    private record JournalEntry(String recipeId, String userId, Double rating) {
+    }
+
+    /**
+     * A change waiting for the journal writer; a null entry only waits for the
+     * changes queued before it
+     */
+    private record JournalWrite(JournalEntry entry, CompletableFuture<Void> written) {
+    }
+
+    // Stops the journal writer once everything queued before it is written
+    private static final JournalWrite STOP_WRITER = new JournalWrite(null, new CompletableFuture<>());
+
+    @Autowired
+    private RecipeService recipeService;
+
+    @Value("${app.ratings.write-behind.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${app.ratings.write-behind.flush-interval-ms:1000}")
+    private long flushIntervalMillis = 1000;
+
+    @Value("${app.ratings.write-behind.flush-threshold:1000}")
+    private int flushThreshold = 1000;
+
+    @Value("${app.ratings.write-behind.stripes:16}")
+    private int stripeCount = 16;
+
+    @Value("${app.ratings.write-behind.journal:data/rating-journal.log}")
+    private String journalFile = "data/rating-journal.log";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // stripe -> recipe ID -> user ID -> pending change, insertion-ordered
+    private Map<String, Map<String, PendingRating>>[] stripes;
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    // recipe ID -> user ID -> change taken by the running flush and not yet committed
+    private final Map<String, Map<String, PendingRating>> inFlight = new ConcurrentHashMap<>();
+
+    // Recording takes the read lock; rotating the buffer and journal for a flush takes the write lock
+    private final ReentrantReadWriteLock rotationLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final BlockingQueue<JournalWrite> journalQueue = new LinkedBlockingQueue<>();
+    // Written by the journal writer; swapped by a flush only while the queue is drained
+    private volatile FileChannel journal;
+    private Thread journalWriter;
+    private ScheduledExecutorService scheduler;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Replays journals left behind by a previous run and starts the periodic flush
+     */
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        stripes = new Map[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new HashMap<>();
+        }
+
+        // The rotated journal is older than the current one
+        List<JournalEntry> replayed = new ArrayList<>(readJournal(rotatedJournalPath()));
+        replayed.addAll(readJournal(journalPath()));
+        for (JournalEntry entry : replayed) {
+            put(entry.recipeId(), entry.userId(), new PendingRating(entry.rating()));
+        }
+
+        // Compact what was replayed into a fresh journal before dropping the old files
+        Path journalPath = journalPath();
+        Files.createDirectories(journalPath.getParent());
+        Path temp = Files.createTempFile(journalPath.getParent(), "rating-journal", ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            for (Map<String, Map<String, PendingRating>> stripe : stripes) {
+                for (var recipe : stripe.entrySet()) {
+                    for (var user : recipe.getValue().entrySet()) {
+                        write(channel, new JournalEntry(recipe.getKey(), user.getKey(), user.getValue().rating()));
+                    }
+                }
+            }
+            channel.force(true);
+        }
+        Files.move(temp, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(rotatedJournalPath());
+        journal = openJournal();
+        journalWriter = Thread.ofPlatform().name("rating-journal").daemon().start(this::writeJournal);
+        if (!replayed.isEmpty()) {
+            System.out.println("✨ Replayed " + pendingCount.get() + " buffered ratings from " + journalPath);
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("rating-buffer").daemon().factory());
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Flushes what is pending and closes the journal
+     */
+    @PreDestroy
+    public void stop() throws IOException {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        flushQuietly();
+        journalQueue.add(STOP_WRITER);
+        try {
+            journalWriter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+
+    /**
+     * Validates and buffers a rating
+     *
+     * @param recipeId The recipe ID
+     * @param rating   New rating value (1.0 - 5.0)
+     * @param userId   The ID of the user who is rating the recipe
+     * @return The recipe as last written, with the user's new rating
+     * @throws SecurityException If the user tries to rate their own recipe or if
+     *                           the recipe is not public
+     */
+    public Recipe addRating(String recipeId, double rating, String userId) throws Exception {
+        if (rating < 1.0 || rating > 5.0) {
+            throw new IllegalArgumentException("Rating must be between 1.0 and 5.0");
+        }
+        Recipe recipe = getRateableRecipe(recipeId, "Cannot rate a private recipe");
+        if (recipe.getUserId() != null && recipe.getUserId().equals(userId)) {
+            throw new SecurityException("Users cannot rate their own recipes");
+        }
+
+        record(recipeId, userId, rating);
+        recipe.setUserRating(rating);
+        return recipe;
+    }
+
+    /**
+     * Validates and buffers the deletion of a user's rating
+     *
+     * @param recipeId The recipe ID
+     * @param userId   The ID of the user whose rating to delete
+     * @return The recipe as last written, without the user's rating
+     * @throws SecurityException If the recipe is not public
+     */
+    public Recipe deleteRating(String recipeId, String userId) throws Exception {
+        Recipe recipe = getRateableRecipe(recipeId, "Cannot modify ratings for a private recipe");
+        PendingRating pending = pendingRating(recipeId, userId);
+        Double currentRating = pending != null ? pending.rating() : recipeService.getUserRating(recipeId, userId);
+        if (currentRating == null) {
+            throw new IllegalArgumentException("User has not rated this recipe");
+        }
+
+        record(recipeId, userId, null);
+        recipe.setUserRating(null);
+        return recipe;
+    }
+
+    /**
+     * Returns a user's buffered change to a recipe's rating that is not yet
+     * committed: a pending change, or else one the running flush is writing
+     *
+     * @param recipeId The recipe ID
+     * @param userId   The rating user's ID
+     * @return The uncommitted change, or null if there is none
+     */
+    public PendingRating pendingRating(String recipeId, String userId) {
+        if (!enabled || stripes == null) {
+            return null;
+        }
+        Map<String, Map<String, PendingRating>> stripe = stripeOf(recipeId);
+        synchronized (stripe) {
+            Map<String, PendingRating> users = stripe.get(recipeId);
+            PendingRating pending = users == null ? null : users.get(userId);
+            if (pending != null) {
+                return pending;
+            }
+        }
+        // A flush moves changes here before it takes them out of the stripes
+        Map<String, PendingRating> flushing = inFlight.get(recipeId);
+        return flushing == null ? null : flushing.get(userId);
+    }
+
+    public int pendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Writes all pending changes, one transaction per recipe. Changes that fail
+     * to write are put back unless the user has changed their rating since.
+     */
+    public void flush() throws IOException {
+        flushLock.lock();
+        try {
+            Map<String, Map<String, PendingRating>> batch = new LinkedHashMap<>();
+            rotationLock.writeLock().lock();
+            try {
+                if (pendingCount.get() == 0) {
+                    return;
+                }
+                // Changes recorded from now on go to a fresh journal, once the queued ones are written
+                awaitJournal(List.of(queueJournalWrite(null)));
+                journal.close();
+                Files.move(journalPath(), rotatedJournalPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                journal = openJournal();
+
+                for (Map<String, Map<String, PendingRating>> stripe : stripes) {
+                    synchronized (stripe) {
+                        stripe.forEach((recipeId, users) -> inFlight.put(recipeId, new ConcurrentHashMap<>(users)));
+                        batch.putAll(stripe);
+                        stripe.clear();
+                    }
+                }
+                pendingCount.set(0);
+            } finally {
+                rotationLock.writeLock().unlock();
+            }
+
+            int written = 0;
+            List<CompletableFuture<Void>> requeued = new ArrayList<>();
+            for (var recipe : batch.entrySet()) {
+                List<Map.Entry<String, PendingRating>> users = new ArrayList<>(recipe.getValue().entrySet());
+                for (int from = 0; from < users.size(); from += RecipeService.MAX_RATINGS_PER_TRANSACTION) {
+                    Map<String, Double> changes = new LinkedHashMap<>();
+                    for (var user : users.subList(from,
+                            Math.min(users.size(), from + RecipeService.MAX_RATINGS_PER_TRANSACTION))) {
+                        changes.put(user.getKey(), user.getValue().rating());
+                    }
+                    try {
+                        recipeService.applyRatings(recipe.getKey(), changes);
+                        written += changes.size();
+                    } catch (Exception e) {
+                        System.err.println("❌ Error flushing ratings of recipe " + recipe.getKey() + ": "
+                                + e.getMessage());
+                        changes.forEach((userId, rating) -> {
+                            CompletableFuture<Void> journaled = requeue(recipe.getKey(), userId, rating);
+                            if (journaled != null) {
+                                requeued.add(journaled);
+                            }
+                        });
+                    }
+                    // Committed or back in the stripes, so no longer read from here
+                    Map<String, PendingRating> flushing = inFlight.get(recipe.getKey());
+                    changes.keySet().forEach(flushing::remove);
+                }
+                inFlight.remove(recipe.getKey());
+            }
+
+            // Everything in the rotated journal is now either written or journaled again
+            awaitJournal(requeued);
+            Files.deleteIfExists(rotatedJournalPath());
+            System.out.println("✨ Flushed " + written + " buffered ratings");
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        flushScheduled.set(false);
+        try {
+            flush();
+        } catch (Exception e) {
+            // Pending changes stay journaled; the next run retries
+            System.err.println("❌ Rating buffer flush failed: " + e.getMessage());
+        }
+    }
+
+    private Recipe getRateableRecipe(String recipeId, String privateMessage) throws Exception {
+        Recipe recipe = recipeService.getRecipeById(recipeId);
+        if (recipe == null) {
+            throw new IllegalArgumentException("Recipe not found with ID: " + recipeId);
+        }
+        if (!recipe.isPublic()) {
+            throw new SecurityException(privateMessage);
+        }
+        return recipe;
+    }
+
+    /**
+     * Queues a change for the journal and makes it visible in the buffer, then
+     * waits until the journal is forced to disk. If that fails the change
+     * stays buffered and is still written, but would not survive a crash.
+     */
+    private void record(String recipeId, String userId, Double rating) throws IOException {
+        CompletableFuture<Void> journaled;
+        rotationLock.readLock().lock();
+        try {
+            Map<String, Map<String, PendingRating>> stripe = stripeOf(recipeId);
+            // Holding the stripe keeps a user's journal entries in the same order as their buffer updates
+            synchronized (stripe) {
+                journaled = queueJournalWrite(new JournalEntry(recipeId, userId, rating));
+                put(recipeId, userId, new PendingRating(rating));
+            }
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+        if (pendingCount.get() >= flushThreshold && flushScheduled.compareAndSet(false, true)) {
+            scheduler.execute(this::flushQuietly);
+        }
+        awaitJournal(List.of(journaled));
+    }
+
+    /**
+     * Puts back a change that failed to flush, unless a newer one is pending
+     *
+     * @return Completes once the change is journaled again, or null if it was not put back
+     */
+    private CompletableFuture<Void> requeue(String recipeId, String userId, Double rating) {
+        rotationLock.readLock().lock();
+        try {
+            Map<String, Map<String, PendingRating>> stripe = stripeOf(recipeId);
+            synchronized (stripe) {
+                Map<String, PendingRating> users = stripe.get(recipeId);
+                if (users != null && users.containsKey(userId)) {
+                    return null;
+                }
+                put(recipeId, userId, new PendingRating(rating));
+                return queueJournalWrite(new JournalEntry(recipeId, userId, rating));
+            }
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+    }
+
+    private void put(String recipeId, String userId, PendingRating pending) {
+        Map<String, Map<String, PendingRating>> stripe = stripeOf(recipeId);
+        synchronized (stripe) {
+            if (stripe.computeIfAbsent(recipeId, id -> new LinkedHashMap<>()).put(userId, pending) == null) {
+                pendingCount.incrementAndGet();
+            }
+        }
+    }
+
+    private Map<String, Map<String, PendingRating>> stripeOf(String recipeId) {
+        return stripes[Math.floorMod(recipeId.hashCode(), stripes.length)];
+    }
+
+    private CompletableFuture<Void> queueJournalWrite(JournalEntry entry) {
+        JournalWrite write = new JournalWrite(entry, new CompletableFuture<>());
+        journalQueue.add(write);
+        return write.written();
+    }
+
+    private static void awaitJournal(List<CompletableFuture<Void>> writes) throws IOException {
+        for (CompletableFuture<Void> written : writes) {
+            try {
+                written.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof IOException cause ? cause : new IOException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * The journal writer: appends every queued change, forces the journal once
+     * and then acknowledges the whole batch
+     */
+    private void writeJournal() {
+        List<JournalWrite> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(journalQueue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            journalQueue.drainTo(batch);
+            try {
+                for (JournalWrite write : batch) {
+                    if (write.entry() != null) {
+                        write(journal, write.entry());
+                    }
+                }
+                journal.force(false);
+                batch.forEach(write -> write.written().complete(null));
+            } catch (IOException e) {
+                System.err.println("❌ Could not write " + batch.size() + " rating journal entries: "
+                        + e.getMessage());
+                batch.forEach(write -> write.written().completeExceptionally(e));
+            }
+            if (batch.contains(STOP_WRITER)) {
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(FileChannel channel, JournalEntry entry) throws IOException {
+        ByteBuffer line = ByteBuffer.wrap((objectMapper.writeValueAsString(entry) + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        while (line.hasRemaining()) {
+            channel.write(line);
+        }
+    }
+
+    private List<JournalEntry> readJournal(Path path) throws IOException {
+        List<JournalEntry> entries = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return entries;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    entries.add(objectMapper.readValue(line, JournalEntry.class));
+                } catch (IOException e) {
+                    // A crash mid-append leaves at most one torn line at the end
+                    System.err.println("❌ Skipping unreadable rating journal line in " + path);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private FileChannel openJournal() throws IOException {
+        return FileChannel.open(journalPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private Path journalPath() {
+        return Path.of(journalFile).toAbsolutePath();
+    }
+
+    private Path rotatedJournalPath() {
+        return Path.of(journalFile + ".flushing").toAbsolutePath();
+    }
+}
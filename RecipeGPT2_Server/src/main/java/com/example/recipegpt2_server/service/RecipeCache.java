@@ -0,0 +1,317 @@
+package com.example.recipegpt2_server.service;
+
+import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.model.RecipeCodec;
+import com.example.recipegpt2_server.store.RecipeStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded, size-aware read-through cache of recipe documents keyed by ID.
+ *
+ * {@link RecipeService#getRecipeById(String)} and its batched variants are
+ * served from here while an entry is fresh. The cache is bounded both by
+ * entry count and by the estimated size of the cached recipes, since inline
+ * images make recipe sizes vary widely; the least recently used entries are
+ * evicted first. Callers always get their own Recipe copy.
+ *
+ * Entries are dropped on local writes through RecipeService and on the IDs
+ * reported by the store's change feed ({@link RecipeStore#listenForChangedIds}),
+ * so writes made by other instances are seen as well. The feed carries no
+ * recipe contents, so the cache stays the only copy held in memory. While
+ * the feed is not connected the cache is bypassed. A load that overlaps an
+ * invalidation of the same recipe is not cached, so a read racing a write
+ * cannot bring back the old document; loads of other recipes are unaffected.
+ *
+ * Hits and misses are published as the "recipe.cache.requests" meter,
+ * evictions as "recipe.cache.evictions" and invalidations as
+ * "recipe.cache.invalidations".
+ */
+@Component
+public class RecipeCache {
+
+    // Rough per-entry overhead of the map entry, Recipe copy and field map
+    private static final long ENTRY_OVERHEAD_BYTES = 512;
+
+    private record Entry(Map<String, Object> data, long bytes) {
+    }
+
+    private final boolean listenerEnabled;
+    private final int maxSize;
+    private final BoundedCache<String, Entry> entries;
+
+    // Recipe ID -> token of the latest load in flight; an invalidation removes it, so that load is not cached
+    private final Map<String, Long> loadTokens = new HashMap<>();
+    private long nextLoadToken;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter invalidations;
+
+    @Autowired(required = false)
+    private RecipeStore recipeStore;
+
+    private volatile boolean listening = false;
+    private RecipeStore.Registration registration;
+
+    public RecipeCache(MeterRegistry meterRegistry,
+                       @Value("${app.recipes.cache.max-size:10000}") int maxSize,
+                       @Value("${app.recipes.cache.max-bytes:67108864}") long maxBytes,
+                       @Value("${app.recipes.cache.ttl-ms:600000}") long ttlMillis,
+                       @Value("${app.recipes.cache.listener.enabled:true}") boolean listenerEnabled) {
+        this.listenerEnabled = listenerEnabled;
+        this.maxSize = maxSize;
+
+        this.hits = Counter.builder("recipe.cache.requests")
+                .tag("result", "hit")
+                .description("Recipe reads served from memory")
+                .register(meterRegistry);
+        this.misses = Counter.builder("recipe.cache.requests")
+                .tag("result", "miss")
+                .description("Recipe reads that went to the store")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("recipe.cache.evictions")
+                .description("Recipes evicted to stay within the size limits or after expiring")
+                .register(meterRegistry);
+        this.invalidations = Counter.builder("recipe.cache.invalidations")
+                .description("Recipes dropped because they were written locally or by another instance")
+                .register(meterRegistry);
+        this.entries = new BoundedCache<>(maxSize, maxBytes, ttlMillis, Entry::bytes,
+                (recipeId, entry) -> evictions.increment());
+        Gauge.builder("recipe.cache.size", this, RecipeCache::size)
+                .register(meterRegistry);
+        Gauge.builder("recipe.cache.bytes", this, RecipeCache::estimatedBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("recipe.cache.hit.ratio", this, RecipeCache::hitRatio)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts following the change feed that invalidates recipes changed by
+     * any instance
+     */
+    @PostConstruct
+    public void start() {
+        if (!listenerEnabled || recipeStore == null) {
+            return;
+        }
+
+        registration = recipeStore.listenForChangedIds(new RecipeStore.ChangedIdsListener() {
+            @Override
+            public void onChanged(Collection<String> recipeIds) {
+                if (!listening) {
+                    // Changes are followed from here on; anything cached before may be stale
+                    invalidateAll();
+                    listening = true;
+                    System.out.println("✨ Recipe cache change feed connected");
+                    return;
+                }
+                invalidateAll(recipeIds);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                // Changes can be missed until the listener recovers, so stop serving from memory
+                listening = false;
+                invalidateAll();
+                System.err.println("❌ Recipe cache change feed failed: " + error.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Stops following the change feed
+     */
+    @PreDestroy
+    public void stop() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+        listening = false;
+    }
+
+    /**
+     * Returns a copy of the cached recipe, or null if absent, expired or the
+     * cache is bypassed
+     *
+     * @param recipeId The recipe's document ID
+     * @return The recipe, or null
+     */
+    public Recipe get(String recipeId) {
+        Entry entry = null;
+        if (isActive()) {
+            synchronized (this) {
+                entry = entries.get(recipeId);
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return RecipeCodec.decode(entry.data(), recipeId);
+    }
+
+    /**
+     * Marks the start of a store read whose result will be cached
+     *
+     * @param recipeIds The recipes being read
+     * @return The token to pass to {@link #put(Recipe, long)}
+     */
+    public synchronized long beginLoad(Collection<String> recipeIds) {
+        long token = ++nextLoadToken;
+        if (!isActive()) {
+            return token;
+        }
+        // Loads that never put their result leave their token behind; dropping them all only skips caching
+        if (loadTokens.size() + recipeIds.size() > maxSize) {
+            loadTokens.clear();
+        }
+        for (String recipeId : recipeIds) {
+            loadTokens.put(recipeId, token);
+        }
+        return token;
+    }
+
+    /**
+     * Marks the start of a store read of one recipe
+     *
+     * @param recipeId The recipe being read
+     * @return The token to pass to {@link #put(Recipe, long)}
+     */
+    public long beginLoad(String recipeId) {
+        return beginLoad(List.of(recipeId));
+    }
+
+    /**
+     * Caches a recipe read from the store, unless the recipe was invalidated
+     * or a newer load of it started since the read started
+     *
+     * @param recipe The recipe as stored, without per-user fields
+     * @param token  The token returned by {@link #beginLoad(String)} before the read
+     */
+    public void put(Recipe recipe, long token) {
+        if (!isActive() || recipe == null || recipe.getId() == null) {
+            return;
+        }
+        Map<String, Object> data = snapshot(recipe);
+        Entry entry = new Entry(data, estimateBytes(data));
+
+        synchronized (this) {
+            if (!loadTokens.remove(recipe.getId(), token)) {
+                return;
+            }
+            entries.put(recipe.getId(), entry);
+        }
+    }
+
+    /**
+     * Drops a recipe after it was written or deleted
+     *
+     * @param recipeId The recipe's document ID
+     */
+    public synchronized void invalidate(String recipeId) {
+        if (recipeId == null) {
+            return;
+        }
+        loadTokens.remove(recipeId);
+        if (entries.remove(recipeId) != null) {
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * Drops several recipes after they were written or deleted
+     *
+     * @param recipeIds The recipes' document IDs
+     */
+    public synchronized void invalidateAll(Iterable<String> recipeIds) {
+        for (String recipeId : recipeIds) {
+            invalidate(recipeId);
+        }
+    }
+
+    /**
+     * Drops every cached recipe
+     */
+    public synchronized void invalidateAll() {
+        loadTokens.clear();
+        invalidations.increment(entries.size());
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long estimatedBytes() {
+        return entries.weight();
+    }
+
+    public double hitCount() {
+        return hits.count();
+    }
+
+    public double missCount() {
+        return misses.count();
+    }
+
+    public double evictionCount() {
+        return evictions.count();
+    }
+
+    public double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+
+    private boolean isActive() {
+        return entries.isEnabled() && (listening || !listenerEnabled || recipeStore == null);
+    }
+
+    /**
+     * The stored fields of a recipe with read-only copies of its lists, so no
+     * caller can change a cached entry through a returned recipe
+     */
+    private static Map<String, Object> snapshot(Recipe recipe) {
+        Map<String, Object> data = RecipeCodec.encode(recipe);
+        data.remove("userRating");
+        data.replaceAll((field, value) -> value instanceof List<?> list
+                ? Collections.unmodifiableList(new ArrayList<>(list))
+                : value);
+        return data;
+    }
+
+    private static long estimateBytes(Map<String, Object> data) {
+        long size = ENTRY_OVERHEAD_BYTES;
+        for (Object value : data.values()) {
+            if (value instanceof String text) {
+                size += 48 + text.length();
+            } else if (value instanceof List<?> list) {
+                size += 32;
+                for (Object item : list) {
+                    size += item instanceof String text ? 48 + text.length() : 16;
+                }
+            } else {
+                size += 16;
+            }
+        }
+        return size;
+    }
+}
@@ -1,18 +1,18 @@
 package com.example.recipegpt2_server.service;
 
 import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.model.RecipeSummary;
 import com.example.recipegpt2_server.model.RecipeUpdateRequest;
 import com.example.recipegpt2_server.model.User;
 import com.example.recipegpt2_server.repository.UserRepository;
-import com.google.cloud.firestore.DocumentSnapshot;
-import com.google.cloud.firestore.Firestore;
-import com.google.cloud.firestore.QueryDocumentSnapshot;
-import com.google.firebase.cloud.FirestoreClient;
+import com.example.recipegpt2_server.store.RecipeStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -23,66 +23,55 @@ import java.util.concurrent.ExecutionException;
 @Service
 public class RecipeService {
 
-    private static final String RECIPES_COLLECTION = "recipes";
+    // Firestore's limit on writes in a single batch
+    private static final int MAX_BATCH_WRITES = 500;
+
+    // Rating documents plus the recipe update must fit in one transaction
+    public static final int MAX_RATINGS_PER_TRANSACTION = MAX_BATCH_WRITES - 1;
+
+    // Recipe documents plus the createdRecipes update must fit in one batch
+    public static final int MAX_RECIPES_PER_SAVE = MAX_BATCH_WRITES - 1;
+
+    @Autowired
+    private RecipeStore recipeStore;
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private ReferenceCleanupWorker referenceCleanupWorker;
+
+    @Autowired
+    private RecipeCache recipeCache;
+
     /**
-     * Save a recipe to Firestore and update the user's createdRecipes list
+     * Save a recipe and update the user's createdRecipes list
      * 
      * @param recipe The recipe to save
-     * @return The saved recipe with its Firestore document ID
+     * @return The saved recipe with its generated ID
      */
     public Recipe saveRecipe(Recipe recipe) throws ExecutionException, InterruptedException {
-        Firestore firestore = FirestoreClient.getFirestore();
-        Map<String, Object> recipeMap = recipe.toMap();
-
         // Initialize rating fields if they're new recipes
         if (recipe.getId() == null) {
             recipe.setNumOfRatings(0);
             recipe.setTotalSumRatings(0.0);
             recipe.setRating(0.0);
-            recipe.setRatingList(new HashMap<>());
-            // Update the map after setting the fields
-            recipeMap = recipe.toMap();
         }
 
-        var documentReference = firestore.collection(RECIPES_COLLECTION).add(recipeMap).get();
-        recipe.setId(documentReference.getId());
+        recipeStore.insert(recipe);
 
         // Update user's createdRecipes list if userId is set
         if (recipe.getUserId() != null && !recipe.getUserId().isEmpty()) {
-            // Find the user by ID
             try {
-                // Get the user document directly by ID
-                var userDoc = firestore.collection("users")
-                        .document(recipe.getUserId())
-                        .get()
-                        .get();
-
-                if (userDoc.exists()) {
-                    // Get current createdRecipes or initialize empty list
-                    List<String> createdRecipes = (List<String>) userDoc.get("createdRecipes");
-                    if (createdRecipes == null) {
-                        createdRecipes = new ArrayList<>();
-                    }
-
-                    // Add the new recipe ID if it's not already in the list
-                    if (!createdRecipes.contains(recipe.getId())) {
-                        createdRecipes.add(recipe.getId());
-
-                        // Update the user document
-                        firestore.collection("users")
-                                .document(recipe.getUserId())
-                                .update("createdRecipes", createdRecipes)
-                                .get();
-
-                        System.out.println("✨ Added recipe " + recipe.getId() + " to user's createdRecipes list");
-                    }
-                } else {
-                    System.err.println("❌ User not found with ID: " + recipe.getUserId());
-                }
+                // One write, no read, and no lost updates from concurrent saves.
+                // Fails if the user doesn't exist.
+                userRepository.addToRecipeList(recipe.getUserId(), "createdRecipes", List.of(recipe.getId()));
+                principalCache.invalidateById(recipe.getUserId());
+
+                System.out.println("✨ Added recipe " + recipe.getId() + " to user's createdRecipes list");
             } catch (Exception e) {
                 System.err.println("❌ Error updating user's createdRecipes: " + e.getMessage());
                 e.printStackTrace();
@@ -94,20 +83,58 @@ public class RecipeService {
     }
 
     /**
-     * Get a recipe by its document ID
+     * Save several new recipes of one user in a single batched write.
+     * The recipes and their IDs on the user's createdRecipes are committed
+     * together, so either all of them are saved or none. Unlike
+     * {@link #saveRecipe(Recipe)}, this means nothing is saved when the user
+     * document does not exist.
+     *
+     * @param recipes The new recipes to save, at most {@link #MAX_RECIPES_PER_SAVE}
+     * @param userId  The owning user's ID, or null to skip the createdRecipes update
+     * @return The saved recipes with their generated IDs
+     * @throws IllegalArgumentException If there are more recipes than fit in one batch
+     */
+    public List<Recipe> saveRecipes(List<Recipe> recipes, String userId) throws ExecutionException, InterruptedException {
+        if (recipes.isEmpty()) {
+            return recipes;
+        }
+        if (recipes.size() > MAX_RECIPES_PER_SAVE) {
+            throw new IllegalArgumentException("At most " + MAX_RECIPES_PER_SAVE + " recipes can be saved at once");
+        }
+        boolean updateUser = userId != null && !userId.isEmpty();
+
+        for (Recipe recipe : recipes) {
+            recipe.setNumOfRatings(0);
+            recipe.setTotalSumRatings(0.0);
+            recipe.setRating(0.0);
+        }
+        recipeStore.insertAll(recipes, updateUser ? userId : null);
+
+        if (updateUser) {
+            principalCache.invalidateById(userId);
+        }
+        System.out.println("✨ Saved " + recipes.size() + " recipes in a batched write");
+        return recipes;
+    }
+
+    /**
+     * Get a recipe by its document ID, from the {@link RecipeCache} when present
      * 
-     * @param recipeId The Firestore document ID
+     * @param recipeId The recipe ID
      * @return The recipe, or null if not found
      */
     public Recipe getRecipeById(String recipeId) throws ExecutionException, InterruptedException {
-        Firestore firestore = FirestoreClient.getFirestore();
-        DocumentSnapshot document = firestore.collection(RECIPES_COLLECTION).document(recipeId).get().get();
-
-        if (document.exists()) {
-            return Recipe.fromMap(document.getData(), document.getId());
+        Recipe cached = recipeCache.get(recipeId);
+        if (cached != null) {
+            return cached;
         }
 
-        return null;
+        long loadToken = recipeCache.beginLoad(recipeId);
+        Recipe recipe = recipeStore.findById(recipeId);
+        if (recipe != null) {
+            recipeCache.put(recipe, loadToken);
+        }
+        return recipe;
     }
 
     /**
@@ -117,20 +144,54 @@ public class RecipeService {
      * @return List of user's recipes
      */
     public List<Recipe> getRecipesByUserId(String userId) throws ExecutionException, InterruptedException {
-        Firestore firestore = FirestoreClient.getFirestore();
-        List<Recipe> recipes = new ArrayList<>();
+        return recipeStore.findByUserId(userId, false);
+    }
 
-        var querySnapshot = firestore.collection(RECIPES_COLLECTION)
-                .whereEqualTo("userId", userId)
-                .get()
-                .get();
+    /**
+     * Get summaries of all recipes for a specific user, reading only the
+     * summary fields
+     * 
+     * @param userId The user ID
+     * @return List of summaries of the user's recipes
+     */
+    public List<RecipeSummary> getRecipeSummariesByUserId(String userId)
+            throws ExecutionException, InterruptedException {
+        List<RecipeSummary> summaries = new ArrayList<>();
+        for (Recipe recipe : recipeStore.findByUserId(userId, true)) {
+            summaries.add(RecipeSummary.of(recipe));
+        }
+        return summaries;
+    }
+
+    /**
+     * Get the full recipe as the given user may see it. Owners see all rating
+     * information; other users see public recipes and the recipes they saved,
+     * with the average and their own rating only.
+     * 
+     * @param recipeId The recipe ID
+     * @param user     The requesting user
+     * @return The recipe, or null if not found
+     * @throws SecurityException If the user may not see the recipe
+     */
+    public Recipe getRecipeForUser(String recipeId, User user) throws ExecutionException, InterruptedException {
+        // The user's rating is read alongside the recipe
+        Recipe recipe = recipeStore.findById(recipeId, user.getId());
+        if (recipe == null) {
+            return null;
+        }
+        if (user.getId().equals(recipe.getUserId())) {
+            recipe.setUserRating(null);
+            return recipe;
+        }
 
-        for (QueryDocumentSnapshot document : querySnapshot.getDocuments()) {
-            Recipe recipe = Recipe.fromMap(document.getData(), document.getId());
-            recipes.add(recipe);
+        boolean saved = user.getSavedRecipes() != null && user.getSavedRecipes().contains(recipeId);
+        if (!recipe.isPublic() && !saved) {
+            throw new SecurityException("You don't have permission to view this recipe");
         }
 
-        return recipes;
+        recipe.setNumOfRatings(0);
+        recipe.setTotalSumRatings(0.0);
+        return recipe;
     }
 
     /**
@@ -140,21 +201,7 @@ public class RecipeService {
      * @return List of public recipes
      */
     public List<Recipe> getPublicRecipes(int limit) throws ExecutionException, InterruptedException {
-        Firestore firestore = FirestoreClient.getFirestore();
-        List<Recipe> recipes = new ArrayList<>();
-
-        var querySnapshot = firestore.collection(RECIPES_COLLECTION)
-                .whereEqualTo("public", true)
-                .limit(limit)
-                .get()
-                .get();
-
-        for (QueryDocumentSnapshot document : querySnapshot.getDocuments()) {
-            Recipe recipe = Recipe.fromMap(document.getData(), document.getId());
-            recipes.add(recipe);
-        }
-
-        return recipes;
+        return recipeStore.findPublic(null, limit, false);
     }
 
     /**
@@ -166,10 +213,16 @@ public class RecipeService {
      */
     public Recipe updateRecipePublicStatus(String recipeId, boolean isPublic)
             throws ExecutionException, InterruptedException {
-        Firestore firestore = FirestoreClient.getFirestore();
-        firestore.collection(RECIPES_COLLECTION).document(recipeId).update("public", isPublic).get();
+        Recipe recipe = getExistingRecipe(recipeId);
+
+        try {
+            recipeStore.update(recipeId, Map.of("public", isPublic));
+        } finally {
+            recipeCache.invalidate(recipeId);
+        }
 
-        return getRecipeById(recipeId);
+        recipe.setPublic(isPublic);
+        return recipe;
     }
 
     /**
@@ -184,23 +237,42 @@ public class RecipeService {
             throw new IllegalArgumentException("Rating must be between 0.0 and 5.0");
         }
 
-        Firestore firestore = FirestoreClient.getFirestore();
-        firestore.collection(RECIPES_COLLECTION).document(recipeId).update("rating", rating).get();
+        Recipe recipe = getExistingRecipe(recipeId);
+
+        try {
+            recipeStore.update(recipeId, Map.of("rating", rating));
+        } finally {
+            recipeCache.invalidate(recipeId);
+        }
 
-        return getRecipeById(recipeId);
+        recipe.setRating(rating);
+        return recipe;
+    }
+
+    /**
+     * Get a recipe that is about to be updated. The update is applied to it in
+     * memory afterwards instead of reading the document again.
+     */
+    private Recipe getExistingRecipe(String recipeId) throws ExecutionException, InterruptedException {
+        Recipe recipe = getRecipeById(recipeId);
+        if (recipe == null) {
+            throw new IllegalArgumentException("Recipe not found with ID: " + recipeId);
+        }
+        return recipe;
     }
 
     /**
      * Delete a recipe and perform the following cleanup:
-     * 1. Remove it from the creator's createdRecipes list
-     * 2. Remove it from the savedRecipes list of any users who saved it
+     * 1. Delete the recipe and write its tombstone in one batch
+     * 2. Remove it from the creator's createdRecipes list
+     * 3. Queue the removal of its ratings and of every savedRecipes reference
+     * to it with the {@link ReferenceCleanupWorker}, so the request does not
+     * wait for however many users saved it
      * 
      * @param recipeId The recipe ID to delete
      * @return True if deleted successfully
      */
     public boolean deleteRecipe(String recipeId) throws ExecutionException, InterruptedException {
-        Firestore firestore = FirestoreClient.getFirestore();
-
         // Get the recipe to find the user ID
         Recipe recipe = getRecipeById(recipeId);
         if (recipe == null) {
@@ -208,85 +280,165 @@ public class RecipeService {
             return false;
         }
 
-        // 1. If recipe has a userId, remove the recipe ID from the creator's
+        // 1. Delete the recipe; the tombstone lets the cleanup resume after a restart
+        commitDeletion(List.of(recipe));
+        System.out.println("✨ Deleted recipe " + recipeId);
+
+        // 2. If recipe has a userId, remove the recipe ID from the creator's
         // createdRecipes list
-        if (recipe.getUserId() != null) {
+        removeFromCreatedRecipes(recipe.getUserId(), List.of(recipeId));
+
+        // 3. Ratings and savedRecipes references are removed in the background
+        referenceCleanupWorker.enqueue(List.of(recipeId));
+        return true;
+    }
+
+    /**
+     * Get several recipes, reading the ones missing from the {@link RecipeCache}
+     * with one batched read
+     * 
+     * @param recipeIds The recipe IDs
+     * @return The recipes that exist, keyed by ID
+     */
+    public Map<String, Recipe> getRecipesByIds(Collection<String> recipeIds)
+            throws ExecutionException, InterruptedException {
+        Map<String, Recipe> recipes = new HashMap<>();
+        if (recipeIds.isEmpty()) {
+            return recipes;
+        }
+        List<String> missing = new ArrayList<>();
+        for (String recipeId : new LinkedHashSet<>(recipeIds)) {
+            Recipe cached = recipeCache.get(recipeId);
+            if (cached != null) {
+                recipes.put(recipeId, cached);
+            } else {
+                missing.add(recipeId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return recipes;
+        }
+
+        long loadToken = recipeCache.beginLoad(missing);
+        for (Recipe recipe : recipeStore.findByIds(missing, false).values()) {
+            recipeCache.put(recipe, loadToken);
+            recipes.put(recipe.getId(), recipe);
+        }
+        return recipes;
+    }
+
+    /**
+     * Look up the owners of several recipes with one batched read that only
+     * fetches the userId field, for existence and ownership checks. Recipes in
+     * the {@link RecipeCache} are not read again.
+     * 
+     * @param recipeIds The recipe IDs
+     * @return The owner's user ID keyed by recipe ID, for the recipes that
+     *         exist; the owner is null for recipes without one
+     */
+    public Map<String, String> getRecipeOwners(Collection<String> recipeIds)
+            throws ExecutionException, InterruptedException {
+        Map<String, String> owners = new HashMap<>();
+        if (recipeIds.isEmpty()) {
+            return owners;
+        }
+        List<String> missing = new ArrayList<>();
+        for (String recipeId : new LinkedHashSet<>(recipeIds)) {
+            Recipe cached = recipeCache.get(recipeId);
+            if (cached != null) {
+                owners.put(recipeId, cached.getUserId());
+            } else {
+                missing.add(recipeId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return owners;
+        }
+
+        owners.putAll(recipeStore.findOwners(missing));
+        return owners;
+    }
+
+    /**
+     * Delete several recipes whose ownership has already been checked.
+     * Recipes and their tombstones are deleted in batched writes, each creator's
+     * createdRecipes is updated once, and the savedRecipes cleanup of all
+     * deleted recipes is queued as one combined job.
+     * 
+     * @param recipes The recipes to delete
+     * @return The error of every recipe whose batch failed, keyed by recipe ID
+     */
+    public Map<String, String> deleteRecipes(List<Recipe> recipes) throws ExecutionException, InterruptedException {
+        Map<String, String> failures = new HashMap<>();
+        if (recipes.isEmpty()) {
+            return failures;
+        }
+        Map<String, List<String>> deletedByCreator = new HashMap<>();
+        List<String> deletedIds = new ArrayList<>();
+
+        // Every recipe takes two writes: its deletion and its tombstone
+        int chunkSize = MAX_BATCH_WRITES / 2;
+        for (int start = 0; start < recipes.size(); start += chunkSize) {
+            List<Recipe> chunk = recipes.subList(start, Math.min(start + chunkSize, recipes.size()));
             try {
-                // Get the user document
-                var userDoc = firestore.collection("users")
-                        .document(recipe.getUserId())
-                        .get()
-                        .get();
-
-                if (userDoc.exists()) {
-                    // Get current createdRecipes
-                    List<String> createdRecipes = (List<String>) userDoc.get("createdRecipes");
-                    if (createdRecipes != null && createdRecipes.contains(recipeId)) {
-                        // Remove the recipe ID from the list
-                        createdRecipes.remove(recipeId);
-
-                        // Update the user document
-                        firestore.collection("users")
-                                .document(recipe.getUserId())
-                                .update("createdRecipes", createdRecipes)
-                                .get();
-
-                        System.out.println("✨ Removed recipe " + recipeId + " from creator's createdRecipes list");
-                    }
+                commitDeletion(chunk);
+            } catch (ExecutionException e) {
+                String reason = "Error: " + e.getCause().getMessage();
+                chunk.forEach(recipe -> failures.put(recipe.getId(), reason));
+                continue;
+            }
+            for (Recipe recipe : chunk) {
+                deletedIds.add(recipe.getId());
+                if (recipe.getUserId() != null) {
+                    deletedByCreator.computeIfAbsent(recipe.getUserId(), id -> new ArrayList<>()).add(recipe.getId());
                 }
-            } catch (Exception e) {
-                System.err
-                        .println("❌ Error updating creator's createdRecipes during recipe deletion: " + e.getMessage());
-                // Continue with recipe deletion even if updating user's createdRecipes fails
             }
         }
+        System.out.println("✨ Deleted " + deletedIds.size() + " recipes in batched writes");
+
+        deletedByCreator.forEach(this::removeFromCreatedRecipes);
+        if (!deletedIds.isEmpty()) {
+            referenceCleanupWorker.enqueue(deletedIds);
+        }
+        return failures;
+    }
 
-        // 2. Remove the recipe ID from the savedRecipes list of all users who saved it
+    /**
+     * Delete recipes and write their tombstones in one batch
+     */
+    private void commitDeletion(List<Recipe> recipes) throws ExecutionException, InterruptedException {
         try {
-            // Get all users that have this recipe in their savedRecipes
-            var usersWithSavedRecipe = firestore.collection("users")
-                    .whereArrayContains("savedRecipes", recipeId)
-                    .get()
-                    .get();
-
-            // Process each user document
-            for (var userDoc : usersWithSavedRecipe.getDocuments()) {
-                try {
-                    // Get current savedRecipes
-                    List<String> savedRecipes = (List<String>) userDoc.get("savedRecipes");
-                    if (savedRecipes != null) {
-                        // Remove the recipe ID
-                        savedRecipes.remove(recipeId);
-
-                        // Update the user document
-                        firestore.collection("users")
-                                .document(userDoc.getId())
-                                .update("savedRecipes", savedRecipes)
-                                .get();
-
-                        System.out.println("✨ Removed recipe " + recipeId + " from user " + userDoc.getId()
-                                + "'s savedRecipes list");
-                    }
-                } catch (Exception e) {
-                    System.err
-                            .println("❌ Error updating user " + userDoc.getId() + "'s savedRecipes: " + e.getMessage());
-                    // Continue with other users even if updating this user fails
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("❌ Error finding users with this recipe in savedRecipes: " + e.getMessage());
-            // Continue with recipe deletion even if updating users' savedRecipes fails
+            recipeStore.delete(recipes);
+        } finally {
+            recipeCache.invalidateAll(recipes.stream().map(Recipe::getId).toList());
         }
+    }
 
-        // 3. Delete the recipe
-        firestore.collection(RECIPES_COLLECTION).document(recipeId).delete().get();
-        System.out.println("✨ Deleted recipe " + recipeId + " from Firestore");
-        return true;
+    /**
+     * Remove deleted recipes from their creator's createdRecipes list. Failures
+     * are logged only; the recipes are gone either way.
+     */
+    private void removeFromCreatedRecipes(String userId, List<String> recipeIds) {
+        if (userId == null) {
+            return;
+        }
+        try {
+            // Server-side arrayRemove: one write, no read
+            userRepository.removeFromRecipeList(userId, "createdRecipes", recipeIds);
+            principalCache.invalidateById(userId);
+
+            System.out.println("✨ Removed " + recipeIds.size() + " recipes from creator's createdRecipes list");
+        } catch (Exception e) {
+            System.err.println("❌ Error updating creator's createdRecipes during recipe deletion: " + e.getMessage());
+        }
     }
 
     /**
-     * Add a user rating to a recipe
-     * 
+     * Add a user rating to a recipe.
+     * The recipe's aggregates and the user's rating are changed together with
+     * {@link RecipeStore#updateRatings}, so concurrent raters do not overwrite
+     * each other.
+     *
      * @param recipeId The recipe ID
      * @param rating   New rating value (1.0 - 5.0)
      * @param userId   The ID of the user who is rating the recipe
@@ -300,75 +452,49 @@ public class RecipeService {
             throw new IllegalArgumentException("Rating must be between 1.0 and 5.0");
         }
 
-        Firestore firestore = FirestoreClient.getFirestore();
-
-        // Get the recipe to check if it's public and not owned by the current user
-        Recipe recipe = getRecipeById(recipeId);
-        if (recipe == null) {
-            throw new IllegalArgumentException("Recipe not found with ID: " + recipeId);
-        }
-
-        // Check if the recipe is public
-        if (!recipe.isPublic()) {
-            throw new SecurityException("Cannot rate a private recipe");
-        }
-
-        // Check if the user is trying to rate their own recipe
-        if (recipe.getUserId() != null && recipe.getUserId().equals(userId)) {
-            throw new SecurityException("Users cannot rate their own recipes");
-        }
+        Recipe updated = updateRatings(recipeId, List.of(userId), (recipe, currentRatings) -> {
+            // Check if the recipe is public
+            if (!recipe.isPublic()) {
+                throw new SecurityException("Cannot rate a private recipe");
+            }
 
-        // Initialize ratingList if null
-        if (recipe.getRatingList() == null) {
-            recipe.setRatingList(new HashMap<>());
-        }
+            // Check if the user is trying to rate their own recipe
+            if (recipe.getUserId() != null && recipe.getUserId().equals(userId)) {
+                throw new SecurityException("Users cannot rate their own recipes");
+            }
 
-        double newTotalSumRatings = recipe.getTotalSumRatings();
-        int newNumOfRatings = recipe.getNumOfRatings();
-        double newAverageRating;
+            double newTotalSumRatings = recipe.getTotalSumRatings();
+            int newNumOfRatings = recipe.getNumOfRatings();
 
-        // Check if the user has already rated this recipe
-        if (recipe.getRatingList().containsKey(userId)) {
-            // User has already rated - update their rating
-            double oldRating = recipe.getRatingList().get(userId);
-            newTotalSumRatings = newTotalSumRatings - oldRating + rating;
-            // numOfRatings stays the same
-        } else {
-            // First time rating
-            newTotalSumRatings += rating;
-            newNumOfRatings += 1;
-        }
-
-        // Store the new rating in the ratingList
-        recipe.getRatingList().put(userId, rating);
+            // Check if the user has already rated this recipe
+            Double oldRating = currentRatings.get(userId);
+            if (oldRating != null) {
+                // User has already rated - update their rating
+                newTotalSumRatings = newTotalSumRatings - oldRating + rating;
+                // numOfRatings stays the same
+            } else {
+                // First time rating
+                newTotalSumRatings += rating;
+                newNumOfRatings += 1;
+            }
 
-        // Calculate the new average rating
-        if (newNumOfRatings > 0) {
-            newAverageRating = newTotalSumRatings / newNumOfRatings;
-            // Round to 1 decimal place
-            newAverageRating = Math.round(newAverageRating * 10.0) / 10.0;
-        } else {
-            newAverageRating = 0.0;
+            recipe.setTotalSumRatings(newTotalSumRatings);
+            recipe.setNumOfRatings(newNumOfRatings);
+            recipe.setRating(Recipe.averageRating(newTotalSumRatings, newNumOfRatings));
+            return Map.of(userId, rating);
+        });
+        if (updated == null) {
+            throw new IllegalArgumentException("Recipe not found with ID: " + recipeId);
         }
 
-        // Update the recipe document
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("totalSumRatings", newTotalSumRatings);
-        updates.put("numOfRatings", newNumOfRatings);
-        updates.put("rating", newAverageRating);
-        updates.put("ratingList", recipe.getRatingList());
-
-        firestore.collection(RECIPES_COLLECTION)
-                .document(recipeId)
-                .update(updates)
-                .get();
-
-        return getRecipeById(recipeId);
+        updated.setUserRating(rating);
+        return updated;
     }
 
     /**
-     * Delete a user's rating from a recipe
-     * 
+     * Delete a user's rating from a recipe.
+     * Changes the rating and the aggregates together like {@link #addRatingToRecipe}.
+     *
      * @param recipeId The recipe ID
      * @param userId   The ID of the user whose rating to delete
      * @return Updated recipe after removing the rating
@@ -377,62 +503,115 @@ public class RecipeService {
     public Recipe deleteRatingFromRecipe(String recipeId, String userId)
             throws ExecutionException, InterruptedException, SecurityException, IllegalArgumentException {
 
-        Firestore firestore = FirestoreClient.getFirestore();
+        Recipe updated = updateRatings(recipeId, List.of(userId), (recipe, currentRatings) -> {
+            // Check if the recipe is public
+            if (!recipe.isPublic()) {
+                throw new SecurityException("Cannot modify ratings for a private recipe");
+            }
 
-        // Get the recipe
-        Recipe recipe = getRecipeById(recipeId);
-        if (recipe == null) {
+            // Check if the user has rated this recipe
+            Double userRating = currentRatings.get(userId);
+            if (userRating == null) {
+                throw new IllegalArgumentException("User has not rated this recipe");
+            }
+
+            // Update rating metrics
+            double newTotalSumRatings = recipe.getTotalSumRatings() - userRating;
+            int newNumOfRatings = recipe.getNumOfRatings() - 1;
+
+            recipe.setTotalSumRatings(newTotalSumRatings);
+            recipe.setNumOfRatings(newNumOfRatings);
+            recipe.setRating(Recipe.averageRating(newTotalSumRatings, newNumOfRatings));
+            Map<String, Double> changes = new HashMap<>();
+            changes.put(userId, null);
+            return changes;
+        });
+        if (updated == null) {
             throw new IllegalArgumentException("Recipe not found with ID: " + recipeId);
         }
 
-        // Check if the recipe is public
-        if (!recipe.isPublic()) {
-            throw new SecurityException("Cannot modify ratings for a private recipe");
-        }
+        updated.setUserRating(null);
+        return updated;
+    }
 
-        // Initialize ratingList if null
-        if (recipe.getRatingList() == null) {
-            throw new IllegalArgumentException("User has not rated this recipe");
-        }
+    /**
+     * Get a user's current rating of a recipe
+     *
+     * @param recipeId The recipe ID
+     * @param userId   The rating user's ID
+     * @return The rating, or null if the user has not rated the recipe
+     */
+    public Double getUserRating(String recipeId, String userId) throws ExecutionException, InterruptedException {
+        return recipeStore.findUserRating(recipeId, userId);
+    }
 
-        // Check if the user has rated this recipe
-        if (!recipe.getRatingList().containsKey(userId)) {
-            throw new IllegalArgumentException("User has not rated this recipe");
+    /**
+     * Apply several users' rating changes to one recipe in a single update.
+     * Used to flush buffered ratings: the aggregates are written once for the
+     * whole group instead of once per rating. Changes that are no longer valid
+     * (recipe deleted or made private, rating own recipe, deleting a missing
+     * rating) are dropped.
+     *
+     * @param recipeId The recipe ID
+     * @param changes  New rating per user ID; a null rating deletes the user's rating
+     * @return The recipe with its new aggregates, or null if it no longer exists
+     */
+    public Recipe applyRatings(String recipeId, Map<String, Double> changes)
+            throws ExecutionException, InterruptedException {
+        if (changes.size() > MAX_RATINGS_PER_TRANSACTION) {
+            throw new IllegalArgumentException("At most " + MAX_RATINGS_PER_TRANSACTION
+                    + " rating changes can be applied at once");
         }
 
-        // Get the user's rating
-        double userRating = recipe.getRatingList().get(userId);
-
-        // Update rating metrics
-        double newTotalSumRatings = recipe.getTotalSumRatings() - userRating;
-        int newNumOfRatings = recipe.getNumOfRatings() - 1;
-        double newAverageRating;
+        return updateRatings(recipeId, changes.keySet(), (recipe, currentRatings) -> {
+            Map<String, Double> applied = new HashMap<>();
+            if (!recipe.isPublic()) {
+                return applied;
+            }
 
-        // Remove the rating from the list
-        recipe.getRatingList().remove(userId);
+            double totalSumRatings = recipe.getTotalSumRatings();
+            int numOfRatings = recipe.getNumOfRatings();
+            for (Map.Entry<String, Double> change : changes.entrySet()) {
+                String userId = change.getKey();
+                Double rating = change.getValue();
+                if (userId.equals(recipe.getUserId())) {
+                    continue;
+                }
 
-        // Calculate the new average rating
-        if (newNumOfRatings > 0) {
-            newAverageRating = newTotalSumRatings / newNumOfRatings;
-            // Round to 1 decimal place
-            newAverageRating = Math.round(newAverageRating * 10.0) / 10.0;
-        } else {
-            newAverageRating = 0.0;
-        }
+                Double oldRating = currentRatings.get(userId);
+                if (rating == null && oldRating == null) {
+                    continue;
+                }
 
-        // Update the recipe document
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("totalSumRatings", newTotalSumRatings);
-        updates.put("numOfRatings", newNumOfRatings);
-        updates.put("rating", newAverageRating);
-        updates.put("ratingList", recipe.getRatingList());
+                if (oldRating != null) {
+                    totalSumRatings -= oldRating;
+                    numOfRatings -= 1;
+                }
+                if (rating != null) {
+                    totalSumRatings += rating;
+                    numOfRatings += 1;
+                }
+                applied.put(userId, rating);
+            }
 
-        firestore.collection(RECIPES_COLLECTION)
-                .document(recipeId)
-                .update(updates)
-                .get();
+            recipe.setTotalSumRatings(totalSumRatings);
+            recipe.setNumOfRatings(numOfRatings);
+            recipe.setRating(Recipe.averageRating(totalSumRatings, numOfRatings));
+            return applied;
+        });
+    }
 
-        return getRecipeById(recipeId);
+    /**
+     * Change ratings of a recipe with the {@link RecipeStore}. The recipe's
+     * cached aggregates are dropped afterwards.
+     */
+    private Recipe updateRatings(String recipeId, Collection<String> userIds, RecipeStore.RatingUpdate update)
+            throws ExecutionException, InterruptedException {
+        try {
+            return recipeStore.updateRatings(recipeId, userIds, update);
+        } finally {
+            recipeCache.invalidate(recipeId);
+        }
     }
 
     /**
@@ -449,10 +628,7 @@ public class RecipeService {
             throws ExecutionException, InterruptedException, SecurityException {
 
         // Get the recipe
-        Recipe existingRecipe = getRecipeById(recipeId);
-        if (existingRecipe == null) {
-            throw new IllegalArgumentException("Recipe not found with ID: " + recipeId);
-        }
+        Recipe existingRecipe = getExistingRecipe(recipeId);
 
         // Check if the user owns this recipe
         if (!existingRecipe.getUserId().equals(currentUser.getId())) {
@@ -464,38 +640,47 @@ public class RecipeService {
 
         if (updateRequest.getTitle() != null) {
             updates.put("title", updateRequest.getTitle());
+            existingRecipe.setTitle(updateRequest.getTitle());
         }
 
         if (updateRequest.getCategories() != null) {
             updates.put("categories", updateRequest.getCategories());
+            existingRecipe.setCategories(updateRequest.getCategories());
         }
 
         if (updateRequest.getIngredients() != null) {
             updates.put("ingredients", updateRequest.getIngredients());
+            existingRecipe.setIngredients(updateRequest.getIngredients());
         }
 
         if (updateRequest.getInstructions() != null) {
             updates.put("instructions", updateRequest.getInstructions());
+            existingRecipe.setInstructions(updateRequest.getInstructions());
         }
 
         if (updateRequest.getEstimatedCookingTime() != null) {
             updates.put("estimatedCookingTime", updateRequest.getEstimatedCookingTime());
+            existingRecipe.setEstimatedCookingTime(updateRequest.getEstimatedCookingTime());
         }
 
         if (updateRequest.getEstimatedPrepTime() != null) {
             updates.put("estimatedPrepTime", updateRequest.getEstimatedPrepTime());
+            existingRecipe.setEstimatedPrepTime(updateRequest.getEstimatedPrepTime());
         }
 
         if (updateRequest.getServings() != null) {
             updates.put("servings", updateRequest.getServings());
+            existingRecipe.setServings(updateRequest.getServings());
         }
 
         if (updateRequest.getImage() != null) {
             updates.put("image", updateRequest.getImage());
+            existingRecipe.setImage(updateRequest.getImage());
         }
 
         if (updateRequest.getDescription() != null) {
             updates.put("description", updateRequest.getDescription());
+            existingRecipe.setDescription(updateRequest.getDescription());
         }
 
         // Special handling for isPublic attribute based on user role
@@ -503,6 +688,7 @@ public class RecipeService {
             // Only publishers can change the public attribute
             if (currentUser.isPublisher()) {
                 updates.put("public", updateRequest.getIsPublic());
+                existingRecipe.setPublic(updateRequest.getIsPublic());
             } else {
                 // For non-publishers, ignore the isPublic field
                 System.out
@@ -510,19 +696,17 @@ public class RecipeService {
             }
         }
 
-        // Update the recipe in Firestore if there are updates
+        // Update the stored recipe if there are updates. The rating is left
+        // alone: it is the average of the stored ratings, which an edit keeps.
         if (!updates.isEmpty()) {
-            // Always reset rating to 0 on update
-            updates.put("rating", 0.0);
-
-            Firestore firestore = FirestoreClient.getFirestore();
-            firestore.collection(RECIPES_COLLECTION)
-                    .document(recipeId)
-                    .update(updates)
-                    .get();
+            try {
+                recipeStore.update(recipeId, updates);
+            } finally {
+                recipeCache.invalidate(recipeId);
+            }
         }
 
-        // Return the updated recipe
-        return getRecipeById(recipeId);
+        // The updates were applied to the recipe as they were collected
+        return existingRecipe;
     }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package com.example.recipegpt2_server.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental splitter for a streamed multiple_recipes_schema document.
+ *
+ * OpenAI streams the JSON response ({"recipes":[{...},{...}]}) as arbitrary
+ * text fragments. The parser tracks string/escape state and brace depth across
+ * fragments and hands back each recipe object as soon as its closing brace
+ * arrives, so callers can persist it before the rest of the response exists.
+ *
+ * Not thread-safe; use one instance per generation stream.
+ */
+public class RecipeStreamParser {
+
+    // Recipe objects are the objects nested directly inside the top-level object
+    private static final int RECIPE_DEPTH = 2;
+
+    private final StringBuilder current = new StringBuilder();
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean escaped = false;
+
+    /**
+     * Consumes the next fragment of the response
+     *
+     * @param fragment A piece of message content from the stream
+     * @return The JSON text of every recipe object completed by this fragment
+     */
+    public List<String> feed(String fragment) {
+        List<String> completed = new ArrayList<>();
+        if (fragment == null) {
+            return completed;
+        }
+
+        for (int i = 0; i < fragment.length(); i++) {
+            char c = fragment.charAt(i);
+            boolean capturing = depth >= RECIPE_DEPTH;
+
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                if (capturing) {
+                    current.append(c);
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '"' -> inString = true;
+                case '{' -> {
+                    depth++;
+                    if (depth == RECIPE_DEPTH) {
+                        current.setLength(0);
+                        capturing = true;
+                    }
+                }
+                case '}' -> {
+                    if (depth == RECIPE_DEPTH) {
+                        current.append(c);
+                        completed.add(current.toString());
+                        current.setLength(0);
+                        depth--;
+                        continue;
+                    }
+                    depth--;
+                }
+                default -> {
+                }
+            }
+
+            if (capturing) {
+                current.append(c);
+            }
+        }
+        return completed;
+    }
+}
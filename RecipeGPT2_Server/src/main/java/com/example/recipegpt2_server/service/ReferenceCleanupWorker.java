@@ -0,0 +1,192 @@
+package com.example.recipegpt2_server.service;
+
+import com.example.recipegpt2_server.store.RecipeStore;
+import com.example.recipegpt2_server.store.UserStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background removal of references to deleted recipes.
+ *
+ * Deleting recipes writes tombstones and enqueues the recipes here instead of
+ * cleaning up inside the request. One job covers all recipes deleted together:
+ * the worker deletes their ratings, removes them from every user's
+ * savedRecipes in one combined pass of batched writes of
+ * app.recipes.cleanup.batch-size users, and deletes the tombstones once
+ * nothing refers to the recipes any more. Jobs start
+ * app.recipes.cleanup.start-delay-ms after they are queued, so the tombstones
+ * outlive several polls of other instances' recipe change feeds.
+ * A failed job is retried with exponential backoff; tombstones left by a
+ * restart are picked up again on startup.
+ *
+ * Progress is published as the "recipe.cleanup.*" meters.
+ */
+@Component
+public class ReferenceCleanupWorker {
+
+    // Firestore's limit on writes in a single batch
+    private static final int MAX_BATCH_WRITES = 500;
+
+    private final PrincipalCache principalCache;
+    private final RecipeStore recipeStore;
+    private final UserStore userStore;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long initialRetryDelayMillis;
+    private final long maxRetryDelayMillis;
+    private final long startDelayMillis;
+
+    // Recipes with a job queued or running
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final Counter removedReferences;
+    private final Counter completedJobs;
+    private final Counter retriedJobs;
+    private ScheduledExecutorService scheduler;
+
+    public ReferenceCleanupWorker(MeterRegistry meterRegistry,
+                                  PrincipalCache principalCache,
+                                  RecipeStore recipeStore,
+                                  UserStore userStore,
+                                  @Value("${app.recipes.cleanup.enabled:true}") boolean enabled,
+                                  @Value("${app.recipes.cleanup.batch-size:400}") int batchSize,
+                                  @Value("${app.recipes.cleanup.initial-retry-delay-ms:1000}") long initialRetryDelayMillis,
+                                  @Value("${app.recipes.cleanup.max-retry-delay-ms:300000}") long maxRetryDelayMillis,
+                                  @Value("${app.recipes.cleanup.start-delay-ms:10000}") long startDelayMillis) {
+        this.principalCache = principalCache;
+        this.recipeStore = recipeStore;
+        this.userStore = userStore;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, Math.min(batchSize, MAX_BATCH_WRITES));
+        this.initialRetryDelayMillis = initialRetryDelayMillis;
+        this.maxRetryDelayMillis = maxRetryDelayMillis;
+        this.startDelayMillis = startDelayMillis;
+
+        this.removedReferences = Counter.builder("recipe.cleanup.references")
+                .description("User documents updated to drop deleted recipes from savedRecipes")
+                .register(meterRegistry);
+        this.completedJobs = Counter.builder("recipe.cleanup.jobs")
+                .tag("result", "completed")
+                .description("Cleanup jobs completed")
+                .register(meterRegistry);
+        this.retriedJobs = Counter.builder("recipe.cleanup.jobs")
+                .tag("result", "retried")
+                .description("Cleanup attempts that failed and were rescheduled")
+                .register(meterRegistry);
+        Gauge.builder("recipe.cleanup.pending", pending, Set::size)
+                .description("Deleted recipes still waiting for cleanup")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts the worker and resumes the cleanups of tombstones left by a previous run
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("reference-cleanup").daemon().factory());
+        scheduler.execute(this::resumeQuietly);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Queues one combined cleanup of deleted recipes. Their tombstones must
+     * already be written.
+     *
+     * @param recipeIds The deleted recipes' IDs
+     */
+    public void enqueue(Collection<String> recipeIds) {
+        if (scheduler == null) {
+            return;
+        }
+        List<String> queued = new ArrayList<>();
+        for (String recipeId : recipeIds) {
+            if (pending.add(recipeId)) {
+                queued.add(recipeId);
+            }
+        }
+        if (!queued.isEmpty()) {
+            scheduler.schedule(() -> run(queued, 0), startDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    public double removedReferenceCount() {
+        return removedReferences.count();
+    }
+
+    /**
+     * Removes every reference to deleted recipes and then their tombstones
+     *
+     * @param recipeIds The deleted recipes' IDs
+     */
+    public void cleanUp(List<String> recipeIds) throws Exception {
+        for (String recipeId : recipeIds) {
+            recipeStore.deleteRatings(recipeId);
+        }
+
+        // Each call removes the recipes from some users, so it returns fewer until none are left
+        while (true) {
+            List<String> userIds = userStore.removeSavedReferences(recipeIds, batchSize);
+            if (userIds.isEmpty()) {
+                break;
+            }
+            for (String userId : userIds) {
+                principalCache.invalidateById(userId);
+            }
+            removedReferences.increment(userIds.size());
+        }
+
+        recipeStore.deleteTombstones(recipeIds);
+    }
+
+    private void run(List<String> recipeIds, int attempt) {
+        try {
+            cleanUp(recipeIds);
+            pending.removeAll(recipeIds);
+            completedJobs.increment();
+            System.out.println("✨ Cleaned up references to " + recipeIds.size() + " deleted recipes");
+        } catch (Exception e) {
+            retriedJobs.increment();
+            long delay = Math.min(maxRetryDelayMillis, initialRetryDelayMillis << Math.min(attempt, 20));
+            System.err.println("❌ Cleanup of " + recipeIds.size() + " deleted recipes failed, retrying in " + delay
+                    + " ms: " + e.getMessage());
+            scheduler.schedule(() -> run(recipeIds, attempt + 1), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void resumeQuietly() {
+        try {
+            enqueue(recipeStore.findTombstones());
+        } catch (Exception e) {
+            // Tombstones stay in place, so the next startup tries again
+            System.err.println("❌ Could not resume recipe cleanups: " + e.getMessage());
+        }
+    }
+}
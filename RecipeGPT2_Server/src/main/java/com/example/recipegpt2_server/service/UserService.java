@@ -1,6 +1,5 @@
 package com.example.recipegpt2_server.service;
 
-import com.example.recipegpt2_server.model.Recipe;
 import com.example.recipegpt2_server.model.User;
 import com.example.recipegpt2_server.model.UserRegistrationRequest;
 import com.example.recipegpt2_server.model.UserUpdateRequest;
@@ -17,8 +16,11 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 import java.util.Optional;
@@ -28,17 +30,49 @@ public class UserService implements UserDetailsService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PrincipalCache principalCache;
     
     @Autowired
     private RecipeService recipeService;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+            PrincipalCache principalCache) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.principalCache = principalCache;
     }
 
+    /**
+     * Load the principal for an authenticated request.
+     * Served from the principal cache when possible; the returned user is
+     * shared and must not be modified.
+     */
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        User cachedUser = principalCache.get(email);
+        if (cachedUser != null) {
+            return cachedUser;
+        }
+
+        long loadToken = principalCache.beginLoad(email);
+        User user = loadFreshUser(email);
+        principalCache.put(user, loadToken);
+        return user;
+    }
+
+    /**
+     * Load the user for a password login straight from Firestore, so the
+     * password hash is never checked against a cached copy
+     */
+    public UserDetails loadUserForLogin(String email) throws UsernameNotFoundException {
+        return loadFreshUser(email);
+    }
+
+    /**
+     * Load a user straight from Firestore, bypassing the principal cache.
+     * Used by every method that modifies and saves the user.
+     */
+    private User loadFreshUser(String email) throws UsernameNotFoundException {
         try {
             return userRepository.findByEmail(email)
                     .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
@@ -47,6 +81,28 @@ public class UserService implements UserDetailsService {
         }
     }
 
+    /**
+     * Save a modified user, bump its profile version and drop its stale
+     * principal from the cache
+     */
+    private User saveAndInvalidate(User user) throws ExecutionException, InterruptedException {
+        user.setProfileVersion(user.getProfileVersion() + 1);
+        User savedUser = userRepository.save(user);
+        principalCache.invalidate(user.getEmail());
+        return savedUser;
+    }
+
+    /**
+     * Mirror a recipe-list change that was written with a field transform:
+     * bump the in-memory profile version like the write did and drop the
+     * stale principal from the cache
+     */
+    private User afterRecipeListUpdate(User user) {
+        user.setProfileVersion(user.getProfileVersion() + 1);
+        principalCache.invalidate(user.getEmail());
+        return user;
+    }
+
     public User registerUser(UserRegistrationRequest request) throws ExecutionException, InterruptedException {
         // Check if user already exists
         try {
@@ -87,7 +143,7 @@ public class UserService implements UserDetailsService {
      * @return The updated user
      */
     public User updateUser(String email, UserUpdateRequest updateRequest) throws ExecutionException, InterruptedException {
-        User user = (User) loadUserByUsername(email);
+        User user = loadFreshUser(email);
         
         // Update only the fields that are provided in the request
         if (updateRequest.getUsername() != null) {
@@ -111,7 +167,7 @@ public class UserService implements UserDetailsService {
         }
         
         // Save the updated user
-        return userRepository.save(user);
+        return saveAndInvalidate(user);
     }
     
     /**
@@ -128,32 +184,27 @@ public class UserService implements UserDetailsService {
      */
     public User updateSavedRecipes(String email, SavedRecipesUpdateRequest updateRequest) 
             throws ExecutionException, InterruptedException, IllegalArgumentException {
-        User user = (User) loadUserByUsername(email);
+        User user = loadFreshUser(email);
         
+        List<String> savedRecipes;
         if (updateRequest.getSavedRecipes() == null) {
             // If null, set to empty list rather than null
-            user.setSavedRecipes(new ArrayList<>());
+            savedRecipes = new ArrayList<>();
         } else {
             // Validate all recipes first before updating
             List<String> invalidRecipes = new ArrayList<>();
             Map<String, String> invalidReasons = new HashMap<>();
             
+            Map<String, String> owners = recipeService.getRecipeOwners(updateRequest.getSavedRecipes());
             for (String recipeId : updateRequest.getSavedRecipes()) {
-                try {
-                    // Check if the recipe exists
-                    Recipe recipe = recipeService.getRecipeById(recipeId);
-                    
-                    if (recipe == null) {
-                        invalidRecipes.add(recipeId);
-                        invalidReasons.put(recipeId, "Recipe does not exist");
-                    } else if (recipe.getUserId().equals(user.getId())) {
-                        // Check if the recipe belongs to the current user
-                        invalidRecipes.add(recipeId);
-                        invalidReasons.put(recipeId, "Cannot save your own recipe");
-                    }
-                } catch (Exception e) {
+                // Check if the recipe exists
+                if (!owners.containsKey(recipeId)) {
+                    invalidRecipes.add(recipeId);
+                    invalidReasons.put(recipeId, "Recipe does not exist");
+                } else if (user.getId().equals(owners.get(recipeId))) {
+                    // Check if the recipe belongs to the current user
                     invalidRecipes.add(recipeId);
-                    invalidReasons.put(recipeId, "Error checking recipe: " + e.getMessage());
+                    invalidReasons.put(recipeId, "Cannot save your own recipe");
                 }
             }
             
@@ -168,11 +219,13 @@ public class UserService implements UserDetailsService {
             }
             
             // All recipes are valid, proceed with the update
-            user.setSavedRecipes(updateRequest.getSavedRecipes());
+            savedRecipes = updateRequest.getSavedRecipes();
         }
         
-        // Save the updated user
-        return userRepository.save(user);
+        // Write only the savedRecipes field rather than the whole user
+        userRepository.setRecipeList(user.getId(), "savedRecipes", savedRecipes);
+        user.setSavedRecipes(savedRecipes);
+        return afterRecipeListUpdate(user);
     }
 
     /**
@@ -186,7 +239,7 @@ public class UserService implements UserDetailsService {
      */
     public User deleteSavedRecipes(String email, DeleteSavedRecipesRequest deleteRequest) 
             throws ExecutionException, InterruptedException, IllegalArgumentException {
-        User user = (User) loadUserByUsername(email);
+        User user = loadFreshUser(email);
         
         if (deleteRequest.getRecipeIds() == null || deleteRequest.getRecipeIds().isEmpty()) {
             return user; // Nothing to do
@@ -195,15 +248,10 @@ public class UserService implements UserDetailsService {
         // Validate that all recipe IDs exist
         List<String> nonExistentRecipeIds = new ArrayList<>();
         
+        Map<String, String> owners = recipeService.getRecipeOwners(deleteRequest.getRecipeIds());
         for (String recipeId : deleteRequest.getRecipeIds()) {
-            try {
-                // Check if the recipe exists
-                Recipe recipe = recipeService.getRecipeById(recipeId);
-                
-                if (recipe == null) {
-                    nonExistentRecipeIds.add(recipeId);
-                }
-            } catch (Exception e) {
+            // Check if the recipe exists
+            if (!owners.containsKey(recipeId)) {
                 nonExistentRecipeIds.add(recipeId);
             }
         }
@@ -215,15 +263,14 @@ public class UserService implements UserDetailsService {
             throw new IllegalArgumentException(errorMsg.toString());
         }
         
-        // All recipes exist, so remove them from savedRecipes
+        // All recipes exist, so remove them from savedRecipes with a server-side arrayRemove
+        userRepository.removeFromRecipeList(user.getId(), "savedRecipes", deleteRequest.getRecipeIds());
         List<String> currentSavedRecipes = user.getSavedRecipes();
         if (currentSavedRecipes != null) {
-            currentSavedRecipes.removeAll(deleteRequest.getRecipeIds());
+            currentSavedRecipes.removeAll(new HashSet<>(deleteRequest.getRecipeIds()));
             user.setSavedRecipes(currentSavedRecipes);
         }
-        
-        // Save the updated user
-        return userRepository.save(user);
+        return afterRecipeListUpdate(user);
     }
 
     /**
@@ -243,7 +290,7 @@ public class UserService implements UserDetailsService {
      */
     public User addSavedRecipes(String email, AddSavedRecipesRequest addRequest) 
             throws ExecutionException, InterruptedException, IllegalArgumentException {
-        User user = (User) loadUserByUsername(email);
+        User user = loadFreshUser(email);
         
         if (addRequest.getRecipeIds() == null || addRequest.getRecipeIds().isEmpty()) {
             return user; // Nothing to do
@@ -259,32 +306,33 @@ public class UserService implements UserDetailsService {
         Map<String, String> failedRecipes = new HashMap<>();
         Map<String, String> alreadySavedRecipes = new HashMap<>();
         
-        // List to store validated recipes that can be added
-        List<String> validatedRecipes = new ArrayList<>();
+        // Recipes that can be added, in request order without duplicates
+        Set<String> validatedRecipes = new LinkedHashSet<>();
+        
+        // Look up the owners of the recipes that aren't saved yet in one batched read
+        Set<String> savedRecipeIds = new HashSet<>(currentSavedRecipes);
+        List<String> unsavedRecipeIds = new ArrayList<>();
+        for (String recipeId : addRequest.getRecipeIds()) {
+            if (!savedRecipeIds.contains(recipeId)) {
+                unsavedRecipeIds.add(recipeId);
+            }
+        }
+        Map<String, String> owners = recipeService.getRecipeOwners(unsavedRecipeIds);
         
         // First validate all recipes - if any can't be added, we won't add any
         for (String recipeId : addRequest.getRecipeIds()) {
             // Check if already in savedRecipes
-            if (currentSavedRecipes.contains(recipeId)) {
+            if (savedRecipeIds.contains(recipeId)) {
                 alreadySavedRecipes.put(recipeId, "Recipe is already in saved recipes");
-                continue;
-            }
-            
-            try {
+            } else if (!owners.containsKey(recipeId)) {
                 // Check if the recipe exists
-                Recipe recipe = recipeService.getRecipeById(recipeId);
-                
-                if (recipe == null) {
-                    failedRecipes.put(recipeId, "Recipe does not exist");
-                } else if (recipe.getUserId().equals(user.getId())) {
-                    // Cannot save your own recipe
-                    failedRecipes.put(recipeId, "Cannot save your own recipe");
-                } else {
-                    // Recipe is valid and not already saved
-                    validatedRecipes.add(recipeId);
-                }
-            } catch (Exception e) {
-                failedRecipes.put(recipeId, "Error checking recipe: " + e.getMessage());
+                failedRecipes.put(recipeId, "Recipe does not exist");
+            } else if (user.getId().equals(owners.get(recipeId))) {
+                // Cannot save your own recipe
+                failedRecipes.put(recipeId, "Cannot save your own recipe");
+            } else {
+                // Recipe is valid and not already saved
+                validatedRecipes.add(recipeId);
             }
         }
         
@@ -307,12 +355,11 @@ public class UserService implements UserDetailsService {
             throw new IllegalArgumentException(errorMsg.toString());
         }
         
-        // All recipes are valid and not already saved, add them
+        // All recipes are valid and not already saved, add them with a server-side arrayUnion
+        userRepository.addToRecipeList(user.getId(), "savedRecipes", new ArrayList<>(validatedRecipes));
         currentSavedRecipes.addAll(validatedRecipes);
         user.setSavedRecipes(currentSavedRecipes);
-        
-        // Save the updated user
-        return userRepository.save(user);
+        return afterRecipeListUpdate(user);
     }
 
     /**
@@ -0,0 +1,280 @@
+package com.example.recipegpt2_server.store;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Single-node database of the embedded storage backend, an H2 MVStore file
+ * shared by {@link EmbeddedRecipeStore} and {@link EmbeddedUserStore}.
+ *
+ * Documents are kept as JSON in the "recipes", "users" and "deletedRecipes"
+ * maps, in the same shape as the Firestore documents. Ratings are keyed by
+ * "recipeId/userId", and the queries the stores need are answered from
+ * index maps that are updated together with the documents: public recipes,
+ * recipes by owner ("userId/recipeId"), users by email and saved recipes
+ * ("recipeId/userId").
+ *
+ * Writes hold the database's write lock, so a write spanning several maps is
+ * atomic for other writers. It is a ReentrantLock rather than a monitor, so
+ * virtual request threads waiting for it unmount instead of pinning their
+ * carrier thread. Changes are committed every
+ * app.storage.embedded.commit-interval-ms: the new version is written out
+ * under the same lock, so every committed version is consistent, and the file
+ * is then forced to disk after the lock is released. A crash loses at most
+ * one interval. An empty app.storage.embedded.file keeps the database in
+ * memory.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "embedded")
+public class EmbeddedDatabase {
+
+    private static final String ID_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final int ID_LENGTH = 20;
+
+    private static final TypeReference<Map<String, Object>> DOCUMENT = new TypeReference<>() {
+    };
+
+    private final MVStore store;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SecureRandom random = new SecureRandom();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private ScheduledExecutorService committer;
+
+    final MVMap<String, byte[]> recipes;
+    final MVMap<String, byte[]> users;
+    final MVMap<String, byte[]> tombstones;
+    final MVMap<String, Double> ratings;
+    final MVMap<String, Boolean> publicRecipes;
+    final MVMap<String, Boolean> recipesByOwner;
+    final MVMap<String, String> usersByEmail;
+    final MVMap<String, Boolean> savedBy;
+
+    public EmbeddedDatabase(@Value("${app.storage.embedded.file:data/recipegpt.mv.db}") String file,
+                            @Value("${app.storage.embedded.commit-interval-ms:1000}") long commitIntervalMillis) {
+        MVStore.Builder builder = new MVStore.Builder().autoCommitDisabled();
+        boolean persistent = file != null && !file.isBlank();
+        if (persistent) {
+            try {
+                Path parent = Path.of(file).toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create the directory of " + file, e);
+            }
+            builder.fileName(file);
+        }
+        this.store = builder.open();
+
+        this.recipes = store.openMap("recipes");
+        this.users = store.openMap("users");
+        this.tombstones = store.openMap("deletedRecipes");
+        this.ratings = store.openMap("ratings");
+        this.publicRecipes = store.openMap("publicRecipes");
+        this.recipesByOwner = store.openMap("recipesByOwner");
+        this.usersByEmail = store.openMap("usersByEmail");
+        this.savedBy = store.openMap("savedBy");
+
+        if (persistent && commitIntervalMillis > 0) {
+            committer = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("embedded-store-commit").daemon().factory());
+            committer.scheduleWithFixedDelay(this::commitQuietly, commitIntervalMillis, commitIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        System.out.println("✨ Embedded store opened " + (persistent ? "at " + file : "in memory") + " with "
+                + recipes.size() + " recipes and " + users.size() + " users");
+    }
+
+    /**
+     * Commits pending changes and closes the file
+     */
+    @PreDestroy
+    public void close() {
+        if (committer != null) {
+            committer.shutdownNow();
+        }
+        lock();
+        try {
+            if (!store.isClosed()) {
+                store.close();
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Writes pending changes to the file and forces them to disk
+     */
+    public void commit() {
+        lock();
+        try {
+            if (store.isClosed() || !store.hasUnsavedChanges()) {
+                return;
+            }
+            // Only the changed pages are written out here, without waiting for the disk
+            store.commit();
+        } finally {
+            unlock();
+        }
+        // Writers go on while the disk catches up
+        store.sync();
+    }
+
+    /**
+     * Takes the write lock; every write to the maps holds it
+     */
+    void lock() {
+        writeLock.lock();
+    }
+
+    void unlock() {
+        writeLock.unlock();
+    }
+
+    private void commitQuietly() {
+        try {
+            commit();
+        } catch (RuntimeException e) {
+            // Changes stay pending and are written with the next commit
+            System.err.println("❌ Embedded store commit failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A new random ID, 20 letters and digits like Firestore's generated IDs
+     */
+    String newId() {
+        StringBuilder id = new StringBuilder(ID_LENGTH);
+        for (int i = 0; i < ID_LENGTH; i++) {
+            id.append(ID_ALPHABET.charAt(random.nextInt(ID_ALPHABET.length())));
+        }
+        return id.toString();
+    }
+
+    /**
+     * Reads a document, or null if it does not exist
+     */
+    Map<String, Object> read(MVMap<String, byte[]> documents, String id) {
+        byte[] json = documents.get(id);
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, DOCUMENT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt document " + id + " in " + documents.getName(), e);
+        }
+    }
+
+    void write(MVMap<String, byte[]> documents, String id, Map<String, Object> data) {
+        try {
+            documents.put(id, objectMapper.writeValueAsBytes(data));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode document " + id, e);
+        }
+    }
+
+    /**
+     * Writes or deletes a recipe document and updates the public and owner
+     * indexes. Callers hold the write lock.
+     *
+     * @param data The new document, or null to delete it
+     */
+    void putRecipe(String recipeId, Map<String, Object> data) {
+        Map<String, Object> previous = read(recipes, recipeId);
+        if (previous != null) {
+            publicRecipes.remove(recipeId);
+            if (previous.get("userId") instanceof String owner) {
+                recipesByOwner.remove(owner + "/" + recipeId);
+            }
+        }
+        if (data == null) {
+            recipes.remove(recipeId);
+            return;
+        }
+
+        write(recipes, recipeId, data);
+        if (Boolean.TRUE.equals(data.get("public"))) {
+            publicRecipes.put(recipeId, Boolean.TRUE);
+        }
+        if (data.get("userId") instanceof String owner) {
+            recipesByOwner.put(owner + "/" + recipeId, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Writes a user document and updates the email and saved recipe indexes.
+     * Callers hold the write lock.
+     */
+    void putUser(String userId, Map<String, Object> data) {
+        Map<String, Object> previous = read(users, userId);
+        Set<String> previousSaved = previous != null ? new HashSet<>(list(previous.get("savedRecipes"))) : Set.of();
+        Set<String> saved = new HashSet<>(list(data.get("savedRecipes")));
+
+        if (previous != null && previous.get("email") instanceof String email
+                && !Objects.equals(email, data.get("email")) && userId.equals(usersByEmail.get(email))) {
+            usersByEmail.remove(email);
+        }
+        for (String recipeId : previousSaved) {
+            if (!saved.contains(recipeId)) {
+                savedBy.remove(recipeId + "/" + userId);
+            }
+        }
+
+        write(users, userId, data);
+        if (data.get("email") instanceof String email) {
+            usersByEmail.put(email, userId);
+        }
+        for (String recipeId : saved) {
+            if (!previousSaved.contains(recipeId)) {
+                savedBy.put(recipeId + "/" + userId, Boolean.TRUE);
+            }
+        }
+    }
+
+    /**
+     * The part after the prefix of every key that starts with prefix + "/"
+     */
+    static List<String> keysUnder(MVMap<String, ?> map, String prefix) {
+        String from = prefix + "/";
+        List<String> suffixes = new ArrayList<>();
+        Iterator<String> keys = map.keyIterator(from);
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!key.startsWith(from)) {
+                break;
+            }
+            suffixes.add(key.substring(from.length()));
+        }
+        return suffixes;
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<String> list(Object value) {
+        return value instanceof List<?> list ? new ArrayList<>((List<String>) list) : new ArrayList<>();
+    }
+}
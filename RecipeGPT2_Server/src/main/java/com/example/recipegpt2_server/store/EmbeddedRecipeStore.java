@@ -0,0 +1,414 @@
+package com.example.recipegpt2_server.store;
+
+import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.model.RecipeCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link RecipeStore} on the {@link EmbeddedDatabase}.
+ *
+ * Writes run under the database's write lock, so rating updates never need
+ * to be retried. Each write queues its changes for the listeners while it
+ * holds the lock, and the listeners are called after the lock is released,
+ * one write at a time and in write order. A writing call returns once its
+ * changes are delivered, unless another thread is already delivering them.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "embedded")
+public class EmbeddedRecipeStore implements RecipeStore {
+
+    private record Subscription(boolean publicOnly, Listener listener) {
+    }
+
+    /**
+     * The recipes written by one write, for the listeners subscribed at the
+     * time; a null document is a deleted recipe
+     */
+    private record Delivery(List<Subscription> subscriptions, Map<String, Map<String, Object>> documents) {
+    }
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Queue<Delivery> deliveries = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock deliveryLock = new ReentrantLock();
+
+    @Autowired
+    private EmbeddedDatabase database;
+
+    @Override
+    public Recipe insert(Recipe recipe) {
+        database.lock();
+        try {
+            recipe.setId(database.newId());
+            database.putRecipe(recipe.getId(), recipe.toMap());
+            publish(List.of(recipe.getId()));
+        } finally {
+            database.unlock();
+            deliverPending();
+        }
+        return recipe;
+    }
+
+    @Override
+    public void insertAll(List<Recipe> recipes, String userId) throws ExecutionException {
+        database.lock();
+        try {
+            Map<String, Object> user = null;
+            if (userId != null) {
+                user = database.read(database.users, userId);
+                if (user == null) {
+                    throw new ExecutionException(new NoSuchElementException("User not found with ID: " + userId));
+                }
+            }
+
+            List<String> recipeIds = new ArrayList<>();
+            for (Recipe recipe : recipes) {
+                recipe.setId(database.newId());
+                database.putRecipe(recipe.getId(), recipe.toMap());
+                recipeIds.add(recipe.getId());
+            }
+
+            if (user != null) {
+                List<String> createdRecipes = EmbeddedDatabase.list(user.get("createdRecipes"));
+                createdRecipes.addAll(recipeIds);
+                user.put("createdRecipes", createdRecipes);
+                user.put("profileVersion", EmbeddedUserStore.profileVersion(user) + 1);
+                database.putUser(userId, user);
+            }
+            publish(recipeIds);
+        } finally {
+            database.unlock();
+            deliverPending();
+        }
+    }
+
+    @Override
+    public void update(String recipeId, Map<String, Object> fields) throws ExecutionException {
+        database.lock();
+        try {
+            Map<String, Object> data = database.read(database.recipes, recipeId);
+            if (data == null) {
+                throw new ExecutionException(new NoSuchElementException("Recipe not found with ID: " + recipeId));
+            }
+            data.putAll(fields);
+            database.putRecipe(recipeId, data);
+            publish(List.of(recipeId));
+        } finally {
+            database.unlock();
+            deliverPending();
+        }
+    }
+
+    @Override
+    public void delete(List<Recipe> recipes) {
+        database.lock();
+        try {
+            long deletedAt = System.currentTimeMillis();
+            List<String> recipeIds = new ArrayList<>();
+            for (Recipe recipe : recipes) {
+                Map<String, Object> tombstone = new HashMap<>();
+                tombstone.put("userId", recipe.getUserId());
+                tombstone.put("deletedAt", deletedAt);
+                database.putRecipe(recipe.getId(), null);
+                database.write(database.tombstones, recipe.getId(), tombstone);
+                recipeIds.add(recipe.getId());
+            }
+            publish(recipeIds);
+        } finally {
+            database.unlock();
+            deliverPending();
+        }
+    }
+
+    @Override
+    public Recipe findById(String recipeId, String ratingUserId) {
+        Map<String, Object> data = database.read(database.recipes, recipeId);
+        if (data == null) {
+            return null;
+        }
+        Recipe recipe = RecipeCodec.decode(data, recipeId);
+        if (ratingUserId != null) {
+            recipe.setUserRating(database.ratings.get(ratingKey(recipeId, ratingUserId)));
+        }
+        return recipe;
+    }
+
+    /**
+     * Recipes are always read whole; the summary flag only matters for Firestore
+     */
+    @Override
+    public Map<String, Recipe> findByIds(Collection<String> recipeIds, boolean summaryOnly, String ratingUserId,
+            Collection<String> ratedRecipeIds) {
+        Map<String, Recipe> recipes = new HashMap<>();
+        for (String recipeId : new LinkedHashSet<>(recipeIds)) {
+            Recipe recipe = findById(recipeId, null);
+            if (recipe != null) {
+                recipes.put(recipeId, recipe);
+            }
+        }
+        if (ratingUserId != null) {
+            for (String recipeId : ratedRecipeIds) {
+                Recipe recipe = recipes.get(recipeId);
+                if (recipe != null) {
+                    recipe.setUserRating(database.ratings.get(ratingKey(recipeId, ratingUserId)));
+                }
+            }
+        }
+        return recipes;
+    }
+
+    @Override
+    public Map<String, String> findOwners(Collection<String> recipeIds) {
+        Map<String, String> owners = new HashMap<>();
+        for (String recipeId : new LinkedHashSet<>(recipeIds)) {
+            Map<String, Object> data = database.read(database.recipes, recipeId);
+            if (data != null) {
+                owners.put(recipeId, (String) data.get("userId"));
+            }
+        }
+        return owners;
+    }
+
+    @Override
+    public List<Recipe> findByUserId(String userId, boolean summaryOnly) {
+        List<Recipe> recipes = new ArrayList<>();
+        for (String recipeId : EmbeddedDatabase.keysUnder(database.recipesByOwner, userId)) {
+            Recipe recipe = findById(recipeId, null);
+            if (recipe != null) {
+                recipes.add(recipe);
+            }
+        }
+        return recipes;
+    }
+
+    @Override
+    public List<Recipe> findPublic(String startAfterId, int limit, boolean summaryOnly) {
+        List<Recipe> recipes = new ArrayList<>();
+        String fromId = startAfterId != null ? database.publicRecipes.higherKey(startAfterId) : null;
+        if (startAfterId != null && fromId == null) {
+            return recipes;
+        }
+        Iterator<String> recipeIds = database.publicRecipes.keyIterator(fromId);
+        while (recipeIds.hasNext() && (limit <= 0 || recipes.size() < limit)) {
+            Recipe recipe = findById(recipeIds.next(), null);
+            if (recipe != null && recipe.isPublic()) {
+                recipes.add(recipe);
+            }
+        }
+        return recipes;
+    }
+
+    @Override
+    public Double findUserRating(String recipeId, String userId) {
+        return database.ratings.get(ratingKey(recipeId, userId));
+    }
+
+    @Override
+    public Recipe updateRatings(String recipeId, Collection<String> userIds, RatingUpdate update) {
+        database.lock();
+        try {
+            Map<String, Object> data = database.read(database.recipes, recipeId);
+            if (data == null) {
+                return null;
+            }
+            Recipe recipe = RecipeCodec.decode(data, recipeId);
+
+            Map<String, Double> currentRatings = new HashMap<>();
+            for (String userId : userIds) {
+                Double rating = database.ratings.get(ratingKey(recipeId, userId));
+                if (rating != null) {
+                    currentRatings.put(userId, rating);
+                }
+            }
+
+            Map<String, Double> changes = update.apply(recipe, currentRatings);
+            if (changes.isEmpty()) {
+                return recipe;
+            }
+
+            changes.forEach((userId, rating) -> {
+                if (rating != null) {
+                    database.ratings.put(ratingKey(recipeId, userId), rating);
+                } else {
+                    database.ratings.remove(ratingKey(recipeId, userId));
+                }
+            });
+            data.put("totalSumRatings", recipe.getTotalSumRatings());
+            data.put("numOfRatings", recipe.getNumOfRatings());
+            data.put("rating", recipe.getRating());
+            database.putRecipe(recipeId, data);
+            publish(List.of(recipeId));
+            return recipe;
+        } finally {
+            database.unlock();
+            deliverPending();
+        }
+    }
+
+    @Override
+    public void deleteRatings(String recipeId) {
+        database.lock();
+        try {
+            for (String userId : EmbeddedDatabase.keysUnder(database.ratings, recipeId)) {
+                database.ratings.remove(ratingKey(recipeId, userId));
+            }
+        } finally {
+            database.unlock();
+        }
+    }
+
+    @Override
+    public List<String> findTombstones() {
+        return new ArrayList<>(database.tombstones.keyList());
+    }
+
+    @Override
+    public void deleteTombstones(List<String> recipeIds) {
+        database.lock();
+        try {
+            for (String recipeId : recipeIds) {
+                database.tombstones.remove(recipeId);
+            }
+        } finally {
+            database.unlock();
+        }
+    }
+
+    /**
+     * Delivers every matching recipe to the listener before returning; later
+     * writes are delivered as they happen
+     */
+    @Override
+    public Registration listen(boolean publicOnly, Listener listener) {
+        Subscription subscription = new Subscription(publicOnly, listener);
+        database.lock();
+        try {
+            Iterable<String> recipeIds = publicOnly ? database.publicRecipes.keyList() : database.recipes.keyList();
+            Map<String, Map<String, Object>> documents = new LinkedHashMap<>();
+            for (String recipeId : recipeIds) {
+                Map<String, Object> data = database.read(database.recipes, recipeId);
+                if (data != null) {
+                    documents.put(recipeId, data);
+                }
+            }
+            // Queued under the lock, so the listener gets no write older than this snapshot
+            deliveries.add(new Delivery(List.of(subscription), documents));
+            subscriptions.add(subscription);
+        } finally {
+            database.unlock();
+        }
+        deliverPending();
+        return () -> subscriptions.remove(subscription);
+    }
+
+    /**
+     * Writes are delivered like to {@link #listen} listeners, without reading
+     * every recipe first
+     */
+    @Override
+    public Registration listenForChangedIds(ChangedIdsListener listener) {
+        Subscription subscription = new Subscription(false, new Listener() {
+            @Override
+            public void onChanges(List<Change> changes) {
+                List<String> recipeIds = new ArrayList<>();
+                for (Change change : changes) {
+                    recipeIds.add(change.recipeId());
+                }
+                listener.onChanged(recipeIds);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                listener.onError(error);
+            }
+        });
+        database.lock();
+        try {
+            deliveries.add(new Delivery(List.of(subscription), Map.of()));
+            subscriptions.add(subscription);
+        } finally {
+            database.unlock();
+        }
+        deliverPending();
+        return () -> subscriptions.remove(subscription);
+    }
+
+    /**
+     * Queues the current state of written recipes for every listener. Callers
+     * hold the write lock, so deliveries are queued in write order.
+     */
+    private void publish(List<String> recipeIds) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        Map<String, Map<String, Object>> documents = new LinkedHashMap<>();
+        for (String recipeId : recipeIds) {
+            documents.put(recipeId, database.read(database.recipes, recipeId));
+        }
+        deliveries.add(new Delivery(List.copyOf(subscriptions), documents));
+    }
+
+    /**
+     * Calls the listeners with the queued deliveries, outside the write lock.
+     * One thread delivers at a time; a thread that finds another one
+     * delivering leaves its deliveries to it, and the check after unlocking
+     * picks up deliveries queued while the last one was finishing.
+     */
+    private void deliverPending() {
+        while (!deliveries.isEmpty() && deliveryLock.tryLock()) {
+            try {
+                Delivery delivery;
+                while ((delivery = deliveries.poll()) != null) {
+                    for (Subscription subscription : delivery.subscriptions()) {
+                        if (subscriptions.contains(subscription)) {
+                            deliver(subscription, changes(subscription, delivery.documents()));
+                        }
+                    }
+                }
+            } finally {
+                deliveryLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Each listener gets its own copies, since listeners may modify them
+     */
+    private static List<Change> changes(Subscription subscription, Map<String, Map<String, Object>> documents) {
+        List<Change> changes = new ArrayList<>();
+        documents.forEach((recipeId, data) -> {
+            boolean removed = data == null || subscription.publicOnly() && !Boolean.TRUE.equals(data.get("public"));
+            changes.add(new Change(recipeId, removed ? null : RecipeCodec.decode(data, recipeId)));
+        });
+        return changes;
+    }
+
+    private static void deliver(Subscription subscription, List<Change> changes) {
+        try {
+            subscription.listener().onChanges(changes);
+        } catch (RuntimeException e) {
+            // A failing listener must not fail the write that has already happened
+            System.err.println("❌ Recipe listener failed: " + e.getMessage());
+        }
+    }
+
+    private static String ratingKey(String recipeId, String userId) {
+        return recipeId + "/" + userId;
+    }
+}
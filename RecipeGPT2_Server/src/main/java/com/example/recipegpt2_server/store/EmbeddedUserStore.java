@@ -0,0 +1,132 @@
+package com.example.recipegpt2_server.store;
+
+import com.example.recipegpt2_server.model.User;
+import com.example.recipegpt2_server.model.UserCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link UserStore} on the {@link EmbeddedDatabase}. Recipe list changes
+ * read and rewrite the user under the database's write lock, with the same
+ * results as Firestore's arrayUnion and arrayRemove.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "embedded")
+public class EmbeddedUserStore implements UserStore {
+
+    @Autowired
+    private EmbeddedDatabase database;
+
+    @Override
+    public void save(User user) {
+        database.lock();
+        try {
+            database.putUser(user.getId(), UserCodec.encode(user));
+        } finally {
+            database.unlock();
+        }
+    }
+
+    @Override
+    public Optional<User> findById(String id) {
+        Map<String, Object> data = database.read(database.users, id);
+        return data != null ? Optional.of(UserCodec.decode(data, id)) : Optional.empty();
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        String userId = database.usersByEmail.get(email);
+        return userId != null ? findById(userId) : Optional.empty();
+    }
+
+    @Override
+    public void addToRecipeList(String userId, String field, List<String> recipeIds) throws ExecutionException {
+        updateRecipeList(userId, field, list -> {
+            for (String recipeId : recipeIds) {
+                if (!list.contains(recipeId)) {
+                    list.add(recipeId);
+                }
+            }
+            return list;
+        });
+    }
+
+    @Override
+    public void removeFromRecipeList(String userId, String field, List<String> recipeIds) throws ExecutionException {
+        updateRecipeList(userId, field, list -> {
+            list.removeAll(recipeIds);
+            return list;
+        });
+    }
+
+    @Override
+    public void setRecipeList(String userId, String field, List<String> recipeIds) throws ExecutionException {
+        updateRecipeList(userId, field, list -> new ArrayList<>(recipeIds));
+    }
+
+    private void updateRecipeList(String userId, String field, UnaryOperator<List<String>> update)
+            throws ExecutionException {
+        database.lock();
+        try {
+            Map<String, Object> data = database.read(database.users, userId);
+            if (data == null) {
+                throw new ExecutionException(new NoSuchElementException("User not found with ID: " + userId));
+            }
+            data.put(field, update.apply(EmbeddedDatabase.list(data.get(field))));
+            data.put("profileVersion", profileVersion(data) + 1);
+            database.putUser(userId, data);
+        } finally {
+            database.unlock();
+        }
+    }
+
+    /**
+     * Finds the users who saved any of the recipes from the saved recipe index
+     */
+    @Override
+    public List<String> removeSavedReferences(List<String> recipeIds, int limit) {
+        database.lock();
+        try {
+            Set<String> userIds = new LinkedHashSet<>();
+            for (String recipeId : recipeIds) {
+                for (String userId : EmbeddedDatabase.keysUnder(database.savedBy, recipeId)) {
+                    if (userIds.size() == limit) {
+                        break;
+                    }
+                    userIds.add(userId);
+                }
+            }
+
+            for (String userId : userIds) {
+                Map<String, Object> data = database.read(database.users, userId);
+                if (data == null) {
+                    recipeIds.forEach(recipeId -> database.savedBy.remove(recipeId + "/" + userId));
+                    continue;
+                }
+                List<String> savedRecipes = EmbeddedDatabase.list(data.get("savedRecipes"));
+                savedRecipes.removeAll(recipeIds);
+                data.put("savedRecipes", savedRecipes);
+                data.put("profileVersion", profileVersion(data) + 1);
+                database.putUser(userId, data);
+            }
+            return new ArrayList<>(userIds);
+        } finally {
+            database.unlock();
+        }
+    }
+
+    static long profileVersion(Map<String, Object> data) {
+        return data.get("profileVersion") instanceof Number profileVersion ? profileVersion.longValue() : 0L;
+    }
+}
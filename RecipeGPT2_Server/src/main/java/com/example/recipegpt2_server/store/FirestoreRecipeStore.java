@@ -0,0 +1,622 @@
+package com.example.recipegpt2_server.store;
+
+import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.model.RecipeCodec;
+import com.example.recipegpt2_server.model.RecipeSummary;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldMask;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.WriteBatch;
+import io.grpc.Status;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link RecipeStore} on the Firestore "recipes" collection. Each rating is
+ * its own document in the recipe's ratings subcollection,
+ * recipes/{recipeId}/ratings/{userId}, and deleted recipes leave a tombstone
+ * in the "deletedRecipes" collection.
+ *
+ * Recipe documents written before the ratings subcollection may still carry
+ * an inline ratingList map. Its entries count as the users' ratings until
+ * they rate again, when the entry is deleted in the same transaction. The
+ * stored rating is not kept in step with the aggregates; see RecipeCodec.
+ *
+ * Every write sets the recipe's updatedAt, and tombstones carry deletedAt,
+ * both as server timestamps; {@link #listenForChangedIds} polls them.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "firestore", matchIfMissing = true)
+public class FirestoreRecipeStore implements RecipeStore {
+
+    private static final String RECIPES_COLLECTION = "recipes";
+    private static final String RATINGS_SUBCOLLECTION = "ratings";
+    private static final String TOMBSTONES_COLLECTION = "deletedRecipes";
+    private static final String UPDATED_AT = "updatedAt";
+    private static final String DELETED_AT = "deletedAt";
+
+    // Firestore's limit on writes in a single batch
+    private static final int MAX_BATCH_WRITES = 500;
+
+    @Autowired
+    private Firestore firestore;
+
+    @Value("${app.recipes.batch-get-size:100}")
+    private int batchGetSize = 100;
+
+    @Value("${app.recipes.change-feed.poll-interval-ms:1000}")
+    private long changeFeedPollMillis = 1000;
+
+    // Commits can become visible slightly out of timestamp order, so each poll looks back this far
+    @Value("${app.recipes.change-feed.overlap-ms:2000}")
+    private long changeFeedOverlapMillis = 2000;
+
+    @Override
+    public Recipe insert(Recipe recipe) throws ExecutionException, InterruptedException {
+        DocumentReference documentReference = firestore.collection(RECIPES_COLLECTION).add(encode(recipe)).get();
+        recipe.setId(documentReference.getId());
+        return recipe;
+    }
+
+    /**
+     * Writes the recipes in batches together with a FieldValue.arrayUnion of
+     * their IDs on the user's createdRecipes; each batch is saved completely
+     * or not at all
+     */
+    @Override
+    public void insertAll(List<Recipe> recipes, String userId) throws ExecutionException, InterruptedException {
+        // The batch holds the recipe documents plus the user update
+        if (recipes.size() > MAX_BATCH_WRITES - 1) {
+            throw new IllegalArgumentException("At most " + (MAX_BATCH_WRITES - 1) + " recipes fit in one batch");
+        }
+        WriteBatch batch = firestore.batch();
+        List<String> recipeIds = new ArrayList<>();
+
+        for (Recipe recipe : recipes) {
+            // Allocate the document ID locally so the recipe can be written in the batch
+            DocumentReference recipeRef = firestore.collection(RECIPES_COLLECTION).document();
+            recipe.setId(recipeRef.getId());
+            batch.set(recipeRef, encode(recipe));
+            recipeIds.add(recipeRef.getId());
+        }
+
+        if (userId != null) {
+            // Fails the whole batch if the user document does not exist
+            batch.update(firestore.collection(FirestoreUserStore.USERS_COLLECTION).document(userId),
+                    "createdRecipes", FieldValue.arrayUnion(recipeIds.toArray()),
+                    "profileVersion", FieldValue.increment(1));
+        }
+        batch.commit().get();
+    }
+
+    @Override
+    public void update(String recipeId, Map<String, Object> fields) throws ExecutionException, InterruptedException {
+        Map<String, Object> updates = new HashMap<>(fields);
+        updates.put(UPDATED_AT, FieldValue.serverTimestamp());
+        firestore.collection(RECIPES_COLLECTION)
+                .document(recipeId)
+                .update(updates)
+                .get();
+    }
+
+    @Override
+    public void delete(List<Recipe> recipes) throws ExecutionException, InterruptedException {
+        WriteBatch batch = firestore.batch();
+        for (Recipe recipe : recipes) {
+            Map<String, Object> tombstone = new HashMap<>();
+            tombstone.put("userId", recipe.getUserId());
+            tombstone.put(DELETED_AT, FieldValue.serverTimestamp());
+            batch.delete(firestore.collection(RECIPES_COLLECTION).document(recipe.getId()));
+            batch.set(firestore.collection(TOMBSTONES_COLLECTION).document(recipe.getId()), tombstone);
+        }
+        batch.commit().get();
+    }
+
+    /**
+     * Requests the user's rating document alongside the recipe
+     */
+    @Override
+    public Recipe findById(String recipeId, String ratingUserId) throws ExecutionException, InterruptedException {
+        DocumentReference recipeRef = firestore.collection(RECIPES_COLLECTION).document(recipeId);
+
+        ApiFuture<DocumentSnapshot> recipeFuture = recipeRef.get();
+        ApiFuture<DocumentSnapshot> ratingFuture = ratingUserId != null
+                ? recipeRef.collection(RATINGS_SUBCOLLECTION).document(ratingUserId).get()
+                : null;
+        DocumentSnapshot document = recipeFuture.get();
+        if (!document.exists()) {
+            return null;
+        }
+
+        Recipe recipe = RecipeCodec.decode(document);
+        if (ratingFuture != null) {
+            recipe.setUserRating(previousRating(ratingFuture.get(), Recipe.legacyRating(document, ratingUserId)));
+        }
+        return recipe;
+    }
+
+    /**
+     * Reads the recipes and the user's rating documents with batched gets of
+     * app.recipes.batch-get-size documents. All chunks are requested before
+     * waiting on any.
+     */
+    @Override
+    public Map<String, Recipe> findByIds(Collection<String> recipeIds, boolean summaryOnly, String ratingUserId,
+            Collection<String> ratedRecipeIds) throws ExecutionException, InterruptedException {
+        Map<String, Recipe> recipes = new HashMap<>();
+        if (recipeIds.isEmpty()) {
+            return recipes;
+        }
+        // With summaries, the user's entry in the legacy inline ratingList is read as well
+        FieldMask fieldMask = summaryOnly ? summaryMask(ratingUserId) : null;
+
+        List<ApiFuture<List<DocumentSnapshot>>> recipeFutures = getAllInChunks(recipeReferences(recipeIds),
+                fieldMask);
+        List<ApiFuture<List<DocumentSnapshot>>> ratingFutures = ratingUserId != null
+                ? getAllInChunks(ratingReferences(ratedRecipeIds, ratingUserId), null)
+                : List.of();
+
+        Map<String, DocumentSnapshot> documents = new HashMap<>();
+        for (ApiFuture<List<DocumentSnapshot>> future : recipeFutures) {
+            for (DocumentSnapshot document : future.get()) {
+                if (document.exists()) {
+                    documents.put(document.getId(), document);
+                    recipes.put(document.getId(), RecipeCodec.decode(document));
+                }
+            }
+        }
+        if (ratingUserId == null) {
+            return recipes;
+        }
+
+        // A rating document's parent collection belongs to the rated recipe
+        Map<String, Double> ratings = new HashMap<>();
+        for (ApiFuture<List<DocumentSnapshot>> future : ratingFutures) {
+            for (DocumentSnapshot document : future.get()) {
+                Object rating = document.exists() ? document.get("rating") : null;
+                if (rating instanceof Number number) {
+                    ratings.put(document.getReference().getParent().getParent().getId(), number.doubleValue());
+                }
+            }
+        }
+        for (String recipeId : ratedRecipeIds) {
+            Recipe recipe = recipes.get(recipeId);
+            if (recipe != null) {
+                Double rating = ratings.get(recipeId);
+                recipe.setUserRating(rating != null ? rating
+                        : Recipe.legacyRating(documents.get(recipeId), ratingUserId));
+            }
+        }
+        return recipes;
+    }
+
+    /**
+     * One batched read that only fetches the userId field
+     */
+    @Override
+    public Map<String, String> findOwners(Collection<String> recipeIds) throws ExecutionException, InterruptedException {
+        Map<String, String> owners = new HashMap<>();
+        if (recipeIds.isEmpty()) {
+            return owners;
+        }
+        List<DocumentReference> references = recipeReferences(recipeIds);
+
+        for (DocumentSnapshot document : firestore.getAll(references.toArray(new DocumentReference[0]),
+                FieldMask.of("userId")).get()) {
+            if (document.exists()) {
+                owners.put(document.getId(), document.getString("userId"));
+            }
+        }
+        return owners;
+    }
+
+    @Override
+    public List<Recipe> findByUserId(String userId, boolean summaryOnly)
+            throws ExecutionException, InterruptedException {
+        Query query = firestore.collection(RECIPES_COLLECTION).whereEqualTo("userId", userId);
+        if (summaryOnly) {
+            query = query.select(RecipeSummary.FIELDS);
+        }
+
+        List<Recipe> recipes = new ArrayList<>();
+        for (QueryDocumentSnapshot document : query.get().get().getDocuments()) {
+            recipes.add(RecipeCodec.decode(document));
+        }
+        return recipes;
+    }
+
+    @Override
+    public List<Recipe> findPublic(String startAfterId, int limit, boolean summaryOnly)
+            throws ExecutionException, InterruptedException {
+        Query query = firestore.collection(RECIPES_COLLECTION)
+                .whereEqualTo("public", true)
+                .orderBy(FieldPath.documentId());
+        if (summaryOnly) {
+            query = query.select(RecipeSummary.FIELDS);
+        }
+        if (startAfterId != null) {
+            query = query.startAfter(startAfterId);
+        }
+        if (limit > 0) {
+            query = query.limit(limit);
+        }
+
+        List<Recipe> recipes = new ArrayList<>();
+        for (QueryDocumentSnapshot document : query.get().get().getDocuments()) {
+            recipes.add(RecipeCodec.decode(document));
+        }
+        return recipes;
+    }
+
+    /**
+     * The user's rating document, or else the entry left in the recipe's
+     * legacy inline ratingList
+     */
+    @Override
+    public Double findUserRating(String recipeId, String userId) throws ExecutionException, InterruptedException {
+        DocumentReference recipeRef = firestore.collection(RECIPES_COLLECTION).document(recipeId);
+        DocumentSnapshot ratingDocument = recipeRef.collection(RATINGS_SUBCOLLECTION).document(userId).get().get();
+        if (ratingDocument.exists()) {
+            return previousRating(ratingDocument, null);
+        }
+        // Only the user's entry of the legacy map is read
+        FieldPath legacyEntry = FieldPath.of("ratingList", userId);
+        return Recipe.legacyRating(recipeRef.get(FieldMask.of(legacyEntry)).get(), userId);
+    }
+
+    /**
+     * Reads and writes the users' rating documents in one Firestore
+     * transaction, so a user's concurrent ratings are retried instead of
+     * overwriting each other. The recipe is read before the transaction and
+     * its aggregates are changed with atomic increments, so raters of the same
+     * recipe do not contend on its document; a user's legacy inline rating is
+     * read again inside the transaction, as it is deleted in the same write.
+     * The returned aggregates include this update but may miss concurrent ones.
+     * Validation failures raised by the update (IllegalArgumentException,
+     * SecurityException) are rethrown as themselves.
+     */
+    @Override
+    public Recipe updateRatings(String recipeId, Collection<String> userIds, RatingUpdate update)
+            throws ExecutionException, InterruptedException {
+        DocumentReference recipeRef = firestore.collection(RECIPES_COLLECTION).document(recipeId);
+        DocumentSnapshot stored = recipeRef.get().get();
+        if (!stored.exists()) {
+            return null;
+        }
+        Recipe storedRecipe = RecipeCodec.decode(stored);
+
+        List<String> raters = new ArrayList<>(userIds);
+        DocumentReference[] ratingRefs = new DocumentReference[raters.size()];
+        List<FieldPath> legacyEntries = new ArrayList<>();
+        for (int i = 0; i < ratingRefs.length; i++) {
+            ratingRefs[i] = recipeRef.collection(RATINGS_SUBCOLLECTION).document(raters.get(i));
+            if (Recipe.legacyRating(stored, raters.get(i)) != null) {
+                legacyEntries.add(FieldPath.of("ratingList", raters.get(i)));
+            }
+        }
+
+        try {
+            return firestore.runTransaction(transaction -> {
+                // Rating documents come back in the order they were requested
+                List<DocumentSnapshot> ratingDocuments = transaction.getAll(ratingRefs).get();
+                DocumentSnapshot legacy = legacyEntries.isEmpty() ? stored
+                        : transaction.getAll(new DocumentReference[]{recipeRef},
+                                FieldMask.of(legacyEntries.toArray(new FieldPath[0]))).get().get(0);
+                Map<String, Double> currentRatings = new HashMap<>();
+                Set<String> legacyRaters = new HashSet<>();
+                for (int i = 0; i < ratingRefs.length; i++) {
+                    String userId = raters.get(i);
+                    Double legacyRating = Recipe.legacyRating(legacy, userId);
+                    if (legacyRating != null) {
+                        legacyRaters.add(userId);
+                    }
+                    Double rating = previousRating(ratingDocuments.get(i), legacyRating);
+                    if (rating != null) {
+                        currentRatings.put(userId, rating);
+                    }
+                }
+
+                // The update may run again on retry, so it changes a fresh copy
+                Recipe recipe = storedRecipe.toBuilder().build();
+                Map<String, Double> changes = update.apply(recipe, currentRatings);
+                if (changes.isEmpty()) {
+                    return recipe;
+                }
+
+                List<Object> moreFieldsAndValues = new ArrayList<>(List.of("numOfRatings",
+                        FieldValue.increment(recipe.getNumOfRatings() - storedRecipe.getNumOfRatings()),
+                        UPDATED_AT, FieldValue.serverTimestamp()));
+                for (int i = 0; i < ratingRefs.length; i++) {
+                    String userId = raters.get(i);
+                    if (!changes.containsKey(userId)) {
+                        continue;
+                    }
+                    Double rating = changes.get(userId);
+                    if (rating != null) {
+                        Map<String, Object> ratingData = new HashMap<>();
+                        ratingData.put("userId", userId);
+                        ratingData.put("rating", rating);
+                        transaction.set(ratingRefs[i], ratingData);
+                    } else {
+                        transaction.delete(ratingRefs[i]);
+                    }
+                    // The legacy entry is deleted in the same write, so the map drains as users re-rate
+                    if (legacyRaters.contains(userId)) {
+                        moreFieldsAndValues.add(FieldPath.of("ratingList", userId));
+                        moreFieldsAndValues.add(FieldValue.delete());
+                    }
+                }
+                transaction.update(recipeRef, "totalSumRatings",
+                        FieldValue.increment(recipe.getTotalSumRatings() - storedRecipe.getTotalSumRatings()),
+                        moreFieldsAndValues.toArray());
+                return recipe;
+            }).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FirestoreException cause && cause.getStatus() != null
+                    && cause.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                // The recipe was deleted after it was read
+                return null;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Ratings subcollections are not deleted together with their parent document
+     */
+    @Override
+    public void deleteRatings(String recipeId) throws ExecutionException, InterruptedException {
+        firestore.recursiveDelete(firestore.collection(RECIPES_COLLECTION).document(recipeId)
+                .collection(RATINGS_SUBCOLLECTION)).get();
+    }
+
+    @Override
+    public List<String> findTombstones() throws ExecutionException, InterruptedException {
+        List<String> recipeIds = new ArrayList<>();
+        for (QueryDocumentSnapshot tombstone : firestore.collection(TOMBSTONES_COLLECTION)
+                .get().get().getDocuments()) {
+            recipeIds.add(tombstone.getId());
+        }
+        return recipeIds;
+    }
+
+    @Override
+    public void deleteTombstones(List<String> recipeIds) throws ExecutionException, InterruptedException {
+        for (int from = 0; from < recipeIds.size(); from += MAX_BATCH_WRITES) {
+            WriteBatch batch = firestore.batch();
+            for (String recipeId : recipeIds.subList(from, Math.min(recipeIds.size(), from + MAX_BATCH_WRITES))) {
+                batch.delete(firestore.collection(TOMBSTONES_COLLECTION).document(recipeId));
+            }
+            batch.commit().get();
+        }
+    }
+
+    /**
+     * A Firestore snapshot listener on the recipes collection, or on its
+     * public recipes
+     */
+    @Override
+    public Registration listen(boolean publicOnly, Listener listener) {
+        Query query = publicOnly
+                ? firestore.collection(RECIPES_COLLECTION).whereEqualTo("public", true)
+                : firestore.collection(RECIPES_COLLECTION);
+
+        ListenerRegistration registration = query.addSnapshotListener((snapshot, error) -> {
+            if (error != null) {
+                listener.onError(error);
+                return;
+            }
+            if (snapshot == null) {
+                return;
+            }
+
+            List<Change> changes = new ArrayList<>();
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                QueryDocumentSnapshot document = change.getDocument();
+                changes.add(new Change(document.getId(), change.getType() == DocumentChange.Type.REMOVED
+                        ? null
+                        : RecipeCodec.decode(document)));
+            }
+            listener.onChanges(changes);
+        });
+        return registration::remove;
+    }
+
+    /**
+     * Polls every app.recipes.change-feed.poll-interval-ms for recipes and
+     * tombstones whose updatedAt or deletedAt is newer than the last change
+     * seen, reading only that field. The first poll finds the latest change.
+     * Each poll reaches back app.recipes.change-feed.overlap-ms to catch
+     * writes that commit out of order; documents already reported with the
+     * same change time are not reported again. Recipes last written before
+     * updatedAt was introduced are not followed until they are written again.
+     */
+    @Override
+    public Registration listenForChangedIds(ChangedIdsListener listener) {
+        ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("recipe-change-feed").daemon().factory());
+        // The latest change seen, or null before the first poll and after an error
+        AtomicReference<Timestamp> cursor = new AtomicReference<>();
+        // Collection and document ID -> change time already reported, within the overlap window
+        Map<String, Timestamp> reported = new HashMap<>();
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                Timestamp latest = cursor.get();
+                if (latest == null) {
+                    reported.clear();
+                    cursor.set(latestChange());
+                    listener.onChanged(List.of());
+                    return;
+                }
+
+                Set<String> recipeIds = new LinkedHashSet<>();
+                for (String collection : List.of(RECIPES_COLLECTION, TOMBSTONES_COLLECTION)) {
+                    String timeField = RECIPES_COLLECTION.equals(collection) ? UPDATED_AT : DELETED_AT;
+                    Query changed = firestore.collection(collection)
+                            .whereGreaterThan(timeField, overlapStart(latest)).select(timeField);
+                    for (QueryDocumentSnapshot document : changed.get().get().getDocuments()) {
+                        Timestamp changeTime = changeTime(document);
+                        if (!Objects.equals(reported.put(collection + "/" + document.getId(), changeTime),
+                                changeTime)) {
+                            recipeIds.add(document.getId());
+                        }
+                        latest = later(latest, changeTime);
+                    }
+                }
+                cursor.set(latest);
+
+                // Changes before the next poll's window cannot be returned again
+                Timestamp windowStart = overlapStart(latest);
+                reported.values().removeIf(time -> time == null || time.compareTo(windowStart) <= 0);
+
+                if (!recipeIds.isEmpty()) {
+                    listener.onChanged(recipeIds);
+                }
+            } catch (Exception e) {
+                cursor.set(null);
+                listener.onError(e);
+            }
+        }, 0, changeFeedPollMillis, TimeUnit.MILLISECONDS);
+        return poller::shutdownNow;
+    }
+
+    private Timestamp overlapStart(Timestamp latest) {
+        return Timestamp.ofTimeMicroseconds(TimeUnit.SECONDS.toMicros(latest.getSeconds())
+                + TimeUnit.NANOSECONDS.toMicros(latest.getNanos())
+                - TimeUnit.MILLISECONDS.toMicros(changeFeedOverlapMillis));
+    }
+
+    /**
+     * The time of the latest recipe write or deletion, or the epoch if none
+     * carries one
+     */
+    private Timestamp latestChange() throws ExecutionException, InterruptedException {
+        Timestamp latest = Timestamp.ofTimeMicroseconds(0);
+        for (Query newest : List.of(
+                firestore.collection(RECIPES_COLLECTION).orderBy(UPDATED_AT, Query.Direction.DESCENDING)
+                        .select(UPDATED_AT).limit(1),
+                firestore.collection(TOMBSTONES_COLLECTION).orderBy(DELETED_AT, Query.Direction.DESCENDING)
+                        .select(DELETED_AT).limit(1))) {
+            for (QueryDocumentSnapshot document : newest.get().get().getDocuments()) {
+                latest = later(latest, changeTime(document));
+            }
+        }
+        return latest;
+    }
+
+    private static Timestamp changeTime(DocumentSnapshot document) {
+        Timestamp updatedAt = document.getTimestamp(UPDATED_AT);
+        return updatedAt != null ? updatedAt : document.getTimestamp(DELETED_AT);
+    }
+
+    private static Timestamp later(Timestamp first, Timestamp second) {
+        return second != null && second.compareTo(first) > 0 ? second : first;
+    }
+
+    /**
+     * The stored fields of a recipe, stamped with the time of the write
+     */
+    private static Map<String, Object> encode(Recipe recipe) {
+        Map<String, Object> data = recipe.toMap();
+        data.put(UPDATED_AT, FieldValue.serverTimestamp());
+        return data;
+    }
+
+    /**
+     * The user's current rating: their rating document, or else the entry left
+     * in the recipe's legacy inline ratingList
+     */
+    private static Double previousRating(DocumentSnapshot ratingDocument, Double legacyRating) {
+        if (ratingDocument.exists() && ratingDocument.get("rating") instanceof Number rating) {
+            return rating.doubleValue();
+        }
+        return legacyRating;
+    }
+
+    /**
+     * References to recipe documents, without duplicates
+     */
+    private List<DocumentReference> recipeReferences(Collection<String> recipeIds) {
+        List<DocumentReference> references = new ArrayList<>();
+        for (String recipeId : new LinkedHashSet<>(recipeIds)) {
+            references.add(firestore.collection(RECIPES_COLLECTION).document(recipeId));
+        }
+        return references;
+    }
+
+    /**
+     * References to one user's rating documents, recipes/{recipeId}/ratings/{userId}
+     */
+    private List<DocumentReference> ratingReferences(Collection<String> recipeIds, String userId) {
+        List<DocumentReference> references = new ArrayList<>();
+        for (String recipeId : new LinkedHashSet<>(recipeIds)) {
+            references.add(firestore.collection(RECIPES_COLLECTION).document(recipeId)
+                    .collection(RATINGS_SUBCOLLECTION).document(userId));
+        }
+        return references;
+    }
+
+    /**
+     * Reads documents with batched gets. The references are split into chunks
+     * of the configured size and all chunks are requested before waiting on any.
+     * A non-null field mask limits the fields that are read.
+     */
+    private List<ApiFuture<List<DocumentSnapshot>>> getAllInChunks(List<DocumentReference> references,
+            FieldMask fieldMask) {
+        int chunkSize = Math.max(1, batchGetSize);
+        List<ApiFuture<List<DocumentSnapshot>>> futures = new ArrayList<>();
+        for (int from = 0; from < references.size(); from += chunkSize) {
+            List<DocumentReference> chunk = references.subList(from, Math.min(references.size(), from + chunkSize));
+            DocumentReference[] chunkReferences = chunk.toArray(new DocumentReference[0]);
+            futures.add(fieldMask != null
+                    ? firestore.getAll(chunkReferences, fieldMask)
+                    : firestore.getAll(chunkReferences));
+        }
+        return futures;
+    }
+
+    /**
+     * Field mask of a recipe summary, together with one user's legacy inline
+     * rating when a user is given
+     */
+    private static FieldMask summaryMask(String userId) {
+        List<FieldPath> fieldPaths = new ArrayList<>();
+        for (String field : RecipeSummary.FIELDS) {
+            fieldPaths.add(FieldPath.of(field));
+        }
+        if (userId != null) {
+            fieldPaths.add(FieldPath.of("ratingList", userId));
+        }
+        return FieldMask.of(fieldPaths.toArray(new FieldPath[0]));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.recipegpt2_server.store;
+
+import com.example.recipegpt2_server.model.User;
+import com.example.recipegpt2_server.model.UserCodec;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.WriteBatch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * {@link UserStore} on the Firestore "users" collection. Recipe list changes
+ * are server-side field transforms that cost a single write and no read.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "firestore", matchIfMissing = true)
+public class FirestoreUserStore implements UserStore {
+
+    static final String USERS_COLLECTION = "users";
+
+    // Firestore's limit on values in an array-contains-any filter
+    private static final int MAX_ARRAY_CONTAINS_ANY = 10;
+
+    @Autowired
+    private Firestore firestore;
+
+    @Override
+    public void save(User user) throws ExecutionException, InterruptedException {
+        firestore.collection(USERS_COLLECTION)
+                .document(user.getId())
+                .set(UserCodec.encode(user))
+                .get();
+    }
+
+    @Override
+    public Optional<User> findById(String id) throws ExecutionException, InterruptedException {
+        DocumentSnapshot document = firestore.collection(USERS_COLLECTION)
+                .document(id)
+                .get()
+                .get();
+
+        if (document.exists()) {
+            return Optional.of(UserCodec.decode(document.getData(), document.getId()));
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) throws ExecutionException, InterruptedException {
+        List<QueryDocumentSnapshot> documents = firestore.collection(USERS_COLLECTION)
+                .whereEqualTo("email", email)
+                .limit(1)
+                .get()
+                .get()
+                .getDocuments();
+
+        if (!documents.isEmpty()) {
+            QueryDocumentSnapshot document = documents.get(0);
+            return Optional.of(UserCodec.decode(document.getData(), document.getId()));
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void addToRecipeList(String userId, String field, List<String> recipeIds)
+            throws ExecutionException, InterruptedException {
+        updateRecipeList(userId, field, FieldValue.arrayUnion(recipeIds.toArray()));
+    }
+
+    @Override
+    public void removeFromRecipeList(String userId, String field, List<String> recipeIds)
+            throws ExecutionException, InterruptedException {
+        updateRecipeList(userId, field, FieldValue.arrayRemove(recipeIds.toArray()));
+    }
+
+    @Override
+    public void setRecipeList(String userId, String field, List<String> recipeIds)
+            throws ExecutionException, InterruptedException {
+        updateRecipeList(userId, field, recipeIds);
+    }
+
+    private void updateRecipeList(String userId, String field, Object value)
+            throws ExecutionException, InterruptedException {
+        firestore.collection(USERS_COLLECTION)
+                .document(userId)
+                .update(field, value, "profileVersion", FieldValue.increment(1))
+                .get();
+    }
+
+    /**
+     * Queries the users who saved any of the recipes, at most ten recipes per
+     * query, and updates the first page found in one batched write
+     */
+    @Override
+    public List<String> removeSavedReferences(List<String> recipeIds, int limit)
+            throws ExecutionException, InterruptedException {
+        for (int from = 0; from < recipeIds.size(); from += MAX_ARRAY_CONTAINS_ANY) {
+            List<String> group = recipeIds.subList(from, Math.min(recipeIds.size(), from + MAX_ARRAY_CONTAINS_ANY));
+            List<QueryDocumentSnapshot> users = firestore.collection(USERS_COLLECTION)
+                    .whereArrayContainsAny("savedRecipes", group)
+                    .limit(limit)
+                    .get()
+                    .get()
+                    .getDocuments();
+            if (users.isEmpty()) {
+                continue;
+            }
+
+            WriteBatch batch = firestore.batch();
+            List<String> userIds = new ArrayList<>();
+            for (QueryDocumentSnapshot user : users) {
+                batch.update(user.getReference(),
+                        "savedRecipes", FieldValue.arrayRemove(group.toArray()),
+                        "profileVersion", FieldValue.increment(1));
+                userIds.add(user.getId());
+            }
+            batch.commit().get();
+            return userIds;
+        }
+        return List.of();
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.recipegpt2_server.store;
+
+import com.example.recipegpt2_server.model.Recipe;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Storage of recipes, their per-user ratings and the tombstones of deleted
+ * recipes.
+ *
+ * Implementations are selected with app.storage.backend: "firestore" (the
+ * default, {@link FirestoreRecipeStore}) or "embedded"
+ * ({@link EmbeddedRecipeStore}). Recipes are stored in the shape written by
+ * {@link com.example.recipegpt2_server.model.RecipeCodec}; per-user fields
+ * such as userRating are only filled in where a method says so.
+ */
+public interface RecipeStore {
+
+    /**
+     * Saves a new recipe under a generated ID
+     *
+     * @param recipe The recipe to save; its ID is set
+     * @return The saved recipe
+     */
+    Recipe insert(Recipe recipe) throws ExecutionException, InterruptedException;
+
+    /**
+     * Saves several new recipes under generated IDs in one atomic write. When
+     * a user is given, the IDs are added to the user's createdRecipes in the
+     * same write, which also bumps the user's profileVersion; if the user does
+     * not exist, nothing is saved.
+     *
+     * @param recipes The recipes to save, at most one Firestore batch minus the
+     *                user update; their IDs are set
+     * @param userId  The owning user's ID, or null to leave users untouched
+     */
+    void insertAll(List<Recipe> recipes, String userId) throws ExecutionException, InterruptedException;
+
+    /**
+     * Overwrites some fields of an existing recipe
+     *
+     * @param recipeId The recipe's ID
+     * @param fields   New values keyed by stored field name
+     * @throws ExecutionException If the recipe does not exist
+     */
+    void update(String recipeId, Map<String, Object> fields) throws ExecutionException, InterruptedException;
+
+    /**
+     * Deletes recipes and writes a tombstone for each in one atomic write
+     *
+     * @param recipes The recipes to delete
+     */
+    void delete(List<Recipe> recipes) throws ExecutionException, InterruptedException;
+
+    /**
+     * Reads a recipe
+     *
+     * @param recipeId The recipe's ID
+     * @return The recipe, or null if not found
+     */
+    default Recipe findById(String recipeId) throws ExecutionException, InterruptedException {
+        return findById(recipeId, null);
+    }
+
+    /**
+     * Reads a recipe together with one user's rating of it
+     *
+     * @param recipeId     The recipe's ID
+     * @param ratingUserId The user whose rating is set as userRating, or null
+     * @return The recipe, or null if not found
+     */
+    Recipe findById(String recipeId, String ratingUserId) throws ExecutionException, InterruptedException;
+
+    /**
+     * Reads several recipes
+     *
+     * @param recipeIds   The recipes' IDs
+     * @param summaryOnly Whether only the {@link com.example.recipegpt2_server.model.RecipeSummary}
+     *                    fields need to be read
+     * @return The recipes that exist, keyed by ID
+     */
+    default Map<String, Recipe> findByIds(Collection<String> recipeIds, boolean summaryOnly)
+            throws ExecutionException, InterruptedException {
+        return findByIds(recipeIds, summaryOnly, null, List.of());
+    }
+
+    /**
+     * Reads several recipes, and one user's ratings of some of them
+     *
+     * @param recipeIds      The recipes' IDs
+     * @param summaryOnly    Whether only the summary fields need to be read
+     * @param ratingUserId   The user whose ratings are set as userRating, or null
+     * @param ratedRecipeIds The recipes whose userRating is set
+     * @return The recipes that exist, keyed by ID
+     */
+    Map<String, Recipe> findByIds(Collection<String> recipeIds, boolean summaryOnly, String ratingUserId,
+            Collection<String> ratedRecipeIds) throws ExecutionException, InterruptedException;
+
+    /**
+     * Reads only the owners of several recipes
+     *
+     * @param recipeIds The recipes' IDs
+     * @return The owner's user ID keyed by recipe ID, for the recipes that
+     *         exist; the owner is null for recipes without one
+     */
+    Map<String, String> findOwners(Collection<String> recipeIds) throws ExecutionException, InterruptedException;
+
+    /**
+     * Reads all recipes of one owner
+     *
+     * @param userId      The owner's user ID
+     * @param summaryOnly Whether only the summary fields need to be read
+     * @return The owner's recipes
+     */
+    List<Recipe> findByUserId(String userId, boolean summaryOnly) throws ExecutionException, InterruptedException;
+
+    /**
+     * Reads public recipes in document ID order
+     *
+     * @param startAfterId Only recipes with a greater ID are returned, or null
+     *                     to start at the beginning
+     * @param limit        Maximum number of recipes, or 0 for no limit
+     * @param summaryOnly  Whether only the summary fields need to be read
+     * @return The recipes ordered by ID
+     */
+    List<Recipe> findPublic(String startAfterId, int limit, boolean summaryOnly)
+            throws ExecutionException, InterruptedException;
+
+    /**
+     * Reads one user's rating of a recipe
+     *
+     * @param recipeId The recipe's ID
+     * @param userId   The rating user's ID
+     * @return The rating, or null if the user has not rated the recipe
+     */
+    Double findUserRating(String recipeId, String userId) throws ExecutionException, InterruptedException;
+
+    /**
+     * Atomically changes users' ratings of a recipe together with its
+     * aggregates. The update may run more than once if the recipe or the
+     * ratings change concurrently; exceptions it throws are rethrown as they are.
+     *
+     * @param recipeId The recipe's ID
+     * @param userIds  The users whose ratings may change
+     * @param update   Decides the changes from the stored state
+     * @return The recipe as left by the update, or null if it does not exist
+     */
+    Recipe updateRatings(String recipeId, Collection<String> userIds, RatingUpdate update)
+            throws ExecutionException, InterruptedException;
+
+    /**
+     * Deletes every rating of a recipe
+     *
+     * @param recipeId The recipe's ID
+     */
+    void deleteRatings(String recipeId) throws ExecutionException, InterruptedException;
+
+    /**
+     * Reads the IDs of deleted recipes whose tombstones are still in place
+     *
+     * @return The deleted recipes' IDs
+     */
+    List<String> findTombstones() throws ExecutionException, InterruptedException;
+
+    /**
+     * Deletes the tombstones of deleted recipes
+     *
+     * @param recipeIds The deleted recipes' IDs
+     */
+    void deleteTombstones(List<String> recipeIds) throws ExecutionException, InterruptedException;
+
+    /**
+     * Starts listening to recipe changes. The first call of the listener
+     * reports every matching recipe; later calls report the recipes that
+     * changed since.
+     *
+     * @param publicOnly Whether to follow public recipes only; a recipe that
+     *                   is made private is then reported as removed
+     * @param listener   The listener
+     * @return The registration that stops the listener
+     */
+    Registration listen(boolean publicOnly, Listener listener);
+
+    /**
+     * Starts following which recipes are written or deleted, without reading
+     * the recipes themselves. The first call of the listener reports no
+     * recipes and marks the point from which changes are followed; later
+     * calls report the recipes changed since, some of them more than once.
+     *
+     * @param listener The listener
+     * @return The registration that stops following changes
+     */
+    Registration listenForChangedIds(ChangedIdsListener listener);
+
+    /**
+     * Decides rating changes inside {@link #updateRatings}
+     */
+    @FunctionalInterface
+    interface RatingUpdate {
+        /**
+         * @param recipe         The recipe as stored; its rating aggregates are
+         *                       written back after the update
+         * @param currentRatings The users' current ratings; users who have not
+         *                       rated the recipe are absent
+         * @return The new rating per changed user; a null rating deletes the
+         *         user's rating. Users left out are not changed, and nothing is
+         *         written if the map is empty.
+         */
+        Map<String, Double> apply(Recipe recipe, Map<String, Double> currentRatings);
+    }
+
+    /**
+     * A changed recipe, or a removed one when recipe is null
+     */
+    record Change(String recipeId, Recipe recipe) {
+    }
+
+    /**
+     * Receives recipe changes from {@link #listen}
+     */
+    interface Listener {
+        void onChanges(List<Change> changes);
+
+        /**
+         * The listener has failed; changes may be missed until it recovers and
+         * reports every recipe again
+         */
+        void onError(Exception error);
+    }
+
+    /**
+     * Receives the IDs of changed recipes from {@link #listenForChangedIds}
+     */
+    interface ChangedIdsListener {
+        void onChanged(Collection<String> recipeIds);
+
+        /**
+         * Changes may have been missed; the next call of onChanged starts
+         * following changes again, like the first
+         */
+        void onError(Exception error);
+    }
+
+    /**
+     * A started listener
+     */
+    interface Registration {
+        void remove();
+    }
+}
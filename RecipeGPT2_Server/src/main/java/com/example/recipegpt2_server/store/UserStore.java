@@ -0,0 +1,72 @@
+package com.example.recipegpt2_server.store;
+
+import com.example.recipegpt2_server.model.User;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Storage of users, selected with app.storage.backend like {@link RecipeStore}.
+ *
+ * Writes to savedRecipes and createdRecipes bump the user's profileVersion,
+ * so cached principals can tell they are stale.
+ */
+public interface UserStore {
+
+    /**
+     * Writes a whole user
+     *
+     * @param user The user, with its ID set
+     */
+    void save(User user) throws ExecutionException, InterruptedException;
+
+    Optional<User> findById(String id) throws ExecutionException, InterruptedException;
+
+    Optional<User> findByEmail(String email) throws ExecutionException, InterruptedException;
+
+    /**
+     * Adds recipe IDs to one of a user's recipe lists; IDs already in the list
+     * are left as they are
+     *
+     * @param userId    The user's ID
+     * @param field     "savedRecipes" or "createdRecipes"
+     * @param recipeIds The recipe IDs to add
+     * @throws ExecutionException If the user does not exist
+     */
+    void addToRecipeList(String userId, String field, List<String> recipeIds)
+            throws ExecutionException, InterruptedException;
+
+    /**
+     * Removes recipe IDs from one of a user's recipe lists
+     *
+     * @param userId    The user's ID
+     * @param field     "savedRecipes" or "createdRecipes"
+     * @param recipeIds The recipe IDs to remove
+     * @throws ExecutionException If the user does not exist
+     */
+    void removeFromRecipeList(String userId, String field, List<String> recipeIds)
+            throws ExecutionException, InterruptedException;
+
+    /**
+     * Replaces one of a user's recipe lists
+     *
+     * @param userId    The user's ID
+     * @param field     "savedRecipes" or "createdRecipes"
+     * @param recipeIds The new list
+     * @throws ExecutionException If the user does not exist
+     */
+    void setRecipeList(String userId, String field, List<String> recipeIds)
+            throws ExecutionException, InterruptedException;
+
+    /**
+     * Removes deleted recipes from the savedRecipes of some of the users who
+     * saved them. Call repeatedly until no users are returned.
+     *
+     * @param recipeIds The deleted recipes' IDs
+     * @param limit     Maximum number of users to update
+     * @return The IDs of the updated users
+     */
+    List<String> removeSavedReferences(List<String> recipeIds, int limit)
+            throws ExecutionException, InterruptedException;
+}
@@ -0,0 +1,303 @@
+package com.example.recipegpt2_server;
+
+import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.model.RecipeUpdateRequest;
+import com.example.recipegpt2_server.model.User;
+import com.example.recipegpt2_server.repository.PublicRecipeIndex;
+import com.example.recipegpt2_server.repository.UserRepository;
+import com.example.recipegpt2_server.service.PrincipalCache;
+import com.example.recipegpt2_server.service.RecipeCache;
+import com.example.recipegpt2_server.service.RecipeService;
+import com.example.recipegpt2_server.service.ReferenceCleanupWorker;
+import com.example.recipegpt2_server.store.EmbeddedDatabase;
+import com.example.recipegpt2_server.store.EmbeddedRecipeStore;
+import com.example.recipegpt2_server.store.EmbeddedUserStore;
+import com.example.recipegpt2_server.store.RecipeStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The embedded storage backend, end to end through RecipeService and the
+ * cleanup worker
+ */
+class EmbeddedStoreTest {
+    private EmbeddedDatabase database;
+    private EmbeddedRecipeStore recipeStore;
+    private EmbeddedUserStore userStore;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        open(new EmbeddedDatabase("", 0));
+        userStore.save(user("owner"));
+        userStore.save(user("fan"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void saveRecipes_addsCreatedRecipesAndBumpsProfileVersion() throws Exception {
+        List<Recipe> saved = recipeService().saveRecipes(new ArrayList<>(List.of(
+                recipe("Curry", true), recipe("Rice", false))), "owner");
+
+        User owner = userStore.findById("owner").orElseThrow();
+        assertEquals(saved.stream().map(Recipe::getId).toList(), owner.getCreatedRecipes());
+        assertEquals(1, owner.getProfileVersion());
+        assertEquals(2, recipeStore.findByUserId("owner", false).size());
+        assertEquals(List.of("Curry"), recipeStore.findPublic(null, 0, false).stream().map(Recipe::getTitle).toList());
+
+        ExecutionException missingUser = assertThrows(ExecutionException.class,
+                () -> recipeStore.insertAll(List.of(recipe("Soup", true)), "nobody"));
+        assertInstanceOf(NoSuchElementException.class, missingUser.getCause());
+        assertEquals(2, recipeStore.findByUserId("owner", false).size()
+                + recipeStore.findByUserId("nobody", false).size());
+    }
+
+    @Test
+    void updateRecipe_returnsTheRatingLaterReadsReport() throws Exception {
+        RecipeService recipeService = recipeService();
+        Recipe recipe = recipeService.saveRecipe(recipe("Stew", true));
+        recipeService.addRatingToRecipe(recipe.getId(), 5.0, "fan1");
+        recipeService.addRatingToRecipe(recipe.getId(), 2.0, "fan2");
+
+        RecipeUpdateRequest updateRequest = new RecipeUpdateRequest();
+        updateRequest.setTitle("Beef Stew");
+        Recipe updated = recipeService.updateRecipe(recipe.getId(), updateRequest, user("owner"));
+
+        Recipe readBack = recipeStore.findById(recipe.getId());
+        assertEquals("Beef Stew", readBack.getTitle());
+        assertEquals(3.5, readBack.getRating());
+        assertEquals(readBack.getRating(), updated.getRating());
+    }
+
+    @Test
+    void findPublic_pagesInIdOrder() throws Exception {
+        List<Recipe> recipes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            recipes.add(recipe("Soup " + i, true));
+        }
+        recipeStore.insertAll(recipes, null);
+        List<String> expected = recipes.stream().map(Recipe::getId).sorted().toList();
+
+        List<Recipe> first = recipeStore.findPublic(null, 3, true);
+        List<Recipe> second = recipeStore.findPublic(first.get(2).getId(), 3, true);
+        assertEquals(expected.subList(0, 3), first.stream().map(Recipe::getId).toList());
+        assertEquals(expected.subList(3, 5), second.stream().map(Recipe::getId).toList());
+        assertTrue(recipeStore.findPublic(expected.get(4), 3, true).isEmpty());
+    }
+
+    @Test
+    void parallelRatings_keepExactAggregates() throws Exception {
+        RecipeService recipeService = recipeService();
+        Recipe recipe = recipeService.saveRecipe(recipe("Viral Noodles", true));
+
+        try (ExecutorService raters = Executors.newFixedThreadPool(16)) {
+            List<Future<?>> ratings = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String userId = "user" + i;
+                double rating = i % 5 + 1;
+                ratings.add(raters.submit(() -> recipeService.addRatingToRecipe(recipe.getId(), rating, userId)));
+            }
+            for (Future<?> future : ratings) {
+                future.get();
+            }
+        }
+        recipeService.deleteRatingFromRecipe(recipe.getId(), "user0");
+
+        Recipe stored = recipeStore.findById(recipe.getId(), "user1");
+        assertEquals(199, stored.getNumOfRatings());
+        assertEquals(599.0, stored.getTotalSumRatings());
+        assertEquals(3.0, stored.getRating());
+        assertEquals(2.0, stored.getUserRating());
+        assertNull(recipeService.getUserRating(recipe.getId(), "user0"));
+        assertThrows(SecurityException.class, () -> recipeService.addRatingToRecipe(recipe.getId(), 4.0, "owner"));
+    }
+
+    @Test
+    void listen_keepsPublicRecipeIndexInSync() throws Exception {
+        Recipe existing = recipeStore.insert(recipe("Chicken Curry", true));
+        PublicRecipeIndex index = new PublicRecipeIndex();
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "recipeStore", recipeStore);
+        index.start();
+
+        // The initial snapshot is delivered before start returns
+        assertTrue(index.isReady());
+        assertEquals(1, index.size());
+
+        Recipe added = recipeStore.insert(recipe("Chickpea Salad", true));
+        assertEquals(2, index.findCandidates(null, "chick").size());
+
+        recipeStore.update(existing.getId(), Map.of("public", false));
+        assertEquals(List.of(added.getId()),
+                index.findCandidates(null, "chick").stream().map(Recipe::getId).toList());
+
+        index.stop();
+        recipeStore.insert(recipe("Chicken Soup", true));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void listen_callsListenersOutsideTheWriteLock() throws Exception {
+        List<String> written = new ArrayList<>();
+        recipeStore.listen(false, new RecipeStore.Listener() {
+            @Override
+            public void onChanges(List<RecipeStore.Change> changes) {
+                if (changes.isEmpty()) {
+                    return;
+                }
+                // Another thread's write would wait forever if the listener held the lock
+                try (ExecutorService writer = Executors.newSingleThreadExecutor()) {
+                    Future<?> write = writer.submit(() -> {
+                        userStore.save(user("listener" + written.size()));
+                        return null;
+                    });
+                    write.get(5, TimeUnit.SECONDS);
+                    written.add(changes.get(0).recipeId());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void onError(Exception error) {
+            }
+        });
+
+        Recipe recipe = recipeStore.insert(recipe("Soup", true));
+        assertEquals(List.of(recipe.getId()), written);
+        assertTrue(userStore.findById("listener0").isPresent());
+    }
+
+    @Test
+    void listenForChangedIds_reportsWrittenAndDeletedRecipesWithoutAnInitialSnapshot() throws Exception {
+        Recipe existing = recipeStore.insert(recipe("Chicken Curry", true));
+        List<List<String>> reported = new ArrayList<>();
+        RecipeStore.Registration registration = recipeStore.listenForChangedIds(
+                new RecipeStore.ChangedIdsListener() {
+                    @Override
+                    public void onChanged(Collection<String> recipeIds) {
+                        reported.add(List.copyOf(recipeIds));
+                    }
+
+                    @Override
+                    public void onError(Exception error) {
+                    }
+                });
+
+        recipeStore.update(existing.getId(), Map.of("title", "Chicken Korma"));
+        recipeStore.delete(List.of(existing));
+        registration.remove();
+        recipeStore.insert(recipe("Soup", true));
+
+        assertEquals(List.of(List.of(), List.of(existing.getId()), List.of(existing.getId())), reported);
+    }
+
+    @Test
+    void deleteRecipe_cleansUpRatingsSavedReferencesAndTombstones() throws Exception {
+        RecipeService recipeService = recipeService();
+        ReferenceCleanupWorker worker = new ReferenceCleanupWorker(new SimpleMeterRegistry(),
+                new PrincipalCache(new SimpleMeterRegistry(), 100, 60000), recipeStore, userStore,
+                false, 2, 10, 100, 0);
+        ReflectionTestUtils.setField(recipeService, "referenceCleanupWorker", worker);
+
+        Recipe recipe = recipeService.saveRecipe(recipe("Soup", true));
+        Recipe kept = recipeService.saveRecipe(recipe("Stew", true));
+        recipeService.addRatingToRecipe(recipe.getId(), 5.0, "fan");
+        for (int i = 0; i < 5; i++) {
+            userStore.save(user("saver" + i));
+            userStore.addToRecipeList("saver" + i, "savedRecipes", List.of(recipe.getId(), kept.getId()));
+        }
+
+        assertTrue(recipeService.deleteRecipe(recipe.getId()));
+        assertEquals(List.of(kept.getId()), userStore.findById("owner").orElseThrow().getCreatedRecipes());
+        assertEquals(List.of(recipe.getId()), recipeStore.findTombstones());
+
+        // The worker is not started, so the cleanup is run directly like the queued job would
+        worker.cleanUp(recipeStore.findTombstones());
+        assertEquals(5.0, worker.removedReferenceCount());
+        for (int i = 0; i < 5; i++) {
+            User saver = userStore.findById("saver" + i).orElseThrow();
+            assertEquals(List.of(kept.getId()), saver.getSavedRecipes());
+            assertEquals(2, saver.getProfileVersion());
+        }
+        assertNull(recipeStore.findUserRating(recipe.getId(), "fan"));
+        assertTrue(recipeStore.findTombstones().isEmpty());
+        assertTrue(userStore.removeSavedReferences(List.of(recipe.getId()), 2).isEmpty());
+    }
+
+    @Test
+    void file_keepsDataAcrossRestarts(@TempDir Path directory) throws Exception {
+        database.close();
+        String file = directory.resolve("data").resolve("recipegpt.mv.db").toString();
+        open(new EmbeddedDatabase(file, 60000));
+        userStore.save(user("owner"));
+        Recipe recipe = recipeService().saveRecipe(recipe("Bread", true));
+        recipeService().addRatingToRecipe(recipe.getId(), 4.0, "fan");
+        database.close();
+
+        open(new EmbeddedDatabase(file, 60000));
+        assertEquals("Bread", recipeStore.findById(recipe.getId()).getTitle());
+        assertEquals(4.0, recipeStore.findUserRating(recipe.getId(), "fan"));
+        assertEquals(List.of(recipe.getId()), userStore.findByEmail("owner@example.com").orElseThrow()
+                .getCreatedRecipes());
+    }
+
+    private void open(EmbeddedDatabase database) {
+        this.database = database;
+        recipeStore = new EmbeddedRecipeStore();
+        ReflectionTestUtils.setField(recipeStore, "database", database);
+        userStore = new EmbeddedUserStore();
+        ReflectionTestUtils.setField(userStore, "database", database);
+    }
+
+    private RecipeService recipeService() {
+        UserRepository userRepository = new UserRepository();
+        ReflectionTestUtils.setField(userRepository, "userStore", userStore);
+
+        RecipeService recipeService = new RecipeService();
+        ReflectionTestUtils.setField(recipeService, "recipeStore", recipeStore);
+        ReflectionTestUtils.setField(recipeService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(recipeService, "principalCache",
+                new PrincipalCache(new SimpleMeterRegistry(), 100, 60000));
+        ReflectionTestUtils.setField(recipeService, "recipeCache",
+                new RecipeCache(new SimpleMeterRegistry(), 100, 1 << 20, 60000, false));
+        return recipeService;
+    }
+
+    private static Recipe recipe(String title, boolean isPublic) {
+        Recipe recipe = new Recipe();
+        recipe.setTitle(title);
+        recipe.setUserId("owner");
+        recipe.setPublic(isPublic);
+        return recipe;
+    }
+
+    private static User user(String id) {
+        User user = new User();
+        user.setId(id);
+        user.setEmail(id + "@example.com");
+        user.setUsername(id);
+        return user;
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.recipegpt2_server;
+
+import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.store.FirestoreRecipeStore;
+import com.example.recipegpt2_server.store.RecipeStore;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldMask;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.WriteBatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.cloud.firestore.TestSnapshots.document;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * The Firestore backend's reads and writes, against a mocked Firestore client
+ */
+class FirestoreRecipeStoreTest {
+    private Firestore firestore;
+    private FirestoreRecipeStore recipeStore;
+
+    @BeforeEach
+    void setUp() {
+        firestore = mock(Firestore.class);
+        recipeStore = new FirestoreRecipeStore();
+        ReflectionTestUtils.setField(recipeStore, "firestore", firestore);
+    }
+
+    @Test
+    void insertAll_commitsRecipesAndCreatedRecipesInOneBatch() throws Exception {
+        Recipe first = new Recipe();
+        first.setTitle("Curry");
+        Recipe second = new Recipe();
+        second.setTitle("Rice");
+
+        CollectionReference recipesCollection = mock(CollectionReference.class);
+        CollectionReference usersCollection = mock(CollectionReference.class);
+        DocumentReference firstRef = mock(DocumentReference.class);
+        DocumentReference secondRef = mock(DocumentReference.class);
+        DocumentReference userRef = mock(DocumentReference.class);
+        WriteBatch batch = mock(WriteBatch.class);
+
+        when(firestore.collection("recipes")).thenReturn(recipesCollection);
+        when(firestore.collection("users")).thenReturn(usersCollection);
+        when(recipesCollection.document()).thenReturn(firstRef, secondRef);
+        when(firstRef.getId()).thenReturn("r1");
+        when(secondRef.getId()).thenReturn("r2");
+        when(usersCollection.document("user123")).thenReturn(userRef);
+        when(firestore.batch()).thenReturn(batch);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+
+        recipeStore.insertAll(List.of(first, second), "user123");
+
+        assertEquals("r1", first.getId());
+        assertEquals("r2", second.getId());
+        verify(batch).set(eq(firstRef), anyMap());
+        verify(batch).set(eq(secondRef), anyMap());
+        verify(batch).update(userRef, "createdRecipes", FieldValue.arrayUnion("r1", "r2"),
+                "profileVersion", FieldValue.increment(1));
+        verify(batch, times(1)).commit();
+        verify(recipesCollection, never()).add(any());
+        verify(userRef, never()).get();
+    }
+
+    @Test
+    void delete_writesTombstonesInTheSameBatch() throws Exception {
+        CollectionReference recipesCollection = mock(CollectionReference.class);
+        CollectionReference tombstones = mock(CollectionReference.class);
+        DocumentReference recipeRef = mock(DocumentReference.class);
+        DocumentReference tombstoneRef = mock(DocumentReference.class);
+        WriteBatch batch = mock(WriteBatch.class);
+        when(firestore.collection("recipes")).thenReturn(recipesCollection);
+        when(firestore.collection("deletedRecipes")).thenReturn(tombstones);
+        when(recipesCollection.document("r1")).thenReturn(recipeRef);
+        when(tombstones.document("r1")).thenReturn(tombstoneRef);
+        when(firestore.batch()).thenReturn(batch);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(new ArrayList<>()));
+
+        Recipe recipe = new Recipe();
+        recipe.setId("r1");
+        recipe.setUserId("owner");
+        recipeStore.delete(List.of(recipe));
+
+        verify(batch).delete(recipeRef);
+        verify(batch).set(eq(tombstoneRef), argThat((Map<String, Object> tombstone) ->
+                "owner".equals(tombstone.get("userId"))));
+        verify(batch, times(1)).commit();
+        verify(firestore, never()).collection("users");
+    }
+
+    @Test
+    void findOwners_readsOnlyUserIdInOneBatchedRead() throws Exception {
+        CollectionReference recipesCollection = mock(CollectionReference.class);
+        when(firestore.collection("recipes")).thenReturn(recipesCollection);
+        when(recipesCollection.document(any())).thenAnswer(invocation -> mock(DocumentReference.class));
+
+        DocumentSnapshot existing = mock(DocumentSnapshot.class);
+        when(existing.exists()).thenReturn(true);
+        when(existing.getId()).thenReturn("r1");
+        when(existing.getString("userId")).thenReturn("owner");
+        DocumentSnapshot missing = mock(DocumentSnapshot.class);
+        when(missing.exists()).thenReturn(false);
+        when(firestore.getAll(any(DocumentReference[].class), any(FieldMask.class)))
+                .thenReturn(ApiFutures.immediateFuture(List.of(existing, missing)));
+
+        assertEquals(Map.of("r1", "owner"), recipeStore.findOwners(List.of("r1", "r2", "r1")));
+        verify(firestore).getAll(argThat((DocumentReference[] references) -> references.length == 2),
+                any(FieldMask.class));
+        verify(recipesCollection, never()).get();
+    }
+
+    @Test
+    void findByIds_readsRecipesAndRatingsInConcurrentChunks() throws Exception {
+        ReflectionTestUtils.setField(recipeStore, "batchGetSize", 100);
+        List<String> recipeIds = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            recipeIds.add("saved" + i);
+        }
+
+        CollectionReference recipesCollection = mock(CollectionReference.class);
+        when(firestore.collection("recipes")).thenReturn(recipesCollection);
+        when(recipesCollection.document(anyString())).thenAnswer(invocation -> {
+            DocumentReference reference = mock(DocumentReference.class);
+            CollectionReference ratingsCollection = mock(CollectionReference.class);
+            when(reference.getId()).thenReturn(invocation.getArgument(0));
+            when(reference.collection("ratings")).thenReturn(ratingsCollection);
+            when(ratingsCollection.getParent()).thenReturn(reference);
+            when(ratingsCollection.document(anyString())).thenAnswer(ratingInvocation -> {
+                DocumentReference ratingReference = mock(DocumentReference.class);
+                when(ratingReference.getId()).thenReturn(ratingInvocation.getArgument(0));
+                when(ratingReference.getParent()).thenReturn(ratingsCollection);
+                return ratingReference;
+            });
+            return reference;
+        });
+        when(firestore.getAll(any(DocumentReference[].class))).thenAnswer(invocation -> {
+            List<DocumentSnapshot> snapshots = new ArrayList<>();
+            for (Object argument : invocation.getArguments()) {
+                DocumentReference reference = (DocumentReference) argument;
+                CollectionReference parent = reference.getParent();
+                if (parent != null) {
+                    // recipes/{id}/ratings/u1: only saved7 has been rated by the user
+                    String recipeId = parent.getParent().getId();
+                    snapshots.add(document("recipes/" + recipeId + "/ratings/u1",
+                            recipeId.equals("saved7") ? Map.of("userId", "u1", "rating", 4.0) : null));
+                } else {
+                    snapshots.add(document("recipes/" + reference.getId(),
+                            Map.of("title", "Recipe " + reference.getId())));
+                }
+            }
+            return ApiFutures.immediateFuture(snapshots);
+        });
+
+        Map<String, Recipe> recipes = recipeStore.findByIds(recipeIds, false, "u1", recipeIds);
+        assertEquals(250, recipes.size());
+        assertEquals("Recipe saved249", recipes.get("saved249").getTitle());
+        assertEquals(4.0, recipes.get("saved7").getUserRating());
+        assertNull(recipes.get("saved8").getUserRating());
+        // Three chunks of recipes and three chunks of the user's ratings
+        verify(firestore, times(6)).getAll(any(DocumentReference[].class));
+    }
+
+    @Test
+    void findByIds_summaryReadsMaskedFieldsAndLegacyRating() throws Exception {
+        CollectionReference recipesCollection = mock(CollectionReference.class, RETURNS_DEEP_STUBS);
+        when(firestore.collection("recipes")).thenReturn(recipesCollection);
+        when(firestore.getAll(any(DocumentReference[].class), any(FieldMask.class))).thenAnswer(invocation -> {
+            List<DocumentSnapshot> snapshots = new ArrayList<>();
+            for (String id : List.of("own", "saved")) {
+                // The field mask includes the user's legacy inline rating
+                snapshots.add(document("recipes/" + id, Map.of("title", "Recipe " + id,
+                        "numOfRatings", 3, "ratingList", Map.of("u1", 5.0))));
+            }
+            return ApiFutures.immediateFuture(snapshots);
+        });
+        when(firestore.getAll(any(DocumentReference[].class)))
+                .thenReturn(ApiFutures.immediateFuture(List.of(document("recipes/saved/ratings/u1", null))));
+
+        Map<String, Recipe> recipes = recipeStore.findByIds(List.of("own", "saved"), true, "u1", List.of("saved"));
+        assertEquals(3, recipes.get("own").getNumOfRatings());
+        assertNull(recipes.get("own").getUserRating());
+        assertEquals(5.0, recipes.get("saved").getUserRating());
+        verify(firestore).getAll(any(DocumentReference[].class), any(FieldMask.class));
+    }
+
+    @Test
+    void deleteRatingsAndTombstones_leaveTheRecipesUntouched() throws Exception {
+        CollectionReference recipesCollection = mock(CollectionReference.class, RETURNS_DEEP_STUBS);
+        CollectionReference tombstones = mock(CollectionReference.class, RETURNS_DEEP_STUBS);
+        WriteBatch batch = mock(WriteBatch.class);
+        when(firestore.collection("recipes")).thenReturn(recipesCollection);
+        when(firestore.collection("deletedRecipes")).thenReturn(tombstones);
+        when(firestore.recursiveDelete(any(CollectionReference.class))).thenReturn(ApiFutures.immediateFuture(null));
+        when(firestore.batch()).thenReturn(batch);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+
+        recipeStore.deleteRatings("r1");
+        recipeStore.deleteTombstones(List.of("r1", "r2"));
+
+        verify(firestore).recursiveDelete(recipesCollection.document("r1").collection("ratings"));
+        verify(batch, times(2)).delete(any(DocumentReference.class));
+        verify(batch, times(1)).commit();
+    }
+
+    @Test
+    void listenForChangedIds_pollsOnlyTheChangeTimesAndReportsEachChangeOnce() throws Exception {
+        ReflectionTestUtils.setField(recipeStore, "changeFeedPollMillis", 10L);
+        CollectionReference recipesCollection = mock(CollectionReference.class, RETURNS_DEEP_STUBS);
+        CollectionReference tombstones = mock(CollectionReference.class, RETURNS_DEEP_STUBS);
+        when(firestore.collection("recipes")).thenReturn(recipesCollection);
+        when(firestore.collection("deletedRecipes")).thenReturn(tombstones);
+
+        Timestamp latest = Timestamp.ofTimeSecondsAndNanos(1000, 0);
+        QuerySnapshot newestRecipe = changes("updatedAt", Map.of("r0", latest));
+        QuerySnapshot noTombstones = changes("deletedAt", Map.of());
+        QuerySnapshot changedRecipes = changes("updatedAt", Map.of("r1", Timestamp.ofTimeSecondsAndNanos(1001, 0)));
+        QuerySnapshot newTombstones = changes("deletedAt", Map.of("r2", Timestamp.ofTimeSecondsAndNanos(1002, 0)));
+        when(recipesCollection.orderBy("updatedAt", Query.Direction.DESCENDING).select("updatedAt").limit(1).get())
+                .thenReturn(ApiFutures.immediateFuture(newestRecipe));
+        when(tombstones.orderBy("deletedAt", Query.Direction.DESCENDING).select("deletedAt").limit(1).get())
+                .thenReturn(ApiFutures.immediateFuture(noTombstones));
+        Query recipesSince = mock(Query.class, RETURNS_DEEP_STUBS);
+        Query tombstonesSince = mock(Query.class, RETURNS_DEEP_STUBS);
+        when(recipesCollection.whereGreaterThan(eq("updatedAt"), any())).thenReturn(recipesSince);
+        when(tombstones.whereGreaterThan(eq("deletedAt"), any())).thenReturn(tombstonesSince);
+        QuerySnapshot rewrittenRecipe = changes("updatedAt", Map.of("r1", Timestamp.ofTimeSecondsAndNanos(1003, 0)));
+        when(recipesSince.select("updatedAt").get())
+                .thenReturn(ApiFutures.immediateFuture(changedRecipes))
+                .thenReturn(ApiFutures.immediateFuture(changedRecipes))
+                .thenReturn(ApiFutures.immediateFuture(rewrittenRecipe));
+        when(tombstonesSince.select("deletedAt").get()).thenReturn(ApiFutures.immediateFuture(newTombstones));
+
+        BlockingQueue<Collection<String>> reported = new LinkedBlockingQueue<>();
+        RecipeStore.Registration registration = recipeStore.listenForChangedIds(new RecipeStore.ChangedIdsListener() {
+            @Override
+            public void onChanged(Collection<String> recipeIds) {
+                reported.add(List.copyOf(recipeIds));
+            }
+
+            @Override
+            public void onError(Exception error) {
+                fail(error);
+            }
+        });
+        try {
+            // The first poll only marks the start
+            assertEquals(List.of(), reported.poll(5, TimeUnit.SECONDS));
+            assertEquals(List.of("r1", "r2"), reported.poll(5, TimeUnit.SECONDS));
+            // The next poll finds the same changes within the overlap and reports nothing;
+            // only the recipe written again is reported, once
+            assertEquals(List.of("r1"), reported.poll(5, TimeUnit.SECONDS));
+            assertNull(reported.poll(300, TimeUnit.MILLISECONDS));
+        } finally {
+            registration.remove();
+        }
+        verify(recipesSince, atLeast(5)).select("updatedAt");
+
+        // The first change poll looks back from the latest change by the overlap
+        verify(recipesCollection, atLeastOnce()).whereGreaterThan("updatedAt", Timestamp.ofTimeSecondsAndNanos(998, 0));
+        // Later polls continue from the newest change seen
+        verify(tombstones, atLeastOnce()).whereGreaterThan("deletedAt", Timestamp.ofTimeSecondsAndNanos(1000, 0));
+        verify(recipesCollection, never()).addSnapshotListener(any());
+    }
+
+    private static QuerySnapshot changes(String timeField, Map<String, Timestamp> changeTimes) {
+        List<QueryDocumentSnapshot> documents = new ArrayList<>();
+        changeTimes.forEach((recipeId, changeTime) -> {
+            QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+            when(document.getId()).thenReturn(recipeId);
+            when(document.getTimestamp(timeField)).thenReturn(changeTime);
+            documents.add(document);
+        });
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(documents);
+        return snapshot;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.recipegpt2_server;
+
+import com.example.recipegpt2_server.store.FirestoreUserStore;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.WriteBatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * The Firestore backend's user writes, against a mocked Firestore client
+ */
+class FirestoreUserStoreTest {
+    private Firestore firestore;
+    private CollectionReference users;
+    private FirestoreUserStore userStore;
+
+    @BeforeEach
+    void setUp() {
+        firestore = mock(Firestore.class);
+        users = mock(CollectionReference.class);
+        when(firestore.collection("users")).thenReturn(users);
+        userStore = new FirestoreUserStore();
+        ReflectionTestUtils.setField(userStore, "firestore", firestore);
+    }
+
+    @Test
+    void addToRecipeList_usesArrayUnionWithoutReadingTheUser() throws Exception {
+        DocumentReference userRef = mock(DocumentReference.class);
+        when(users.document("u1")).thenReturn(userRef);
+        when(userRef.update("savedRecipes", FieldValue.arrayUnion("r1", "r2"),
+                "profileVersion", FieldValue.increment(1))).thenReturn(ApiFutures.immediateFuture(null));
+
+        userStore.addToRecipeList("u1", "savedRecipes", List.of("r1", "r2"));
+
+        verify(userRef, times(1)).update("savedRecipes", FieldValue.arrayUnion("r1", "r2"),
+                "profileVersion", FieldValue.increment(1));
+        verify(userRef, never()).get();
+    }
+
+    @Test
+    void removeSavedReferences_updatesOnePageOfUsersInOneBatch() throws Exception {
+        Query savedBy = mock(Query.class);
+        Query limited = mock(Query.class);
+        WriteBatch batch = mock(WriteBatch.class);
+        when(users.whereArrayContainsAny("savedRecipes", List.of("r1", "r2"))).thenReturn(savedBy);
+        when(savedBy.limit(3)).thenReturn(limited);
+        QuerySnapshot first = page(3), empty = page(0);
+        when(limited.get()).thenReturn(ApiFutures.immediateFuture(first)).thenReturn(ApiFutures.immediateFuture(empty));
+        when(firestore.batch()).thenReturn(batch);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+
+        assertEquals(List.of("user0", "user1", "user2"), userStore.removeSavedReferences(List.of("r1", "r2"), 3));
+        verify(batch, times(3)).update(any(DocumentReference.class),
+                eq("savedRecipes"), eq(FieldValue.arrayRemove("r1", "r2")),
+                eq("profileVersion"), eq(FieldValue.increment(1)));
+        verify(batch, times(1)).commit();
+
+        // Once no user has the recipes saved, nothing is written
+        assertTrue(userStore.removeSavedReferences(List.of("r1", "r2"), 3).isEmpty());
+        verify(batch, times(1)).commit();
+    }
+
+    private static QuerySnapshot page(int size) {
+        List<QueryDocumentSnapshot> documents = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+            when(document.getId()).thenReturn("user" + i);
+            when(document.getReference()).thenReturn(mock(DocumentReference.class));
+            documents.add(document);
+        }
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(documents);
+        return snapshot;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.recipegpt2_server;
+
+import com.example.recipegpt2_server.service.GenerationCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenerationCacheTest {
+
+    @Test
+    void key_normalizesQueryCaseAndWhitespace() {
+        assertEquals(GenerationCache.key("  Chicken   CURRY ", 5, "gpt-4o"),
+                GenerationCache.key("chicken curry", 5, "gpt-4o"));
+        assertNotEquals(GenerationCache.key("chicken curry", 5, "gpt-4o"),
+                GenerationCache.key("chicken curry", 3, "gpt-4o"));
+    }
+
+    @Test
+    void get_returnsIndependentCopiesAndTracksHitRatio() {
+        GenerationCache cache = new GenerationCache(new SimpleMeterRegistry(), 10, 60000);
+        String key = GenerationCache.key("vegan lasagna", 1, "gpt-4o");
+        Map<String, Object> recipe = new HashMap<>();
+        recipe.put("title", "Vegan Lasagna");
+        recipe.put("ingredients", new ArrayList<>(List.of("pasta")));
+
+        assertNull(cache.get(key));
+        cache.put(key, List.of(recipe));
+        recipe.put("title", "Changed after caching");
+
+        List<Map<String, Object>> first = cache.get(key);
+        @SuppressWarnings("unchecked")
+        List<String> ingredients = (List<String>) first.get(0).get("ingredients");
+        ingredients.add("tofu");
+        List<Map<String, Object>> second = cache.get(key);
+
+        assertEquals("Vegan Lasagna", second.get(0).get("title"));
+        assertEquals(List.of("pasta"), second.get(0).get("ingredients"));
+        assertEquals(2.0 / 3.0, cache.hitRatio(), 1e-9);
+    }
+
+    @Test
+    void put_evictsLeastRecentlyUsedBeyondMaxSize() {
+        GenerationCache cache = new GenerationCache(new SimpleMeterRegistry(), 2, 60000);
+        List<Map<String, Object>> recipes = List.of(Map.of("title", "Soup"));
+        cache.put("a", recipes);
+        cache.put("b", recipes);
+        cache.get("a");
+        cache.put("c", recipes);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+    }
+}
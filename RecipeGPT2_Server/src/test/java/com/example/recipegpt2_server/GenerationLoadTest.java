@@ -0,0 +1,214 @@
+package com.example.recipegpt2_server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Load test for /api/getRecipes against a stub OpenAI endpoint with a fixed latency.
+ * Each test boots the application on an embedded Tomcat with the embedded store,
+ * registers a user and sends the burst over HTTP, so requests go through the security
+ * filters and Spring MVC async dispatch. Shows how many generation requests one
+ * instance keeps in flight at once, both on virtual threads and on Tomcat's default
+ * platform pool (the async OpenAI client frees the request thread while waiting), and
+ * that the client's in-flight limit holds.
+ *
+ * Run with: mvn test -Pload-test (-Dload.requests=N to change the burst size)
+ */
+@Tag("load")
+class GenerationLoadTest {
+    private static final int UPSTREAM_LATENCY_MS = 1000;
+    private static final int PLATFORM_POOL_SIZE = 200; // Tomcat's default server.tomcat.threads.max
+    private static final int CONCURRENT_REQUESTS = Integer.getInteger("load.requests", 1000);
+
+    private static final String COMPLETION = "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":"
+            + "\"{\\\"recipes\\\":[{\\\"title\\\":\\\"Chicken Curry\\\",\\\"servings\\\":2}]}\"}}]}";
+
+    @TempDir
+    Path dataDir;
+
+    private HttpServer openAiStub;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ExecutorService clientExecutor;
+    private HttpClient httpClient;
+    private ConfigurableApplicationContext server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        openAiStub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 8192);
+        openAiStub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        openAiStub.createContext("/v1/chat/completions", exchange -> {
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                exchange.getRequestBody().readAllBytes();
+                Thread.sleep(UPSTREAM_LATENCY_MS);
+                byte[] body = COMPLETION.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+                exchange.close();
+            }
+        });
+        openAiStub.start();
+
+        clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+        httpClient.close();
+        clientExecutor.shutdownNow();
+        openAiStub.stop(0);
+    }
+
+    /**
+     * Boots the application on a random port, with the embedded store and the stub as OpenAI
+     */
+    private void startServer(boolean virtualThreads, int maxInFlight) {
+        server = new SpringApplicationBuilder(RecipeGpt2ServerApplication.class)
+                .properties(Map.ofEntries(
+                        Map.entry("server.port", "0"),
+                        Map.entry("spring.threads.virtual.enabled", String.valueOf(virtualThreads)),
+                        Map.entry("server.tomcat.threads.max", String.valueOf(PLATFORM_POOL_SIZE)),
+                        Map.entry("spring.docker.compose.enabled", "false"),
+                        Map.entry("spring.devtools.restart.enabled", "false"),
+                        Map.entry("app.storage.backend", "embedded"),
+                        Map.entry("app.storage.embedded.file", dataDir.resolve("load.mv.db").toString()),
+                        Map.entry("app.cors.allowed-origins", "http://localhost"),
+                        Map.entry("spring.ai.openai.api-key", "test-key"),
+                        Map.entry("openai.api-url",
+                                "http://127.0.0.1:" + openAiStub.getAddress().getPort() + "/v1/chat/completions"),
+                        Map.entry("openai.max-in-flight", String.valueOf(maxInFlight)),
+                        // Keep the generation cache out of the measurement
+                        Map.entry("app.generation-cache.max-size", "0")))
+                .run();
+    }
+
+    @Test
+    void virtualThreads_holdWholeBurstInFlight() throws Exception {
+        startServer(true, CONCURRENT_REQUESTS * 2);
+        LoadResult result = runBurst(CONCURRENT_REQUESTS);
+        report("virtual threads", result);
+
+        assertEquals(CONCURRENT_REQUESTS, result.succeeded());
+        assertTrue(result.peakInFlight() > PLATFORM_POOL_SIZE,
+                "Expected more than " + PLATFORM_POOL_SIZE + " concurrent generations, got " + result.peakInFlight());
+    }
+
+    @Test
+    void platformPool_asyncClientReleasesRequestThreads() throws Exception {
+        startServer(false, CONCURRENT_REQUESTS * 2);
+        LoadResult result = runBurst(CONCURRENT_REQUESTS);
+        report(PLATFORM_POOL_SIZE + " platform threads", result);
+
+        assertEquals(CONCURRENT_REQUESTS, result.succeeded());
+        assertTrue(result.peakInFlight() > PLATFORM_POOL_SIZE,
+                "Expected more than " + PLATFORM_POOL_SIZE + " concurrent generations, got " + result.peakInFlight());
+    }
+
+    @Test
+    void inFlightLimit_rejectsExcessCalls() throws Exception {
+        int limit = 100;
+        startServer(true, limit);
+        LoadResult result = runBurst(limit * 3);
+        report("in-flight limit " + limit, result);
+
+        assertTrue(result.peakInFlight() <= limit);
+        assertTrue(result.rejected() > 0);
+        assertEquals(limit * 3, result.succeeded() + result.rejected());
+    }
+
+    private record LoadResult(int requests, int succeeded, int rejected, int peakInFlight, long elapsedMillis) {
+    }
+
+    private LoadResult runBurst(int requests) throws Exception {
+        String baseUrl = "http://127.0.0.1:" + server.getEnvironment().getProperty("local.server.port");
+        String token = register(baseUrl);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            // Distinct queries, so identical-request coalescing does not collapse the burst
+            String recipeQuery = URLEncoder.encode("chicken curry " + i, StandardCharsets.UTF_8);
+            responses.add(httpClient.sendAsync(HttpRequest.newBuilder(
+                            URI.create(baseUrl + "/api/getRecipes?numberOfRecipes=1&recipeQuery=" + recipeQuery))
+                    .header("Authorization", "Bearer " + token)
+                    .timeout(Duration.ofSeconds(60))
+                    .build(), HttpResponse.BodyHandlers.ofString()));
+        }
+
+        int succeeded = 0;
+        int rejected = 0;
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            int status = response.join().statusCode();
+            if (status == 200) {
+                succeeded++;
+            } else if (status == 503) {
+                rejected++;
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        return new LoadResult(requests, succeeded, rejected, peakInFlight.get(), elapsedMillis);
+    }
+
+    /**
+     * Registers the load test user and returns its JWT
+     */
+    private String register(String baseUrl) throws Exception {
+        String registration = objectMapper.writeValueAsString(Map.of(
+                "email", "load@example.com", "password", "load-test-password", "username", "load"));
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(registration))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), response.body());
+        return (String) objectMapper.readValue(response.body(), Map.class).get("idToken");
+    }
+
+    private static void report(String mode, LoadResult result) {
+        System.out.printf("[load] %s: %d/%d generations succeeded, %d rejected, peak %d in flight, %d ms for the burst (upstream latency %d ms)%n",
+                mode, result.succeeded(), result.requests(), result.rejected(), result.peakInFlight(),
+                result.elapsedMillis(), UPSTREAM_LATENCY_MS);
+    }
+}
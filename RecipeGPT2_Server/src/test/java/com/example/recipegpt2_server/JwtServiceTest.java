@@ -2,6 +2,8 @@ package com.example.recipegpt2_server;
 
 import com.example.recipegpt2_server.model.User;
 import com.example.recipegpt2_server.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
@@ -34,4 +36,66 @@ class JwtServiceTest {
         assertTrue(jwtService.isTokenValid(token, user));
         assertEquals("test@example.com", jwtService.extractUsername(token));
     }
-}
\ No newline at end of file
+
+    @Test
+    void verifyToken_parsesOnceAndRejectsTampering() {
+        User user = new User();
+        user.setId("user123");
+        user.setEmail("test@example.com");
+
+        String token = jwtService.generateToken(user);
+        Claims claims = jwtService.verifyToken(token);
+        assertEquals("test@example.com", claims.getSubject());
+        assertSame(claims, jwtService.verifyToken(token));
+        assertTrue(jwtService.isTokenValid(claims, user));
+
+        String tampered = token.substring(0, token.length() - 2)
+                + (token.endsWith("AA") ? "BB" : "AA");
+        assertThrows(JwtException.class, () -> jwtService.verifyToken(tampered));
+    }
+
+    @Test
+    void verifyToken_fullCacheEvictsLeastRecentlyUsedToken() {
+        ReflectionTestUtils.setField(jwtService, "verifiedCacheMaxSize", 2);
+        String first = jwtService.generateToken(user("first"));
+        String second = jwtService.generateToken(user("second"));
+
+        Claims firstClaims = jwtService.verifyToken(first);
+        Claims secondClaims = jwtService.verifyToken(second);
+        jwtService.verifyToken(first);
+        jwtService.verifyToken(jwtService.generateToken(user("third")));
+
+        // Only the least recently used token is verified again
+        assertSame(firstClaims, jwtService.verifyToken(first));
+        assertNotSame(secondClaims, jwtService.verifyToken(second));
+    }
+
+    @Test
+    void generateToken_compactClaimsOmitProfileLists() {
+        User user = new User();
+        user.setId("user123");
+        user.setEmail("test@example.com");
+        user.setPublisher(true);
+        user.setProfileVersion(3);
+        user.setCreatedRecipes(java.util.Arrays.asList("r1", "r2"));
+        user.setPreferences(java.util.Arrays.asList("Vegan"));
+
+        Claims claims = jwtService.verifyToken(jwtService.generateToken(user));
+        assertEquals("user123", claims.get("id"));
+        assertEquals("ROLE_PUBLISHER", claims.get("role"));
+        assertEquals(3, ((Number) claims.get("pv")).intValue());
+        assertFalse(claims.containsKey("createdRecipes"));
+        assertFalse(claims.containsKey("preferences"));
+
+        ReflectionTestUtils.setField(jwtService, "compactClaims", false);
+        Claims legacyClaims = jwtService.verifyToken(jwtService.generateToken(user));
+        assertTrue(legacyClaims.containsKey("createdRecipes"));
+    }
+
+    private static User user(String id) {
+        User user = new User();
+        user.setId(id);
+        user.setEmail(id + "@example.com");
+        return user;
+    }
+}
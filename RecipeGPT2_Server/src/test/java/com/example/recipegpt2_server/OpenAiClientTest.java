@@ -0,0 +1,138 @@
+package com.example.recipegpt2_server;
+
+import com.example.recipegpt2_server.service.OpenAiClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenAiClientTest {
+    private HttpServer server;
+    private OpenAiClient openAiClient;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger slowCalls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/complete", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            respond(exchange, 200, "{\"choices\":[{\"message\":{\"content\":\"{\\\"quote\\\":\\\"Salt wisely\\\"}\"}}]}");
+        });
+        server.createContext("/stream", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            respond(exchange, 200, "data: {\"choices\":[{\"delta\":{\"content\":\"{\\\"quo\"}}]}\n\n"
+                    + "data: {\"choices\":[{\"delta\":{\"content\":\"te\\\":1}\"}}]}\n\n"
+                    + "data: [DONE]\n\n");
+        });
+        server.createContext("/error", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            respond(exchange, 429, "{}");
+        });
+        server.createContext("/slow", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            slowCalls.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "{\"choices\":[{\"message\":{\"content\":\"{}\"}}]}");
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (openAiClient != null) {
+            openAiClient.close();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    void complete_parsesMessageContent() {
+        openAiClient = client("/complete", 4);
+        Map<String, Object> content = openAiClient.complete(new HashMap<>()).join();
+        assertEquals("Salt wisely", content.get("quote"));
+        assertEquals(0, openAiClient.inFlightCount());
+    }
+
+    @Test
+    void stream_deliversDeltasInOrder() {
+        openAiClient = client("/stream", 4);
+        StringBuilder content = new StringBuilder();
+        openAiClient.stream(new HashMap<>(), content::append).join();
+        assertEquals("{\"quote\":1}", content.toString());
+    }
+
+    @Test
+    void complete_errorStatus_failsFuture() {
+        openAiClient = client("/error", 4);
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> openAiClient.complete(new HashMap<>()).join());
+        assertTrue(error.getCause() instanceof IllegalStateException);
+        assertEquals(0, openAiClient.inFlightCount());
+    }
+
+    @Test
+    void complete_overInFlightLimit_rejectsImmediately() {
+        openAiClient = client("/slow", 1);
+        var first = openAiClient.complete(new HashMap<>(Map.of("n", 1)));
+
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> openAiClient.complete(new HashMap<>(Map.of("n", 2))).join());
+        assertTrue(error.getCause() instanceof RejectedExecutionException);
+
+        release.countDown();
+        first.join();
+        assertEquals(0, openAiClient.inFlightCount());
+    }
+
+    @Test
+    void complete_identicalConcurrentRequests_shareOneCall() {
+        openAiClient = client("/slow", 4);
+        var first = openAiClient.complete(new HashMap<>(Map.of("model", "gpt-4o")));
+        var second = openAiClient.complete(new HashMap<>(Map.of("model", "gpt-4o")));
+        var different = openAiClient.complete(new HashMap<>(Map.of("model", "gpt-4o-mini")));
+
+        release.countDown();
+        assertSame(first.join(), second.join());
+        different.join();
+        assertEquals(2, slowCalls.get());
+        assertEquals(2.0, openAiClient.sentCount());
+        assertEquals(1.0, openAiClient.collapsedCount());
+    }
+
+    private OpenAiClient client(String path, int maxInFlight) {
+        return new OpenAiClient(new SimpleMeterRegistry(), "test-key", "http://127.0.0.1:" + server.getAddress().getPort() + path,
+                2000, 10000, maxInFlight);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.recipegpt2_server;
+
+import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.repository.PublicRecipeIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PublicRecipeIndexTest {
+    private PublicRecipeIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new PublicRecipeIndex();
+        index.index(recipe("r1", "Chicken Curry", Arrays.asList("Indian & South Asian Cooking"),
+                Arrays.asList("Chicken thighs", "Curry paste"), Arrays.asList("Simmer everything")));
+        index.index(recipe("r2", "Vegan Lasagna", Arrays.asList("Vegan", "European Continental Cooking"),
+                Arrays.asList("Lasagna sheets", "Tofu ricotta"), Arrays.asList("Layer and bake")));
+        index.index(recipe("r3", "Chickpea Salad", Arrays.asList("Vegan", "Salads & Grain Bowls"),
+                Arrays.asList("Chickpeas", "Cucumber"), Arrays.asList("Toss together")));
+        index.markReady();
+    }
+
+    @Test
+    void findCandidates_byText() {
+        assertEquals(List.of("r1", "r3"), ids(index.findCandidates(null, "chick")));
+        assertEquals(List.of("r1"), ids(index.findCandidates(null, "chicken curry")));
+        assertEquals(List.of("r2"), ids(index.findCandidates(null, "bake")));
+    }
+
+    @Test
+    void findCandidates_matchesSubstringsLikeTheStore() {
+        // Mid-word matches, as RecipeRepository.matchesText finds them
+        assertEquals(List.of("r1"), ids(index.findCandidates(null, "ken")));
+        assertEquals(List.of("r3"), ids(index.findCandidates(null, "ckpe")));
+        assertEquals(List.of("r1"), ids(index.findCandidates(null, "cken cur")));
+        assertEquals(List.of("r2"), ids(index.findCandidates(null, "yer and ba")));
+        assertTrue(index.findCandidates(null, "ken salad").isEmpty());
+        // Text without any word cannot narrow the candidates down
+        assertEquals(List.of("r1", "r2", "r3"), ids(index.findCandidates(null, " & ")));
+    }
+
+    @Test
+    void findCandidates_byCategoryAndText() {
+        assertEquals(List.of("r2", "r3"), ids(index.findCandidates("vegan", null)));
+        assertEquals(List.of("r3"), ids(index.findCandidates("Vegan", "cucumber")));
+        assertEquals(List.of("r1", "r2", "r3"), ids(index.findCandidates("all", "")));
+    }
+
+    @Test
+    void index_updatesAndEvictions() {
+        index.index(recipe("r1", "Beef Stew", Arrays.asList("Soups & Stews"),
+                Arrays.asList("Beef"), Arrays.asList("Braise")));
+        assertTrue(index.findCandidates(null, "curry").isEmpty());
+        assertEquals(List.of("r1"), ids(index.findCandidates("soups", "beef")));
+
+        Recipe madePrivate = recipe("r2", "Vegan Lasagna", Arrays.asList("Vegan"),
+                Arrays.asList("Lasagna sheets"), Arrays.asList("Layer and bake"));
+        madePrivate.setPublic(false);
+        index.index(madePrivate);
+        assertEquals(List.of("r3"), ids(index.findCandidates("vegan", null)));
+
+        index.evict("r3");
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void index_stripsPerUserRatings() {
+        Recipe recipe = index.findCandidates(null, "lasagna").get(0);
+        assertEquals(0, recipe.getNumOfRatings());
+        assertEquals(4.0, recipe.getRating());
+    }
+
+    private static Recipe recipe(String id, String title, List<String> categories,
+            List<String> ingredients, List<String> instructions) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setTitle(title);
+        recipe.setCategories(categories);
+        recipe.setIngredients(ingredients);
+        recipe.setInstructions(instructions);
+        recipe.setPublic(true);
+        recipe.setRating(4.0);
+        recipe.setNumOfRatings(2);
+        recipe.setTotalSumRatings(8.0);
+        return recipe;
+    }
+
+    private static List<String> ids(List<Recipe> recipes) {
+        return recipes.stream().map(Recipe::getId).collect(Collectors.toList());
+    }
+}
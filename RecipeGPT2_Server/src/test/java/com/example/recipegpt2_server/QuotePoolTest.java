@@ -0,0 +1,73 @@
+package com.example.recipegpt2_server;
+
+import com.example.recipegpt2_server.service.OpenAiClient;
+import com.example.recipegpt2_server.service.QuotePool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+class QuotePoolTest {
+    @TempDir
+    Path tempDir;
+
+    private OpenAiClient openAiClient;
+    private Path poolFile;
+
+    @BeforeEach
+    void setUp() {
+        openAiClient = mock(OpenAiClient.class);
+        poolFile = tempDir.resolve("quotes.json");
+    }
+
+    @Test
+    void refill_rotatesOldestQuotesAndPersists() throws Exception {
+        when(openAiClient.complete(anyMap()))
+                .thenReturn(CompletableFuture.completedFuture(Map.of("quotes", List.of("q1", "q2", "q3"))))
+                .thenReturn(CompletableFuture.completedFuture(Map.of("quotes", List.of("q4", " "))));
+        QuotePool pool = newPool(3);
+
+        assertNull(pool.randomQuote());
+        pool.refill();
+        assertEquals(3, pool.size());
+        pool.refill();
+
+        assertEquals(List.of("q2", "q3", "q4"), ReflectionTestUtils.getField(pool, "quotes"));
+        assertTrue(Files.readString(poolFile).contains("q4"));
+    }
+
+    @Test
+    void start_servesPersistedPoolWithoutCallingOpenAi() throws Exception {
+        Files.writeString(poolFile, "[\"Taste as you go\"]");
+        when(openAiClient.complete(anyMap())).thenReturn(new CompletableFuture<>());
+        QuotePool pool = newPool(10);
+        ReflectionTestUtils.setField(pool, "enabled", true);
+        ReflectionTestUtils.setField(pool, "refreshIntervalMillis", 60000L);
+
+        pool.start();
+        try {
+            assertEquals("Taste as you go", pool.randomQuote());
+        } finally {
+            pool.stop();
+        }
+    }
+
+    private QuotePool newPool(int poolSize) {
+        QuotePool pool = new QuotePool();
+        ReflectionTestUtils.setField(pool, "openAiClient", openAiClient);
+        ReflectionTestUtils.setField(pool, "poolSize", poolSize);
+        ReflectionTestUtils.setField(pool, "batchSize", 1);
+        ReflectionTestUtils.setField(pool, "poolFile", poolFile.toString());
+        return pool;
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.recipegpt2_server;
+
+import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.service.RatingBuffer;
+import com.example.recipegpt2_server.service.RecipeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RatingBufferTest {
+    @TempDir
+    Path tempDir;
+
+    private RecipeService recipeService;
+    private Path journalFile;
+    private final List<String> flushed = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        recipeService = mock(RecipeService.class);
+        journalFile = tempDir.resolve("rating-journal.log");
+        when(recipeService.getRecipeById(anyString())).thenAnswer(invocation -> {
+            Recipe recipe = new Recipe();
+            recipe.setId(invocation.getArgument(0));
+            recipe.setUserId("creator");
+            recipe.setPublic(true);
+            return recipe;
+        });
+        when(recipeService.getUserRating(anyString(), anyString())).thenReturn(null);
+        when(recipeService.applyRatings(anyString(), anyMap())).thenAnswer(invocation -> {
+            flushed.add(invocation.getArgument(0) + "=" + new LinkedHashMap<>((Map<?, ?>) invocation.getArgument(1)));
+            return null;
+        });
+    }
+
+    @Test
+    void flush_aggregatesLastChangePerUserIntoOneWritePerRecipe() throws Exception {
+        when(recipeService.getUserRating("soup", "bob")).thenReturn(3.0);
+        RatingBuffer buffer = newBuffer();
+        try {
+            buffer.addRating("soup", 2.0, "alice");
+            buffer.addRating("soup", 5.0, "alice");
+            buffer.deleteRating("soup", "bob");
+            buffer.addRating("stew", 4.0, "alice");
+
+            // Read-your-writes before the flush
+            assertEquals(5.0, buffer.pendingRating("soup", "alice").rating());
+            assertNull(buffer.pendingRating("soup", "bob").rating());
+            assertNull(buffer.pendingRating("stew", "bob"));
+            assertEquals(3, buffer.pendingCount());
+            assertThrows(SecurityException.class, () -> buffer.addRating("soup", 4.0, "creator"));
+            assertThrows(IllegalArgumentException.class, () -> buffer.deleteRating("stew", "carol"));
+
+            buffer.flush();
+
+            assertEquals(2, flushed.size());
+            assertTrue(flushed.contains("soup={alice=5.0, bob=null}"));
+            assertTrue(flushed.contains("stew={alice=4.0}"));
+            assertEquals(0, buffer.pendingCount());
+            assertNull(buffer.pendingRating("soup", "alice"));
+            assertEquals(0, Files.size(journalFile));
+        } finally {
+            buffer.stop();
+        }
+    }
+
+    @Test
+    void start_replaysJournalLeftByCrash() throws Exception {
+        RatingBuffer crashed = newBuffer();
+        crashed.addRating("soup", 4.0, "alice");
+        crashed.addRating("soup", 1.0, "bob");
+        // No stop(): the process dies with the ratings only in the journal
+        ((FileChannel) ReflectionTestUtils.getField(crashed, "journal")).close();
+
+        RatingBuffer restarted = newBuffer();
+        try {
+            assertEquals(4.0, restarted.pendingRating("soup", "alice").rating());
+            restarted.flush();
+            assertEquals(List.of("soup={alice=4.0, bob=1.0}"), flushed);
+        } finally {
+            restarted.stop();
+        }
+        verify(recipeService, never()).addRatingToRecipe(anyString(), anyDouble(), anyString());
+    }
+
+    @Test
+    void concurrentRatings_areAllJournaledBeforeTheyAreAcknowledged() throws Exception {
+        RatingBuffer crashed = newBuffer();
+        try (ExecutorService raters = Executors.newFixedThreadPool(32)) {
+            List<Future<?>> ratings = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                String recipeId = "recipe" + (i % 7);
+                String userId = "user" + i;
+                ratings.add(raters.submit(() -> crashed.addRating(recipeId, 3.0, userId)));
+            }
+            for (Future<?> rating : ratings) {
+                rating.get();
+            }
+        }
+        // Every acknowledged rating is on disk when the process dies
+        ((FileChannel) ReflectionTestUtils.getField(crashed, "journal")).close();
+
+        RatingBuffer restarted = newBuffer();
+        try {
+            assertEquals(500, restarted.pendingCount());
+            assertEquals(3.0, restarted.pendingRating("recipe3", "user10").rating());
+        } finally {
+            restarted.stop();
+        }
+    }
+
+    @Test
+    void flush_failedWriteIsRetriedWithoutOverridingNewerRating() throws Exception {
+        Map<String, Double> lastWrite = new HashMap<>();
+        when(recipeService.applyRatings(eq("soup"), anyMap()))
+                .thenThrow(new IllegalStateException("Firestore unavailable"))
+                .thenAnswer(invocation -> {
+                    lastWrite.putAll(invocation.getArgument(1));
+                    return null;
+                });
+        RatingBuffer buffer = newBuffer();
+        try {
+            buffer.addRating("soup", 2.0, "alice");
+            buffer.addRating("soup", 3.0, "bob");
+            buffer.flush();
+            assertEquals(2, buffer.pendingCount());
+
+            buffer.addRating("soup", 5.0, "bob");
+            buffer.flush();
+            assertEquals(Map.of("alice", 2.0, "bob", 5.0), lastWrite);
+            assertEquals(0, buffer.pendingCount());
+        } finally {
+            buffer.stop();
+        }
+    }
+
+    @Test
+    void pendingRating_staysVisibleUntilTheFlushCommits() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        when(recipeService.applyRatings(eq("soup"), anyMap())).thenAnswer(invocation -> {
+            writing.countDown();
+            commit.await();
+            return null;
+        });
+        RatingBuffer buffer = newBuffer();
+        ExecutorService flusher = Executors.newSingleThreadExecutor();
+        try {
+            buffer.addRating("soup", 4.0, "alice");
+            Future<?> flush = flusher.submit(() -> {
+                buffer.flush();
+                return null;
+            });
+            writing.await();
+
+            // The rating is out of the buffer but not yet in the store
+            assertEquals(4.0, buffer.pendingRating("soup", "alice").rating());
+            buffer.deleteRating("soup", "alice");
+
+            commit.countDown();
+            flush.get();
+            assertNull(buffer.pendingRating("soup", "alice").rating());
+            assertEquals(1, buffer.pendingCount());
+        } finally {
+            flusher.shutdownNow();
+            buffer.stop();
+        }
+    }
+
+    private RatingBuffer newBuffer() throws Exception {
+        RatingBuffer buffer = new RatingBuffer();
+        ReflectionTestUtils.setField(buffer, "recipeService", recipeService);
+        ReflectionTestUtils.setField(buffer, "enabled", true);
+        ReflectionTestUtils.setField(buffer, "flushIntervalMillis", 60000L);
+        ReflectionTestUtils.setField(buffer, "journalFile", journalFile.toString());
+        buffer.start();
+        return buffer;
+    }
+}
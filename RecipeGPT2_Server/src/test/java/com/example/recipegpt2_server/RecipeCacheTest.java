@@ -0,0 +1,121 @@
+package com.example.recipegpt2_server;
+
+import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.service.RecipeCache;
+import com.example.recipegpt2_server.store.RecipeStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.*;
+
+class RecipeCacheTest {
+
+    private static Recipe recipe(String id, String image) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setTitle("Recipe " + id);
+        recipe.setUserId("user-1");
+        recipe.setIngredients(new ArrayList<>(List.of("Rice")));
+        recipe.setImage(image);
+        return recipe;
+    }
+
+    @Test
+    void get_returnsIndependentCopiesAndCountsHitsAndMisses() {
+        RecipeCache cache = new RecipeCache(new SimpleMeterRegistry(), 10, 1 << 20, 60000, false);
+        Recipe original = recipe("r1", "");
+
+        assertNull(cache.get("r1"));
+        cache.put(original, cache.beginLoad(original.getId()));
+        original.getIngredients().add("Changed after caching");
+
+        Recipe first = cache.get("r1");
+        first.setTitle("Changed by the caller");
+        assertThrows(UnsupportedOperationException.class, () -> first.getIngredients().add("Beans"));
+        Recipe second = cache.get("r1");
+
+        assertEquals("Recipe r1", second.getTitle());
+        assertEquals(List.of("Rice"), second.getIngredients());
+        assertEquals(2.0, cache.hitCount());
+        assertEquals(1.0, cache.missCount());
+    }
+
+    @Test
+    void put_evictsLeastRecentlyUsedBeyondByteLimit() {
+        // Room for two recipes with a 2 KB image but not three
+        RecipeCache cache = new RecipeCache(new SimpleMeterRegistry(), 10, 7000, 60000, false);
+        String image = "x".repeat(2000);
+        cache.put(recipe("a", image), cache.beginLoad("a"));
+        cache.put(recipe("b", image), cache.beginLoad("b"));
+        cache.get("a");
+        cache.put(recipe("c", image), cache.beginLoad("c"));
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.estimatedBytes() <= 7000);
+        assertEquals(1.0, cache.evictionCount());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    void put_ignoresLoadsThatOverlapAnInvalidation() {
+        RecipeCache cache = new RecipeCache(new SimpleMeterRegistry(), 10, 1 << 20, 60000, false);
+        cache.put(recipe("r1", ""), cache.beginLoad("r1"));
+
+        // A read that started before a write finished must not re-cache the old document
+        long staleLoad = cache.beginLoad("r1");
+        long otherLoad = cache.beginLoad("r2");
+        cache.invalidate("r1");
+        cache.put(recipe("r1", ""), staleLoad);
+        assertNull(cache.get("r1"));
+        // Loads of other recipes are still cached
+        cache.put(recipe("r2", ""), otherLoad);
+        assertNotNull(cache.get("r2"));
+
+        cache.put(recipe("r1", ""), cache.beginLoad("r1"));
+        assertNotNull(cache.get("r1"));
+    }
+
+    @Test
+    void get_bypassesCacheUntilListenerConnects() {
+        RecipeCache cache = new RecipeCache(new SimpleMeterRegistry(), 10, 1 << 20, 60000, true);
+        ReflectionTestUtils.setField(cache, "recipeStore", mock(RecipeStore.class));
+
+        // Writes by other instances would be missed, so nothing is cached or served
+        cache.put(recipe("r1", ""), cache.beginLoad("r1"));
+        assertEquals(0, cache.size());
+        assertNull(cache.get("r1"));
+    }
+
+    @Test
+    void changeFeed_invalidatesChangedRecipesAndBypassesCacheAfterAnError() {
+        RecipeCache cache = new RecipeCache(new SimpleMeterRegistry(), 10, 1 << 20, 60000, true);
+        RecipeStore recipeStore = mock(RecipeStore.class);
+        ReflectionTestUtils.setField(cache, "recipeStore", recipeStore);
+        cache.start();
+        ArgumentCaptor<RecipeStore.ChangedIdsListener> listener =
+                ArgumentCaptor.forClass(RecipeStore.ChangedIdsListener.class);
+        verify(recipeStore).listenForChangedIds(listener.capture());
+        verify(recipeStore, never()).listen(anyBoolean(), any());
+
+        listener.getValue().onChanged(List.of());
+        cache.put(recipe("r1", ""), cache.beginLoad("r1"));
+        cache.put(recipe("r2", ""), cache.beginLoad("r2"));
+        listener.getValue().onChanged(List.of("r1"));
+        assertNull(cache.get("r1"));
+        assertNotNull(cache.get("r2"));
+
+        listener.getValue().onError(new IllegalStateException("deadline exceeded"));
+        assertNull(cache.get("r2"));
+        cache.put(recipe("r2", ""), cache.beginLoad("r2"));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.recipegpt2_server;
+
+import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.model.RecipeCodec;
+import com.google.cloud.firestore.DocumentSnapshot;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.cloud.firestore.TestSnapshots.document;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JMH benchmark of decoding and encoding recipes with RecipeCodec against the
+ * map conversion Recipe used before it (kept below as LegacyRecipeMapper).
+ * Firestore documents are real snapshots, read field by field by the codec and
+ * through getData() by the legacy mapper; one carries a legacy ratingList of
+ * many users, of which a reader needs only its own entry. The embedded store's
+ * documents are maps of ArrayLists and Long numbers, field-masked to a list
+ * summary. The test compares the bytes allocated per operation reported by
+ * JMH's GC profiler.
+ *
+ * Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecipeCodecBenchmark {
+
+    private DocumentSnapshot fullSnapshot;
+    private DocumentSnapshot ratedSnapshot;
+    private Map<String, Object> summaryDocument;
+    private Recipe recipe;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> fullDocument = new HashMap<>();
+        fullDocument.put("title", "Chicken Curry");
+        fullDocument.put("description", "A mild weeknight curry");
+        fullDocument.put("categories", new ArrayList<>(List.of("Indian & South Asian Cooking")));
+        fullDocument.put("ingredients", new ArrayList<>(List.of("Chicken", "Onion", "Curry paste", "Coconut milk")));
+        fullDocument.put("instructions", new ArrayList<>(List.of("Brown the chicken", "Add onion and paste",
+                "Simmer in coconut milk")));
+        fullDocument.put("estimatedCookingTime", 30L);
+        fullDocument.put("estimatedPrepTime", 15L);
+        fullDocument.put("servings", 4L);
+        fullDocument.put("userId", "user-1");
+        fullDocument.put("public", true);
+        fullDocument.put("image", "");
+        fullDocument.put("rating", 4.5);
+        fullDocument.put("numOfRatings", 12L);
+        fullDocument.put("totalSumRatings", 54.0);
+
+        // A document read with the list summary field mask
+        summaryDocument = new HashMap<>(fullDocument);
+        summaryDocument.remove("ingredients");
+        summaryDocument.remove("instructions");
+
+        fullSnapshot = document("recipes/recipe-1", fullDocument);
+
+        // A recipe rated before ratings moved to their own collection
+        Map<String, Object> ratingList = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            ratingList.put("user-" + i, (double) (i % 5 + 1));
+        }
+        Map<String, Object> ratedDocument = new HashMap<>(fullDocument);
+        ratedDocument.put("ratingList", ratingList);
+        ratedSnapshot = document("recipes/recipe-1", ratedDocument);
+
+        recipe = RecipeCodec.decode(fullDocument, "recipe-1");
+    }
+
+    @Benchmark
+    public Recipe decodeSnapshot_codec() {
+        return RecipeCodec.decode(fullSnapshot);
+    }
+
+    @Benchmark
+    public Recipe decodeSnapshot_legacy() {
+        return LegacyRecipeMapper.fromMap(fullSnapshot.getData(), fullSnapshot.getId());
+    }
+
+    @Benchmark
+    public Recipe decodeRatedSnapshot_codec() {
+        Recipe decoded = RecipeCodec.decode(ratedSnapshot);
+        decoded.setUserRating(Recipe.legacyRating(ratedSnapshot, "user-7"));
+        return decoded;
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Recipe decodeRatedSnapshot_legacy() {
+        Map<String, Object> data = ratedSnapshot.getData();
+        Recipe decoded = LegacyRecipeMapper.fromMap(data, ratedSnapshot.getId());
+        Map<String, Object> ratingList = (Map<String, Object>) data.get("ratingList");
+        if (ratingList != null && ratingList.get("user-7") instanceof Number rating) {
+            decoded.setUserRating(rating.doubleValue());
+        }
+        return decoded;
+    }
+
+    @Benchmark
+    public Recipe decodeSummary_codec() {
+        return RecipeCodec.decode(summaryDocument, "recipe-1");
+    }
+
+    @Benchmark
+    public Recipe decodeSummary_legacy() {
+        return LegacyRecipeMapper.fromMap(summaryDocument, "recipe-1");
+    }
+
+    @Benchmark
+    public void encode_codec(Blackhole blackhole) {
+        blackhole.consume(RecipeCodec.encode(recipe));
+    }
+
+    @Benchmark
+    public void encode_legacy(Blackhole blackhole) {
+        blackhole.consume(LegacyRecipeMapper.toMap(recipe));
+    }
+
+    @Test
+    void codecAllocatesLessPerRecipe() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(RecipeCodecBenchmark.class.getName() + "\\.")
+                .addProfiler(GCProfiler.class)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        Map<String, Double> bytesPerOperation = new HashMap<>();
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            String name = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+            for (Map.Entry<String, Result> secondary : result.getSecondaryResults().entrySet()) {
+                if (secondary.getKey().endsWith("gc.alloc.rate.norm")) {
+                    bytesPerOperation.put(name, secondary.getValue().getScore());
+                }
+            }
+        }
+        System.out.println("✨ Bytes allocated per operation: " + bytesPerOperation);
+
+        // getData() builds a map of every decoded field; the codec skips it, and the
+        // other users' legacy ratings, which are never decoded at all
+        assertTrue(bytesPerOperation.get("decodeSnapshot_codec") < bytesPerOperation.get("decodeSnapshot_legacy"));
+        assertTrue(bytesPerOperation.get("decodeRatedSnapshot_codec")
+                < bytesPerOperation.get("decodeRatedSnapshot_legacy") / 10);
+        assertTrue(bytesPerOperation.get("decodeSummary_codec") < bytesPerOperation.get("decodeSummary_legacy"));
+        assertTrue(bytesPerOperation.get("encode_codec") < bytesPerOperation.get("encode_legacy"));
+    }
+
+    /**
+     * Recipe.toMap and Recipe.fromMap as they were before RecipeCodec, as the baseline
+     */
+    @SuppressWarnings("unchecked")
+    static final class LegacyRecipeMapper {
+
+        static Map<String, Object> toMap(Recipe recipe) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("title", recipe.getTitle());
+            map.put("description", recipe.getDescription());
+            map.put("categories", recipe.getCategories() != null ? recipe.getCategories() : new ArrayList<>());
+            map.put("ingredients", recipe.getIngredients() != null ? recipe.getIngredients() : new ArrayList<>());
+            map.put("instructions", recipe.getInstructions() != null ? recipe.getInstructions() : new ArrayList<>());
+            if (recipe.getEstimatedCookingTime() > 0) {
+                map.put("estimatedCookingTime", recipe.getEstimatedCookingTime());
+            }
+            if (recipe.getEstimatedPrepTime() > 0) {
+                map.put("estimatedPrepTime", recipe.getEstimatedPrepTime());
+            }
+            map.put("servings", recipe.getServings());
+            if (recipe.getUserId() != null) {
+                map.put("userId", recipe.getUserId());
+            }
+            map.put("public", recipe.isPublic());
+            map.put("image", recipe.getImage() != null ? recipe.getImage() : "");
+            map.put("rating", recipe.getRating());
+            map.put("numOfRatings", recipe.getNumOfRatings());
+            map.put("totalSumRatings", recipe.getTotalSumRatings());
+            if (recipe.getUserRating() != null) {
+                map.put("userRating", recipe.getUserRating());
+            }
+            return map;
+        }
+
+        static Recipe fromMap(Map<String, Object> map, String id) {
+            Recipe recipe = new Recipe();
+            recipe.setId(id);
+            recipe.setTitle((String) map.getOrDefault("title", ""));
+            recipe.setDescription((String) map.getOrDefault("description", ""));
+            recipe.setCategories((List<String>) map.getOrDefault("categories", new ArrayList<>()));
+            recipe.setIngredients((List<String>) map.getOrDefault("ingredients", new ArrayList<>()));
+            recipe.setInstructions((List<String>) map.getOrDefault("instructions", new ArrayList<>()));
+
+            Object cookingTimeObj = map.get("estimatedCookingTime");
+            if (cookingTimeObj instanceof Integer) {
+                recipe.setEstimatedCookingTime((Integer) cookingTimeObj);
+            } else if (cookingTimeObj instanceof Long) {
+                recipe.setEstimatedCookingTime(((Long) cookingTimeObj).intValue());
+            }
+            Object prepTimeObj = map.get("estimatedPrepTime");
+            if (prepTimeObj instanceof Integer) {
+                recipe.setEstimatedPrepTime((Integer) prepTimeObj);
+            } else if (prepTimeObj instanceof Long) {
+                recipe.setEstimatedPrepTime(((Long) prepTimeObj).intValue());
+            }
+            Object servingsObj = map.get("servings");
+            if (servingsObj instanceof Integer) {
+                recipe.setServings((Integer) servingsObj);
+            } else if (servingsObj instanceof Long) {
+                recipe.setServings(((Long) servingsObj).intValue());
+            }
+
+            recipe.setUserId((String) map.getOrDefault("userId", null));
+            recipe.setPublic((Boolean) map.getOrDefault("public", false));
+            recipe.setImage((String) map.getOrDefault("image", ""));
+
+            if (map.get("rating") instanceof Number rating) {
+                recipe.setRating(rating.doubleValue());
+            }
+            if (map.get("numOfRatings") instanceof Number numOfRatings) {
+                recipe.setNumOfRatings(numOfRatings.intValue());
+            }
+            if (map.get("totalSumRatings") instanceof Number totalSumRatings) {
+                recipe.setTotalSumRatings(totalSumRatings.doubleValue());
+            }
+            if (map.get("userRating") instanceof Number userRating) {
+                recipe.setUserRating(userRating.doubleValue());
+            }
+            return recipe;
+        }
+    }
+}
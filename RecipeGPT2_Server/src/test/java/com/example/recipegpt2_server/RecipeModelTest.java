@@ -1,10 +1,14 @@
 package com.example.recipegpt2_server;
 
 import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.model.RecipeCodec;
+import com.example.recipegpt2_server.model.RecipeSummary;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -55,4 +59,45 @@ class RecipeModelTest {
         assertEquals(recipe.getImage(), fromMapRecipe.getImage());
         assertEquals(recipe.getRating(), fromMapRecipe.getRating());
     }
-}
\ No newline at end of file
+
+    @Test
+    void codecDecodesFirestoreTypesAndSharesEmptyDefaults() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("title", "Soup");
+        data.put("servings", 4L);
+        data.put("estimatedCookingTime", 25L);
+        data.put("public", true);
+        data.put("numOfRatings", 2L);
+        data.put("ratingList", Map.of("u1", 4.0));
+
+        Recipe first = RecipeCodec.decode(data, "r1");
+        Recipe second = RecipeCodec.decode(data, "r2");
+        assertEquals("Soup", first.getTitle());
+        assertEquals("", first.getDescription());
+        assertEquals("", first.getImage());
+        assertEquals(4, first.getServings());
+        assertEquals(25, first.getEstimatedCookingTime());
+        assertTrue(first.isPublic());
+        assertEquals(2, first.getNumOfRatings());
+        assertNull(first.getUserRating());
+        assertTrue(first.getIngredients().isEmpty());
+        assertSame(first.getIngredients(), second.getInstructions());
+
+        Map<String, Object> encoded = RecipeCodec.encode(first);
+        assertEquals(List.of(), encoded.get("categories"));
+        assertFalse(encoded.containsKey("estimatedPrepTime"));
+        assertFalse(encoded.containsKey("ratingList"));
+    }
+
+    @Test
+    void jsonLeavesOutMissingUserRating() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Recipe recipe = new Recipe();
+        recipe.setId("r1");
+        assertFalse(objectMapper.writeValueAsString(recipe).contains("userRating"));
+        assertFalse(objectMapper.writeValueAsString(RecipeSummary.of(recipe)).contains("userRating"));
+
+        recipe.setUserRating(4.0);
+        assertTrue(objectMapper.writeValueAsString(recipe).contains("\"userRating\":4.0"));
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.recipegpt2_server;
+
+import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.model.RecipeCodec;
+import com.example.recipegpt2_server.service.RecipeCache;
+import com.example.recipegpt2_server.service.RecipeService;
+import com.example.recipegpt2_server.store.FirestoreRecipeStore;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.cloud.firestore.Transaction;
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.cloud.firestore.TestSnapshots.document;
+import static com.google.cloud.firestore.TestSnapshots.increment;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Hundreds of parallel raters on one recipe, against an in-memory recipe document
+ * and ratings subcollection whose transactions behave like Firestore's: a
+ * transaction whose documents changed between its read and its commit is retried,
+ * and fails with ABORTED after 5 attempts.
+ */
+class RecipeRatingConcurrencyTest {
+    private static final String RECIPE_ID = "trending";
+    // Firestore's default number of attempts per transaction
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final Object lock = new Object();
+    private Map<String, Object> document;
+    // recipes/{RECIPE_ID}/ratings, keyed by user ID
+    private Map<String, Map<String, Object>> ratings;
+    // Commits per document: RECIPE_ID for the recipe, user IDs for their ratings
+    private final Map<String, Long> versions = new HashMap<>();
+    private long commits;
+    private final AtomicInteger retries = new AtomicInteger();
+    private final AtomicInteger aborted = new AtomicInteger();
+
+    private Firestore firestore;
+    private DocumentReference recipeRef;
+    private RecipeService recipeService;
+
+    @BeforeEach
+    void setUp() {
+        document = new HashMap<>();
+        document.put("title", "Viral Noodles");
+        document.put("userId", "creator");
+        document.put("public", true);
+        document.put("numOfRatings", 0);
+        document.put("totalSumRatings", 0.0);
+        document.put("rating", 0.0);
+        ratings = new HashMap<>();
+
+        firestore = mock(Firestore.class);
+        CollectionReference recipesCollection = mock(CollectionReference.class);
+        CollectionReference ratingsCollection = mock(CollectionReference.class);
+        recipeRef = mock(DocumentReference.class);
+        when(firestore.collection("recipes")).thenReturn(recipesCollection);
+        when(recipesCollection.document(RECIPE_ID)).thenReturn(recipeRef);
+        when(recipeRef.collection("ratings")).thenReturn(ratingsCollection);
+        when(ratingsCollection.document(anyString())).thenAnswer(invocation -> {
+            DocumentReference ratingRef = mock(DocumentReference.class);
+            when(ratingRef.getId()).thenReturn(invocation.getArgument(0));
+            return ratingRef;
+        });
+        when(recipeRef.get()).thenAnswer(invocation -> {
+            synchronized (lock) {
+                return ApiFutures.immediateFuture(document("recipes/" + RECIPE_ID, deepCopy(document)));
+            }
+        });
+        when(firestore.runTransaction(any())).thenAnswer(invocation ->
+                runTransaction(invocation.getArgument(0)));
+
+        FirestoreRecipeStore recipeStore = new FirestoreRecipeStore();
+        ReflectionTestUtils.setField(recipeStore, "firestore", firestore);
+        recipeService = new RecipeService();
+        ReflectionTestUtils.setField(recipeService, "recipeStore", recipeStore);
+        ReflectionTestUtils.setField(recipeService, "recipeCache",
+                new RecipeCache(new SimpleMeterRegistry(), 100, 1 << 20, 60000, false));
+    }
+
+    @Test
+    void parallelRatings_keepExactAggregates() throws Exception {
+        try (ExecutorService raters = Executors.newFixedThreadPool(64)) {
+            // Phase 1: 300 users rate at once
+            List<Future<?>> ratings = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                String userId = "user" + i;
+                double rating = i % 5 + 1;
+                ratings.add(raters.submit(() -> recipeService.addRatingToRecipe(RECIPE_ID, rating, userId)));
+            }
+            awaitAll(ratings);
+
+            // Phase 2: 100 re-ratings, 50 deletions and 100 new ratings at once
+            List<Future<?>> changes = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                String userId = "user" + i;
+                changes.add(raters.submit(() -> recipeService.addRatingToRecipe(RECIPE_ID, 5.0, userId)));
+            }
+            for (int i = 100; i < 150; i++) {
+                String userId = "user" + i;
+                changes.add(raters.submit(() -> recipeService.deleteRatingFromRecipe(RECIPE_ID, userId)));
+            }
+            for (int i = 300; i < 400; i++) {
+                String userId = "user" + i;
+                changes.add(raters.submit(() -> recipeService.addRatingToRecipe(RECIPE_ID, 1.0, userId)));
+            }
+            awaitAll(changes);
+        }
+
+        // Expected state computed independently of the service
+        Map<String, Double> expected = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            expected.put("user" + i, (double) (i % 5 + 1));
+        }
+        for (int i = 0; i < 100; i++) {
+            expected.put("user" + i, 5.0);
+        }
+        for (int i = 100; i < 150; i++) {
+            expected.remove("user" + i);
+        }
+        for (int i = 300; i < 400; i++) {
+            expected.put("user" + i, 1.0);
+        }
+        double expectedSum = expected.values().stream().mapToDouble(Double::doubleValue).sum();
+
+        synchronized (lock) {
+            Map<String, Object> storedRatings = new HashMap<>();
+            ratings.forEach((userId, rating) -> storedRatings.put(userId, rating.get("rating")));
+            assertEquals(expected, storedRatings);
+            assertFalse(document.containsKey("ratingList"));
+            assertEquals(expected.size(), ((Number) document.get("numOfRatings")).intValue());
+            assertEquals(expectedSum, ((Number) document.get("totalSumRatings")).doubleValue());
+            assertEquals(Math.round(expectedSum / expected.size() * 10.0) / 10.0,
+                    RecipeCodec.decode(document, RECIPE_ID).getRating());
+        }
+        // Raters only contend on their own rating documents, so no transaction runs out of attempts
+        System.out.println("Rating transactions retried " + retries.get() + " times, "
+                + aborted.get() + " of 650 aborted");
+        assertEquals(0, aborted.get());
+    }
+
+    @Test
+    void concurrentRatingsBySameUser_countOnce() throws Exception {
+        // Each conflict means another attempt committed, so MAX_ATTEMPTS raters cannot abort
+        try (ExecutorService raters = Executors.newFixedThreadPool(MAX_ATTEMPTS)) {
+            List<Future<?>> ratings = new ArrayList<>();
+            for (int i = 1; i <= MAX_ATTEMPTS; i++) {
+                double rating = i;
+                ratings.add(raters.submit(() -> recipeService.addRatingToRecipe(RECIPE_ID, rating, "fan")));
+            }
+            awaitAll(ratings);
+        }
+
+        synchronized (lock) {
+            assertEquals(1, ((Number) document.get("numOfRatings")).intValue());
+            assertEquals(ratings.get("fan").get("rating"), ((Number) document.get("totalSumRatings")).doubleValue());
+        }
+        assertEquals(0, aborted.get());
+    }
+
+    @Test
+    void addRating_ownRecipe_throwsSecurityException() {
+        assertThrows(SecurityException.class, () -> recipeService.addRatingToRecipe(RECIPE_ID, 4.0, "creator"));
+        assertThrows(IllegalArgumentException.class, () -> recipeService.deleteRatingFromRecipe(RECIPE_ID, "nobody"));
+    }
+
+    @Test
+    void rerating_movesLegacyInlineRatingToSubcollection() throws Exception {
+        Map<String, Object> legacyRatings = new HashMap<>();
+        legacyRatings.put("veteran", 4.0);
+        legacyRatings.put("other", 2.0);
+        document.put("ratingList", legacyRatings);
+        document.put("numOfRatings", 2);
+        document.put("totalSumRatings", 6.0);
+        document.put("rating", 3.0);
+
+        Recipe rerated = recipeService.addRatingToRecipe(RECIPE_ID, 5.0, "veteran");
+        assertEquals(2, rerated.getNumOfRatings());
+        assertEquals(7.0, rerated.getTotalSumRatings());
+        assertEquals(5.0, rerated.getUserRating());
+
+        Recipe deleted = recipeService.deleteRatingFromRecipe(RECIPE_ID, "other");
+        assertEquals(1, deleted.getNumOfRatings());
+        assertEquals(5.0, deleted.getRating());
+
+        assertEquals(Map.of(), document.get("ratingList"));
+        assertEquals(Set.of("veteran"), ratings.keySet());
+        assertEquals(5.0, ratings.get("veteran").get("rating"));
+    }
+
+    @Test
+    void applyRatings_writesAggregatesOnceForManyUsers() throws Exception {
+        Map<String, Object> legacyRatings = new HashMap<>();
+        legacyRatings.put("veteran", 4.0);
+        document.put("ratingList", legacyRatings);
+        document.put("numOfRatings", 2);
+        document.put("totalSumRatings", 7.0);
+        ratings.put("regular", new HashMap<>(Map.of("userId", "regular", "rating", 3.0)));
+
+        Map<String, Double> changes = new LinkedHashMap<>();
+        changes.put("veteran", 2.0);
+        changes.put("regular", null);
+        changes.put("newcomer", 5.0);
+        changes.put("creator", 1.0);
+        changes.put("stranger", null);
+
+        Recipe recipe = recipeService.applyRatings(RECIPE_ID, changes);
+        assertEquals(2, recipe.getNumOfRatings());
+        assertEquals(7.0, recipe.getTotalSumRatings());
+        assertEquals(3.5, recipe.getRating());
+
+        assertEquals(1, commits);
+        assertEquals(Set.of("veteran", "newcomer"), ratings.keySet());
+        assertEquals(Map.of(), document.get("ratingList"));
+        assertEquals(2, ((Number) document.get("numOfRatings")).intValue());
+    }
+
+    private static void awaitAll(List<Future<?>> futures) throws Exception {
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    /**
+     * Optimistic transaction over the in-memory documents: reads copies, lets the
+     * function stage its writes, and commits only if none of the documents it
+     * read was committed in between. Blind writes such as increments do not
+     * conflict.
+     */
+    private Object runTransaction(Transaction.Function<?> function) {
+        for (int attempt = 1; ; attempt++) {
+            Map<String, Object> recipeData;
+            Map<String, Map<String, Object>> ratingData;
+            Map<String, Long> readVersions;
+            synchronized (lock) {
+                recipeData = deepCopy(document);
+                ratingData = new HashMap<>();
+                ratings.forEach((userId, rating) -> ratingData.put(userId, new HashMap<>(rating)));
+                readVersions = new HashMap<>(versions);
+            }
+
+            Set<String> read = new HashSet<>();
+            Set<String> written = new HashSet<>();
+            List<Runnable> writes = new ArrayList<>();
+            Transaction transaction = mock(Transaction.class, invocation -> {
+                Object[] arguments = invocation.getRawArguments();
+                switch (invocation.getMethod().getName()) {
+                    case "getAll" -> {
+                        List<DocumentSnapshot> snapshots = new ArrayList<>();
+                        for (Object argument : (Object[]) arguments[0]) {
+                            DocumentReference reference = (DocumentReference) argument;
+                            if (reference == recipeRef) {
+                                read.add(RECIPE_ID);
+                                snapshots.add(document("recipes/" + RECIPE_ID, recipeData));
+                            } else {
+                                String userId = reference.getId();
+                                read.add(userId);
+                                snapshots.add(ratingDocument(userId, ratingData.get(userId)));
+                            }
+                        }
+                        return ApiFutures.immediateFuture(snapshots);
+                    }
+                    case "update" -> {
+                        Object[] pairs = flatten(arguments);
+                        written.add(RECIPE_ID);
+                        writes.add(() -> apply(pairs));
+                        return invocation.getMock();
+                    }
+                    case "set" -> {
+                        String userId = ((DocumentReference) arguments[0]).getId();
+                        Map<String, Object> data = new HashMap<>(asMap(arguments[1]));
+                        written.add(userId);
+                        writes.add(() -> ratings.put(userId, data));
+                        return invocation.getMock();
+                    }
+                    case "delete" -> {
+                        String userId = ((DocumentReference) arguments[0]).getId();
+                        written.add(userId);
+                        writes.add(() -> ratings.remove(userId));
+                        return invocation.getMock();
+                    }
+                    default -> throw new UnsupportedOperationException(invocation.getMethod().getName());
+                }
+            });
+
+            Object result;
+            try {
+                result = function.updateCallback(transaction);
+            } catch (Exception e) {
+                return ApiFutures.immediateFailedFuture(e);
+            }
+
+            // Widen the window between read and commit so raters really contend
+            Thread.yield();
+
+            synchronized (lock) {
+                boolean conflict = false;
+                for (String key : read) {
+                    conflict |= !Objects.equals(versions.get(key), readVersions.get(key));
+                }
+                if (!conflict) {
+                    writes.forEach(Runnable::run);
+                    written.forEach(key -> versions.merge(key, 1L, Long::sum));
+                    commits++;
+                    return ApiFutures.immediateFuture(result);
+                }
+            }
+            if (attempt == MAX_ATTEMPTS) {
+                aborted.incrementAndGet();
+                return ApiFutures.immediateFailedFuture(FirestoreException.forServerRejection(Status.ABORTED,
+                        "Too much contention on these documents"));
+            }
+            retries.incrementAndGet();
+        }
+    }
+
+    private static DocumentSnapshot ratingDocument(String userId, Map<String, Object> data) {
+        return document("recipes/" + RECIPE_ID + "/ratings/" + userId, data);
+    }
+
+    // update(ref, field, value, Object... moreFieldsAndValues) -> [field, value, field, value, ...]
+    private static Object[] flatten(Object[] arguments) {
+        List<Object> pairs = new ArrayList<>();
+        pairs.add(arguments[1]);
+        pairs.add(arguments[2]);
+        for (Object more : (Object[]) arguments[3]) {
+            pairs.add(more);
+        }
+        return pairs.toArray();
+    }
+
+    private void apply(Object[] pairs) {
+        for (int i = 0; i < pairs.length; i += 2) {
+            String[] path = pairs[i].toString().split("\\.");
+            Object value = pairs[i + 1];
+            Map<String, Object> target = document;
+            for (int segment = 0; segment < path.length - 1; segment++) {
+                target = asMap(target.get(path[segment]));
+            }
+            if (FieldValue.delete().equals(value)) {
+                target.remove(path[path.length - 1]);
+            } else if (FieldValue.serverTimestamp().equals(value)) {
+                target.put(path[path.length - 1], Timestamp.now());
+            } else if (value instanceof FieldValue increment) {
+                target.put(path[path.length - 1], increment(target.get(path[path.length - 1]), increment));
+            } else {
+                target.put(path[path.length - 1], value);
+            }
+        }
+    }
+
+    private static Map<String, Object> deepCopy(Map<String, Object> source) {
+        Map<String, Object> copy = new HashMap<>();
+        source.forEach((key, value) -> copy.put(key,
+                value instanceof Map<?, ?> nested ? deepCopy(asMap(nested)) : value));
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        return (Map<String, Object>) value;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.recipegpt2_server;
+
+import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.model.RecipePage;
+import com.example.recipegpt2_server.model.RecipeSummary;
+import com.example.recipegpt2_server.model.User;
+import com.example.recipegpt2_server.repository.PublicRecipeIndex;
+import com.example.recipegpt2_server.repository.RecipeRepository;
+import com.example.recipegpt2_server.repository.UserRepository;
+import com.example.recipegpt2_server.service.JwtService;
+import com.example.recipegpt2_server.service.RatingBuffer;
+import com.example.recipegpt2_server.store.RecipeStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RecipeRepositoryTest {
+    private RecipeRepository recipeRepository;
+    private UserRepository userRepository;
+    private PublicRecipeIndex publicRecipeIndex;
+    private RecipeStore recipeStore;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        publicRecipeIndex = new PublicRecipeIndex();
+        for (String id : Arrays.asList("a", "b", "c", "d", "e")) {
+            Recipe recipe = new Recipe();
+            recipe.setId(id);
+            recipe.setTitle("Soup " + id);
+            recipe.setCategories(Arrays.asList("Soups & Stews"));
+            recipe.setPublic(true);
+            publicRecipeIndex.index(recipe);
+        }
+        publicRecipeIndex.markReady();
+
+        recipeStore = mock(RecipeStore.class);
+        recipeRepository = new RecipeRepository();
+        ReflectionTestUtils.setField(recipeRepository, "recipeStore", recipeStore);
+        ReflectionTestUtils.setField(recipeRepository, "userRepository", userRepository);
+        ReflectionTestUtils.setField(recipeRepository, "publicRecipeIndex", publicRecipeIndex);
+        ReflectionTestUtils.setField(recipeRepository, "ratingBuffer", new RatingBuffer());
+    }
+
+    @Test
+    void fetchPublicRecipesPage_walksAllPages() throws Exception {
+        User user = new User();
+        user.setId("u1");
+        user.setSavedRecipes(new ArrayList<>(List.of("c")));
+        when(userRepository.findById("u1")).thenReturn(Optional.of(user));
+
+        RecipePage<Recipe> first = recipeRepository.fetchPublicRecipesPage("u1", "soups", "soup", 2, null);
+        assertEquals(List.of("a", "b"), ids(first));
+        assertNotNull(first.getNextCursor());
+
+        RecipePage<Recipe> second = recipeRepository.fetchPublicRecipesPage("u1", "soups", "soup", 2, first.getNextCursor());
+        assertEquals(List.of("d", "e"), ids(second));
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void fetchPublicRecipesPage_invalidCursor_throwsException() {
+        assertThrows(RecipeRepository.InvalidCursorException.class,
+                () -> recipeRepository.fetchPublicRecipesPage(null, null, null, 2, "not base64!"));
+    }
+
+    @Test
+    void fetchCreatedAndSavedRecipesPage_invalidCursor_isRejectedBeforeTokenLookup() {
+        JwtService jwtService = mock(JwtService.class);
+        ReflectionTestUtils.setField(recipeRepository, "jwtService", jwtService);
+
+        // "bm8tc2VwYXJhdG9y" is "no-separator", valid Base64 but not a list cursor
+        for (String cursor : List.of("not base64!", "bm8tc2VwYXJhdG9y")) {
+            assertThrows(RecipeRepository.InvalidCursorException.class,
+                    () -> recipeRepository.fetchCreatedAndSavedRecipesPage("token", null, null, 2, cursor));
+        }
+        verifyNoInteractions(jwtService, userRepository);
+    }
+
+    @Test
+    void fetchCreatedAndSavedRecipes_readsSavedRatingsAlongsideRecipes() throws Exception {
+        JwtService jwtService = mock(JwtService.class);
+        ReflectionTestUtils.setField(recipeRepository, "jwtService", jwtService);
+
+        List<String> savedIds = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            savedIds.add("saved" + i);
+        }
+        User user = new User();
+        user.setId("u1");
+        user.setCreatedRecipes(new ArrayList<>(List.of("own")));
+        user.setSavedRecipes(savedIds);
+        when(jwtService.extractUsername("token")).thenReturn("user@example.com");
+        when(userRepository.findByEmail("user@example.com")).thenReturn(Optional.of(user));
+
+        when(recipeStore.findByIds(anyCollection(), eq(false), eq("u1"), anyCollection())).thenAnswer(invocation -> {
+            Collection<String> recipeIds = invocation.getArgument(0);
+            Collection<String> ratedIds = invocation.getArgument(3);
+            Map<String, Recipe> recipes = new HashMap<>();
+            for (String id : recipeIds) {
+                Recipe recipe = new Recipe();
+                recipe.setId(id);
+                recipe.setTitle("Recipe " + id);
+                // Only saved7 has been rated by the user
+                if (ratedIds.contains(id) && id.equals("saved7")) {
+                    recipe.setUserRating(4.0);
+                }
+                recipes.put(id, recipe);
+            }
+            return recipes;
+        });
+
+        List<Recipe> recipes = recipeRepository.fetchCreatedAndSavedRecipes("token", null, null);
+        assertEquals(251, recipes.size());
+        assertEquals("own", recipes.get(0).getId());
+        assertEquals("saved249", recipes.get(250).getId());
+        assertEquals(4.0, recipes.get(8).getUserRating());
+        assertNull(recipes.get(9).getUserRating());
+        // One read for the whole list; the store splits it into batched gets
+        verify(recipeStore).findByIds(argThat(recipeIds -> recipeIds.size() == 251), eq(false), eq("u1"),
+                argThat(ratedIds -> ratedIds.size() == 250 && !ratedIds.contains("own")));
+    }
+
+    @Test
+    void fetchPublicRecipeSummariesPage_leavesOutRecipeBody() throws Exception {
+        RecipePage<RecipeSummary> page = recipeRepository.fetchPublicRecipeSummariesPage(null, "soups", null, 2, null);
+        assertEquals(List.of("a", "b"), page.getRecipes().stream().map(RecipeSummary::getId).toList());
+        assertEquals("Soup a", page.getRecipes().get(0).getTitle());
+        assertFalse(page.getRecipes().get(0).toMap().containsKey("instructions"));
+        assertNotNull(page.getNextCursor());
+    }
+
+    @Test
+    void fetchCreatedAndSavedRecipeSummariesPage_readsOnlySummaryFields() throws Exception {
+        JwtService jwtService = mock(JwtService.class);
+        ReflectionTestUtils.setField(recipeRepository, "jwtService", jwtService);
+        User user = new User();
+        user.setId("u1");
+        user.setCreatedRecipes(new ArrayList<>(List.of("own")));
+        user.setSavedRecipes(new ArrayList<>(List.of("saved")));
+        when(jwtService.extractUsername("token")).thenReturn("user@example.com");
+        when(userRepository.findByEmail("user@example.com")).thenReturn(Optional.of(user));
+
+        Map<String, Recipe> stored = new HashMap<>();
+        for (String id : List.of("own", "saved")) {
+            Recipe recipe = new Recipe();
+            recipe.setId(id);
+            recipe.setTitle("Recipe " + id);
+            recipe.setNumOfRatings(3);
+            stored.put(id, recipe);
+        }
+        stored.get("saved").setUserRating(5.0);
+        when(recipeStore.findByIds(anyCollection(), eq(true), eq("u1"), anyCollection())).thenReturn(stored);
+
+        List<RecipeSummary> summaries = recipeRepository
+                .fetchCreatedAndSavedRecipeSummariesPage("token", null, null, 0, null).getRecipes();
+        assertEquals(2, summaries.size());
+        assertEquals(3, summaries.get(0).getNumOfRatings());
+        // Saved recipes only show the average and the user's own rating
+        assertEquals(0, summaries.get(1).getNumOfRatings());
+        assertEquals(5.0, summaries.get(1).getUserRating());
+        verify(recipeStore).findByIds(List.of("own", "saved"), true, "u1", List.of("saved"));
+    }
+
+    private static List<String> ids(RecipePage<Recipe> page) {
+        return page.getRecipes().stream().map(Recipe::getId).collect(Collectors.toList());
+    }
+}
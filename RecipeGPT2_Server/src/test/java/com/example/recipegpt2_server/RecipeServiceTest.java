@@ -1,31 +1,47 @@
 package com.example.recipegpt2_server;
 
 import com.example.recipegpt2_server.model.Recipe;
+import com.example.recipegpt2_server.model.RecipeUpdateRequest;
+import com.example.recipegpt2_server.model.User;
+import com.example.recipegpt2_server.repository.UserRepository;
+import com.example.recipegpt2_server.service.PrincipalCache;
+import com.example.recipegpt2_server.service.RecipeCache;
 import com.example.recipegpt2_server.service.RecipeService;
-import com.google.api.core.ApiFuture;
-import com.google.cloud.firestore.CollectionReference;
-import com.google.cloud.firestore.DocumentReference;
-import com.google.cloud.firestore.DocumentSnapshot;
-import com.google.cloud.firestore.Firestore;
-import com.google.cloud.firestore.WriteResult;
-import com.google.firebase.cloud.FirestoreClient;
+import com.example.recipegpt2_server.service.ReferenceCleanupWorker;
+import com.example.recipegpt2_server.store.RecipeStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
-import org.mockito.MockedStatic;
-import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.*;
 
 class RecipeServiceTest {
     @InjectMocks
     private RecipeService recipeService;
+    private RecipeStore recipeStore;
+    private UserRepository userRepository;
 
     @BeforeEach
     void setUp() {
         recipeService = new RecipeService();
+        recipeStore = mock(RecipeStore.class);
+        userRepository = mock(UserRepository.class);
+        ReflectionTestUtils.setField(recipeService, "recipeStore", recipeStore);
+        ReflectionTestUtils.setField(recipeService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(recipeService, "principalCache",
+                new PrincipalCache(new SimpleMeterRegistry(), 100, 60000));
+        ReflectionTestUtils.setField(recipeService, "recipeCache",
+                new RecipeCache(new SimpleMeterRegistry(), 100, 1 << 20, 60000, false));
     }
 
     @Test
@@ -33,64 +49,78 @@ class RecipeServiceTest {
         Recipe recipe = new Recipe();
         recipe.setTitle("Test Recipe");
         recipe.setUserId("user123");
+        when(recipeStore.insert(recipe)).thenAnswer(invocation -> {
+            recipe.setId("fakeId");
+            return recipe;
+        });
+
+        Recipe savedRecipe = recipeService.saveRecipe(recipe);
+        assertEquals("Test Recipe", savedRecipe.getTitle());
+        assertEquals("fakeId", savedRecipe.getId());
+        // createdRecipes is updated with a single arrayUnion write, without reading the user
+        verify(userRepository).addToRecipeList("user123", "createdRecipes", List.of("fakeId"));
+    }
+
+    @Test
+    void saveRecipes_insertsRecipesAndCreatedRecipesInOneWrite() throws Exception {
+        Recipe first = new Recipe();
+        first.setTitle("Curry");
+        first.setRating(4.0);
+        Recipe second = new Recipe();
+        second.setTitle("Rice");
+        List<Recipe> recipes = new ArrayList<>(List.of(first, second));
+
+        assertSame(recipes, recipeService.saveRecipes(recipes, "user123"));
+        assertEquals(0.0, first.getRating());
+        verify(recipeStore, times(1)).insertAll(recipes, "user123");
+        verify(recipeStore, never()).insert(any());
+        verifyNoInteractions(userRepository);
+
+        recipeService.saveRecipes(new ArrayList<>(List.of(new Recipe())), "");
+        verify(recipeStore).insertAll(anyList(), isNull());
+    }
 
-        Firestore firestore = mock(Firestore.class);
-        CollectionReference recipesCollection = mock(CollectionReference.class);
-        ApiFuture<DocumentReference> addFuture = mock(ApiFuture.class);
-        DocumentReference recipeDocRef = mock(DocumentReference.class);
-
-        // Mock for user document update (createdRecipes)
-        CollectionReference usersCollection = mock(CollectionReference.class);
-        DocumentReference userDocRef = mock(DocumentReference.class);
-        ApiFuture<com.google.cloud.firestore.DocumentSnapshot> userGetFuture = mock(ApiFuture.class);
-        com.google.cloud.firestore.DocumentSnapshot userDocSnapshot = mock(
-                com.google.cloud.firestore.DocumentSnapshot.class);
-        ApiFuture<WriteResult> updateFuture = mock(ApiFuture.class);
-
-        // Mock Firestore collections
-        when(firestore.collection("recipes")).thenReturn(recipesCollection);
-        when(firestore.collection("users")).thenReturn(usersCollection);
-
-        // Mock adding recipe
-        when(recipesCollection.add(any())).thenReturn(addFuture);
-        when(addFuture.get()).thenReturn(recipeDocRef);
-        when(recipeDocRef.getId()).thenReturn("fakeId");
-
-        // Mock user document retrieval and update
-        when(usersCollection.document("user123")).thenReturn(userDocRef);
-        when(userDocRef.get()).thenReturn(userGetFuture);
-        when(userGetFuture.get()).thenReturn(userDocSnapshot);
-        when(userDocSnapshot.exists()).thenReturn(true);
-        when(userDocSnapshot.get("createdRecipes")).thenReturn(null); // Simulate no createdRecipes yet
-        when(userDocRef.update(eq("createdRecipes"), any())).thenReturn(updateFuture);
-        when(updateFuture.get()).thenReturn(null);
-
-        try (MockedStatic<FirestoreClient> firestoreClientMockedStatic = Mockito.mockStatic(FirestoreClient.class)) {
-            firestoreClientMockedStatic.when(FirestoreClient::getFirestore).thenReturn(firestore);
-            Recipe savedRecipe = recipeService.saveRecipe(recipe);
-            assertEquals("Test Recipe", savedRecipe.getTitle());
-            assertEquals("fakeId", savedRecipe.getId());
+    @Test
+    void saveRecipes_rejectsMoreThanOneBatch() throws Exception {
+        List<Recipe> recipes = new ArrayList<>();
+        for (int i = 0; i <= RecipeService.MAX_RECIPES_PER_SAVE; i++) {
+            recipes.add(new Recipe());
         }
+
+        // Nothing is written, so a failure cannot leave part of the recipes saved
+        assertThrows(IllegalArgumentException.class, () -> recipeService.saveRecipes(recipes, "user123"));
+        verifyNoInteractions(recipeStore);
     }
 
     @Test
     void getRecipeById_notFound_returnsNull() throws Exception {
-        Firestore firestore = mock(Firestore.class);
-        CollectionReference collectionReference = mock(CollectionReference.class);
-        DocumentReference documentReference = mock(DocumentReference.class);
-        ApiFuture<DocumentSnapshot> apiFuture = mock(ApiFuture.class);
-        DocumentSnapshot documentSnapshot = mock(DocumentSnapshot.class);
-
-        when(firestore.collection(any())).thenReturn(collectionReference);
-        when(collectionReference.document(any())).thenReturn(documentReference);
-        when(documentReference.get()).thenReturn(apiFuture);
-        when(apiFuture.get()).thenReturn(documentSnapshot);
-        when(documentSnapshot.exists()).thenReturn(false);
-
-        try (MockedStatic<FirestoreClient> firestoreClientMockedStatic = Mockito.mockStatic(FirestoreClient.class)) {
-            firestoreClientMockedStatic.when(FirestoreClient::getFirestore).thenReturn(firestore);
-            assertNull(recipeService.getRecipeById("nonexistent"));
-        }
+        assertNull(recipeService.getRecipeById("nonexistent"));
+        verify(recipeStore).findById("nonexistent");
+    }
+
+    @Test
+    void getRecipeById_servesRepeatReadsFromCacheUntilWritten() throws Exception {
+        Recipe stored = new Recipe();
+        stored.setId("r1");
+        stored.setTitle("Soup");
+        stored.setUserId("user123");
+        when(recipeStore.findById("r1")).thenReturn(stored);
+
+        Recipe first = recipeService.getRecipeById("r1");
+        first.setTitle("Changed by the caller");
+
+        assertEquals("Soup", recipeService.getRecipeById("r1").getTitle());
+        assertEquals(Map.of("r1", "user123"), recipeService.getRecipeOwners(List.of("r1")));
+        verify(recipeStore, times(1)).findById("r1");
+
+        // The update starts from the cached recipe and is not read back
+        assertEquals(4.0, recipeService.updateRecipeRating("r1", 4.0).getRating());
+        verify(recipeStore).update("r1", Map.of("rating", 4.0));
+        verify(recipeStore, times(1)).findById("r1");
+
+        recipeService.getRecipeById("r1");
+        verify(recipeStore, times(2)).findById("r1");
+        verify(recipeStore, never()).findOwners(any());
     }
 
     @Test
@@ -101,15 +131,70 @@ class RecipeServiceTest {
 
     @Test
     void deleteRecipe_nonExistent_returnsFalse() throws Exception {
-        Firestore firestore = mock(Firestore.class);
-        when(firestore.collection(any())).thenReturn(mock(CollectionReference.class));
-        try (MockedStatic<FirestoreClient> firestoreClientMockedStatic = Mockito.mockStatic(FirestoreClient.class)) {
-            firestoreClientMockedStatic.when(FirestoreClient::getFirestore).thenReturn(firestore);
-            // Simulate getRecipeById returns null
-            RecipeService spyService = spy(recipeService);
-            doReturn(null).when(spyService).getRecipeById("nonexistent");
-            assertFalse(spyService.deleteRecipe("nonexistent"));
+        // Simulate getRecipeById returns null
+        RecipeService spyService = spy(recipeService);
+        doReturn(null).when(spyService).getRecipeById("nonexistent");
+        assertFalse(spyService.deleteRecipe("nonexistent"));
+        verify(recipeStore, never()).delete(any());
+    }
+
+    @Test
+    void deleteRecipe_writesTombstoneAndQueuesCleanup() throws Exception {
+        ReferenceCleanupWorker referenceCleanupWorker = mock(ReferenceCleanupWorker.class);
+        ReflectionTestUtils.setField(recipeService, "referenceCleanupWorker", referenceCleanupWorker);
+
+        Recipe existing = new Recipe();
+        existing.setId("r1");
+        existing.setUserId("owner");
+        RecipeService spyService = spy(recipeService);
+        doReturn(existing).when(spyService).getRecipeById("r1");
+
+        assertTrue(spyService.deleteRecipe("r1"));
+
+        // The store deletes the recipe and writes its tombstone in one write
+        verify(recipeStore).delete(List.of(existing));
+        verify(userRepository).removeFromRecipeList("owner", "createdRecipes", List.of("r1"));
+        verify(referenceCleanupWorker).enqueue(List.of("r1"));
+        // Ratings and users who saved the recipe are not touched inside the request
+        verify(recipeStore, never()).deleteRatings(any());
+    }
+
+    @Test
+    void deleteRecipes_batchesDeletionsAndQueuesOneCleanup() throws Exception {
+        ReferenceCleanupWorker referenceCleanupWorker = mock(ReferenceCleanupWorker.class);
+        ReflectionTestUtils.setField(recipeService, "referenceCleanupWorker", referenceCleanupWorker);
+
+        // 250 recipes fit in one batch of deletions plus tombstones; the other 50 go in a second one
+        List<Recipe> recipes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Recipe recipe = new Recipe();
+            recipe.setId("r" + i);
+            recipe.setUserId("owner");
+            recipes.add(recipe);
         }
+        List<Recipe> firstChunk = recipes.subList(0, 250);
+        List<Recipe> secondChunk = recipes.subList(250, 300);
+        doThrow(new ExecutionException(new IllegalStateException("quota"))).when(recipeStore).delete(secondChunk);
+
+        Map<String, String> failures = recipeService.deleteRecipes(recipes);
+
+        assertEquals(50, failures.size());
+        assertEquals("Error: quota", failures.get("r299"));
+        verify(recipeStore).delete(firstChunk);
+        verify(recipeStore, times(2)).delete(anyList());
+        List<String> deletedIds = firstChunk.stream().map(Recipe::getId).toList();
+        verify(userRepository).removeFromRecipeList("owner", "createdRecipes", deletedIds);
+        verify(referenceCleanupWorker).enqueue(deletedIds);
+    }
+
+    @Test
+    void getRecipeOwners_readsMissingOwnersOnce() throws Exception {
+        when(recipeStore.findOwners(any())).thenReturn(Map.of("r1", "owner"));
+
+        assertEquals(Map.of("r1", "owner"), recipeService.getRecipeOwners(List.of("r1", "r2", "r1")));
+        verify(recipeStore).findOwners(argThat(recipeIds -> recipeIds.size() == 2
+                && recipeIds.containsAll(List.of("r1", "r2"))));
+        verify(recipeStore, never()).findByIds(any(), anyBoolean());
     }
 
     @Test
@@ -119,8 +204,8 @@ class RecipeServiceTest {
         existing.setId("r1");
         existing.setUserId("ownerId");
         doReturn(existing).when(spyService).getRecipeById("r1");
-        com.example.recipegpt2_server.model.RecipeUpdateRequest updateRequest = new com.example.recipegpt2_server.model.RecipeUpdateRequest();
-        com.example.recipegpt2_server.model.User notOwner = new com.example.recipegpt2_server.model.User();
+        RecipeUpdateRequest updateRequest = new RecipeUpdateRequest();
+        User notOwner = new User();
         notOwner.setId("notOwnerId");
         assertThrows(SecurityException.class, () -> spyService.updateRecipe("r1", updateRequest, notOwner));
     }
@@ -129,9 +214,38 @@ class RecipeServiceTest {
     void updateRecipe_notFound_throwsIllegalArgumentException() throws Exception {
         RecipeService spyService = spy(recipeService);
         doReturn(null).when(spyService).getRecipeById("notfound");
-        com.example.recipegpt2_server.model.RecipeUpdateRequest updateRequest = new com.example.recipegpt2_server.model.RecipeUpdateRequest();
-        com.example.recipegpt2_server.model.User user = new com.example.recipegpt2_server.model.User();
+        RecipeUpdateRequest updateRequest = new RecipeUpdateRequest();
+        User user = new User();
         user.setId("userId");
         assertThrows(IllegalArgumentException.class, () -> spyService.updateRecipe("notfound", updateRequest, user));
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateRecipe_returnsUpdatedRecipeWithoutReadingItAgain() throws Exception {
+        RecipeService spyService = spy(recipeService);
+        Recipe existing = new Recipe();
+        existing.setId("r1");
+        existing.setUserId("ownerId");
+        existing.setTitle("Soup");
+        existing.setServings(2);
+        existing.setRating(4.5);
+        doReturn(existing).when(spyService).getRecipeById("r1");
+        RecipeUpdateRequest updateRequest = new RecipeUpdateRequest();
+        updateRequest.setTitle("Tomato Soup");
+        updateRequest.setIsPublic(true);
+        User owner = new User();
+        owner.setId("ownerId");
+
+        Recipe updated = spyService.updateRecipe("r1", updateRequest, owner);
+
+        assertEquals("Tomato Soup", updated.getTitle());
+        assertEquals(2, updated.getServings());
+        assertEquals(4.5, updated.getRating());
+        // Only publishers can change the public attribute
+        assertFalse(updated.isPublic());
+        verify(recipeStore).update("r1", Map.of("title", "Tomato Soup"));
+        verify(spyService, times(1)).getRecipeById("r1");
+        verify(recipeStore, never()).findById(any());
+        verify(recipeStore, never()).findById(any(), any());
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.recipegpt2_server;
+
+import com.example.recipegpt2_server.service.RecipeStreamParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeStreamParserTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void feed_emitsEachRecipeWhenItsObjectCloses() throws Exception {
+        String document = "{\"recipes\":[{\"title\":\"Curry {hot}\",\"description\":\"A \\\"quoted\\\" } brace\","
+                + "\"ingredients\":[\"rice\",\"chicken\"],\"servings\":2},"
+                + "{\"title\":\"Soup\",\"servings\":4}]}";
+        RecipeStreamParser parser = new RecipeStreamParser();
+
+        List<String> recipes = new ArrayList<>();
+        List<Integer> completedAt = new ArrayList<>();
+        // Feed three characters at a time to split tokens, strings and escapes across fragments
+        for (int i = 0; i < document.length(); i += 3) {
+            List<String> completed = parser.feed(document.substring(i, Math.min(i + 3, document.length())));
+            for (String recipe : completed) {
+                recipes.add(recipe);
+                completedAt.add(i);
+            }
+        }
+
+        assertEquals(2, recipes.size());
+        Map<?, ?> first = objectMapper.readValue(recipes.get(0), Map.class);
+        assertEquals("Curry {hot}", first.get("title"));
+        assertEquals("A \"quoted\" } brace", first.get("description"));
+        assertEquals(List.of("rice", "chicken"), first.get("ingredients"));
+        assertEquals("Soup", objectMapper.readValue(recipes.get(1), Map.class).get("title"));
+
+        // The first recipe is available well before the document ends
+        assertTrue(completedAt.get(0) < document.indexOf("Soup"));
+    }
+
+    @Test
+    void feed_ignoresNullAndPartialInput() {
+        RecipeStreamParser parser = new RecipeStreamParser();
+        assertTrue(parser.feed(null).isEmpty());
+        assertTrue(parser.feed("{\"recipes\":[{\"title\":\"Unfinished").isEmpty());
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.recipegpt2_server;
+
+import com.example.recipegpt2_server.service.PrincipalCache;
+import com.example.recipegpt2_server.service.ReferenceCleanupWorker;
+import com.example.recipegpt2_server.store.RecipeStore;
+import com.example.recipegpt2_server.store.UserStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ReferenceCleanupWorkerTest {
+
+    @Test
+    void cleanUp_removesSavedReferencesInBatchesThenTombstones() throws Exception {
+        RecipeStore recipeStore = mock(RecipeStore.class);
+        UserStore userStore = mock(UserStore.class);
+        // 7 users saved the recipes: batches of 3, 3 and 1, then none are left
+        when(userStore.removeSavedReferences(List.of("r1", "r2"), 3))
+                .thenReturn(List.of("u1", "u2", "u3"))
+                .thenReturn(List.of("u4", "u5", "u6"))
+                .thenReturn(List.of("u7"))
+                .thenReturn(List.of());
+
+        PrincipalCache principalCache = mock(PrincipalCache.class);
+        ReferenceCleanupWorker worker = new ReferenceCleanupWorker(new SimpleMeterRegistry(), principalCache,
+                recipeStore, userStore, false, 3, 10, 100, 0);
+        worker.cleanUp(List.of("r1", "r2"));
+
+        InOrder order = inOrder(recipeStore, userStore);
+        order.verify(recipeStore).deleteRatings("r1");
+        order.verify(recipeStore).deleteRatings("r2");
+        order.verify(userStore, times(4)).removeSavedReferences(List.of("r1", "r2"), 3);
+        // Tombstones go last, so an interrupted cleanup is resumed after a restart
+        order.verify(recipeStore).deleteTombstones(List.of("r1", "r2"));
+        verify(principalCache, times(7)).invalidateById(anyString());
+        assertEquals(7.0, worker.removedReferenceCount());
+    }
+
+    @Test
+    void cleanUp_keepsTombstonesWhenUsersCannotBeUpdated() throws Exception {
+        RecipeStore recipeStore = mock(RecipeStore.class);
+        UserStore userStore = mock(UserStore.class);
+        when(userStore.removeSavedReferences(List.of("r1"), 3)).thenThrow(new IllegalStateException("quota"));
+
+        ReferenceCleanupWorker worker = new ReferenceCleanupWorker(new SimpleMeterRegistry(),
+                mock(PrincipalCache.class), recipeStore, userStore, false, 3, 10, 100, 0);
+        assertThrows(IllegalStateException.class, () -> worker.cleanUp(List.of("r1")));
+        verify(recipeStore, never()).deleteTombstones(anyList());
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.recipegpt2_server;
 
+import com.example.recipegpt2_server.model.AddSavedRecipesRequest;
+import com.example.recipegpt2_server.model.DeleteSavedRecipesRequest;
 import com.example.recipegpt2_server.model.User;
 import com.example.recipegpt2_server.model.UserRegistrationRequest;
 import com.example.recipegpt2_server.model.UserUpdateRequest;
@@ -7,6 +9,8 @@ import com.example.recipegpt2_server.model.SavedRecipesUpdateRequest;
 import com.example.recipegpt2_server.repository.UserRepository;
 import com.example.recipegpt2_server.service.UserService;
 import com.example.recipegpt2_server.service.RecipeService;
+import com.example.recipegpt2_server.service.PrincipalCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -15,6 +19,11 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 
@@ -31,11 +40,13 @@ class UserServiceTest {
     private RecipeService recipeService;
     @InjectMocks
     private UserService userService;
+    private PrincipalCache principalCache;
 
     @BeforeEach
     void setUp() throws Exception {
         MockitoAnnotations.openMocks(this);
-        userService = new UserService(userRepository, passwordEncoder);
+        principalCache = new PrincipalCache(new SimpleMeterRegistry(), 100, 60000);
+        userService = new UserService(userRepository, passwordEncoder, principalCache);
         // Inject the mock recipeService using reflection
         Field field = UserService.class.getDeclaredField("recipeService");
         field.setAccessible(true);
@@ -134,9 +145,9 @@ class UserServiceTest {
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
 
         SavedRecipesUpdateRequest updateRequest = new SavedRecipesUpdateRequest();
-        updateRequest.setSavedRecipes(java.util.Collections.singletonList("invalidRecipeId"));
+        updateRequest.setSavedRecipes(Collections.singletonList("invalidRecipeId"));
 
-        when(recipeService.getRecipeById("invalidRecipeId")).thenReturn(null);
+        when(recipeService.getRecipeOwners(any())).thenReturn(Map.of());
         when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         assertThrows(IllegalArgumentException.class, () -> userService.updateSavedRecipes(email, updateRequest));
@@ -148,13 +159,13 @@ class UserServiceTest {
         User user = new User();
         user.setId("userId");
         user.setEmail(email);
-        user.setSavedRecipes(java.util.Arrays.asList("r1", "r2"));
+        user.setSavedRecipes(Arrays.asList("r1", "r2"));
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
 
-        com.example.recipegpt2_server.model.DeleteSavedRecipesRequest deleteRequest = new com.example.recipegpt2_server.model.DeleteSavedRecipesRequest();
-        deleteRequest.setRecipeIds(java.util.Arrays.asList("nonexistent"));
+        DeleteSavedRecipesRequest deleteRequest = new DeleteSavedRecipesRequest();
+        deleteRequest.setRecipeIds(Arrays.asList("nonexistent"));
 
-        when(recipeService.getRecipeById("nonexistent")).thenReturn(null);
+        when(recipeService.getRecipeOwners(any())).thenReturn(Map.of("r1", "otherUser"));
 
         assertThrows(IllegalArgumentException.class, () -> userService.deleteSavedRecipes(email, deleteRequest));
     }
@@ -165,13 +176,93 @@ class UserServiceTest {
         User user = new User();
         user.setId("userId");
         user.setEmail(email);
-        user.setSavedRecipes(java.util.Arrays.asList("r1", "r2"));
+        user.setSavedRecipes(Arrays.asList("r1", "r2"));
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
 
-        com.example.recipegpt2_server.model.DeleteSavedRecipesRequest deleteRequest = new com.example.recipegpt2_server.model.DeleteSavedRecipesRequest();
-        deleteRequest.setRecipeIds(java.util.Collections.emptyList());
+        DeleteSavedRecipesRequest deleteRequest = new DeleteSavedRecipesRequest();
+        deleteRequest.setRecipeIds(Collections.emptyList());
 
         User result = userService.deleteSavedRecipes(email, deleteRequest);
         assertEquals(user, result);
     }
-}
\ No newline at end of file
+
+    @Test
+    void addSavedRecipes_usesArrayUnionInsteadOfRewritingUser() throws Exception {
+        String email = "test@example.com";
+        User user = new User();
+        user.setId("userId");
+        user.setEmail(email);
+        user.setSavedRecipes(new ArrayList<>(List.of("r1")));
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+
+        when(recipeService.getRecipeOwners(any())).thenReturn(Map.of("r2", "otherUser"));
+
+        AddSavedRecipesRequest addRequest = new AddSavedRecipesRequest();
+        addRequest.setRecipeIds(List.of("r2", "r2"));
+
+        User result = userService.addSavedRecipes(email, addRequest);
+        assertEquals(List.of("r1", "r2"), result.getSavedRecipes());
+        assertEquals(1, result.getProfileVersion());
+        verify(userRepository).addToRecipeList("userId", "savedRecipes", List.of("r2"));
+        verify(userRepository, never()).save(any(User.class));
+    }
+
+    @Test
+    void loadUserByUsername_servedFromCacheUntilUpdate() throws Exception {
+        String email = "test@example.com";
+        User user = new User();
+        user.setId("userId");
+        user.setEmail(email);
+        user.setUsername("olduser");
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertSame(user, userService.loadUserByUsername(email));
+        assertSame(user, userService.loadUserByUsername(email));
+        verify(userRepository, times(1)).findByEmail(email);
+        assertEquals(1.0, principalCache.hitCount());
+        assertEquals(1.0, principalCache.missCount());
+
+        UserUpdateRequest updateRequest = new UserUpdateRequest();
+        updateRequest.setUsername("newuser");
+        userService.updateUser(email, updateRequest);
+        assertEquals(0, principalCache.size());
+
+        userService.loadUserByUsername(email);
+        verify(userRepository, times(3)).findByEmail(email);
+    }
+
+    @Test
+    void loadUserByUsername_doesNotCacheAUserReadBeforeAConcurrentWrite() throws Exception {
+        String email = "test@example.com";
+        User user = new User();
+        user.setId("userId");
+        user.setEmail(email);
+        // A write lands and invalidates the user while the read is in flight
+        when(userRepository.findByEmail(email)).thenAnswer(invocation -> {
+            principalCache.invalidateById("userId");
+            return Optional.of(user);
+        }).thenReturn(Optional.of(user));
+
+        assertSame(user, userService.loadUserByUsername(email));
+        assertEquals(0, principalCache.size());
+
+        userService.loadUserByUsername(email);
+        assertEquals(1, principalCache.size());
+    }
+
+    @Test
+    void loadUserForLogin_readsTheStoredUserEvenWhenCached() throws Exception {
+        String email = "test@example.com";
+        User cached = new User();
+        cached.setEmail(email);
+        cached.setPassword("oldHash");
+        User stored = new User();
+        stored.setEmail(email);
+        stored.setPassword("newHash");
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(cached)).thenReturn(Optional.of(stored));
+
+        userService.loadUserByUsername(email);
+        assertEquals("newHash", userService.loadUserForLogin(email).getPassword());
+    }
+}
@@ -0,0 +1,62 @@
+package com.google.cloud.firestore;
+
+import com.google.cloud.Timestamp;
+import com.google.common.collect.ImmutableList;
+import com.google.firestore.v1.DatabaseRootName;
+import com.google.firestore.v1.Value;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Real document snapshots for tests, built without a Firestore connection,
+ * and the effect of field transforms on in-memory documents. The classes
+ * involved are package-private, hence this package.
+ */
+public final class TestSnapshots {
+
+    private static final DatabaseRootName DATABASE = DatabaseRootName.of("test-project", "(default)");
+
+    private TestSnapshots() {
+    }
+
+    /**
+     * A snapshot of the document at path, such as "recipes/r1", with the
+     * fields encoded the way Firestore returns them
+     *
+     * @param path The document path
+     * @param data The document fields, or null for a missing document
+     */
+    public static DocumentSnapshot document(String path, Map<String, Object> data) {
+        DocumentReference reference = new DocumentReference(null,
+                ResourcePath.create(DATABASE, ImmutableList.copyOf(path.split("/"))));
+        Timestamp now = Timestamp.now();
+        if (data == null) {
+            return DocumentSnapshot.fromMissing(null, reference, now);
+        }
+        Map<String, Value> fields = new HashMap<>();
+        data.forEach((field, value) -> fields.put(field,
+                UserDataConverter.encodeValue(FieldPath.of(field), value, UserDataConverter.NO_DELETES)));
+        return new QueryDocumentSnapshot(null, reference, fields, now, now, now);
+    }
+
+    /**
+     * The value a FieldValue.increment() transform leaves in a field: an
+     * integer if both the field and the operand are integers, else a double
+     *
+     * @param current   The field's current value, or null if it is missing
+     * @param increment The transform
+     */
+    public static Number increment(Object current, FieldValue increment) {
+        Number operand = ((FieldValue.NumericIncrementFieldValue) increment).operand;
+        Number value = current instanceof Number number ? number : 0L;
+        if (isInteger(value) && isInteger(operand)) {
+            return value.longValue() + operand.longValue();
+        }
+        return value.doubleValue() + operand.doubleValue();
+    }
+
+    private static boolean isInteger(Number number) {
+        return number instanceof Long || number instanceof Integer;
+    }
+}